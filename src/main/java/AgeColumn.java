@@ -0,0 +1,168 @@
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/* Ages of a population as a primitive int column for threshold scans.
+   The scans run in a Kernel. VectorAgeKernel in src/main/vector uses the incubating Vector API;
+   the vector profile compiles it on JDK 17 and later, and it is only picked when the JVM runs
+   with --add-modules jdk.incubator.vector. Otherwise, or with -DageColumn.scalar=true, the
+   scalar loops below are used, which compare the ints directly so the JIT can unroll them.
+ */
+final class AgeColumn {
+
+    interface Kernel {
+
+        int countGreaterThan(int[] ages, int threshold);
+
+        int countLessThan(int[] ages, int threshold);
+
+        // Both bounds are inclusive
+        int countBetween(int[] ages, int min, int max);
+
+        // Fills indexes, which has room for exactly the ages greater than threshold
+        void indexesGreaterThan(int[] ages, int threshold, int[] indexes);
+
+        int min(int[] ages);
+
+        int max(int[] ages);
+    }
+
+    static final Kernel KERNEL = load();
+
+    static final boolean VECTORIZED = !(KERNEL instanceof ScalarKernel);
+
+    private final int[] ages;
+
+    AgeColumn(int[] ages) {
+        this.ages = ages.clone();
+    }
+
+    static AgeColumn of(List<Person> people) {
+        int[] ages = new int[people.size()];
+        for (int i = 0; i < ages.length; i++) {
+            Integer age = people.get(i).getAge();
+            if (age == null) {
+                throw new IllegalArgumentException("Person at index " + i + " has no age");
+            }
+            ages[i] = age;
+        }
+        return new AgeColumn(ages);
+    }
+
+    int size() {
+        return ages.length;
+    }
+
+    int get(int index) {
+        return ages[index];
+    }
+
+    int countGreaterThan(int threshold) {
+        return KERNEL.countGreaterThan(ages, threshold);
+    }
+
+    int countLessThan(int threshold) {
+        return KERNEL.countLessThan(ages, threshold);
+    }
+
+    // Both bounds are inclusive
+    int countBetween(int min, int max) {
+        return KERNEL.countBetween(ages, min, max);
+    }
+
+    // Counts first, so the result is allocated once at its final size
+    int[] indexesGreaterThan(int threshold) {
+        int[] indexes = new int[KERNEL.countGreaterThan(ages, threshold)];
+        if (indexes.length > 0) {
+            KERNEL.indexesGreaterThan(ages, threshold, indexes);
+        }
+        return indexes;
+    }
+
+    int min() {
+        requireNotEmpty();
+        return KERNEL.min(ages);
+    }
+
+    int max() {
+        requireNotEmpty();
+        return KERNEL.max(ages);
+    }
+
+    private void requireNotEmpty() {
+        if (ages.length == 0) {
+            throw new NoSuchElementException("Age column is empty");
+        }
+    }
+
+    private static Kernel load() {
+        if (Boolean.getBoolean("ageColumn.scalar")) {
+            return new ScalarKernel();
+        }
+        ClassLoader loader = AgeColumn.class.getClassLoader();
+        try {
+            Class.forName("jdk.incubator.vector.IntVector", false, loader);
+            return (Kernel) Class.forName("VectorAgeKernel", true, loader).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+            return new ScalarKernel();
+        }
+    }
+
+    static final class ScalarKernel implements Kernel {
+
+        @Override
+        public int countGreaterThan(int[] ages, int threshold) {
+            int count = 0;
+            for (int age : ages) {
+                count += age > threshold ? 1 : 0;
+            }
+            return count;
+        }
+
+        @Override
+        public int countLessThan(int[] ages, int threshold) {
+            int count = 0;
+            for (int age : ages) {
+                count += age < threshold ? 1 : 0;
+            }
+            return count;
+        }
+
+        @Override
+        public int countBetween(int[] ages, int min, int max) {
+            int count = 0;
+            for (int age : ages) {
+                // & rather than &&, so random ages cost no mispredicted branches
+                count += (age >= min ? 1 : 0) & (age <= max ? 1 : 0);
+            }
+            return count;
+        }
+
+        @Override
+        public void indexesGreaterThan(int[] ages, int threshold, int[] indexes) {
+            int found = 0;
+            for (int i = 0; found < indexes.length; i++) {
+                if (ages[i] > threshold) {
+                    indexes[found++] = i;
+                }
+            }
+        }
+
+        @Override
+        public int min(int[] ages) {
+            int min = Integer.MAX_VALUE;
+            for (int age : ages) {
+                min = Math.min(min, age);
+            }
+            return min;
+        }
+
+        @Override
+        public int max(int[] ages) {
+            int max = Integer.MIN_VALUE;
+            for (int age : ages) {
+                max = Math.max(max, age);
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/* Checks every rule against every Person and keeps all violations, not just the first one.
+   Violations are stored as packed (recordIndex, ruleId) longs and turned into text only when asked,
+   so validating a passing record allocates nothing.
+ */
+final class BulkValidator {
+
+    static final int MAX_RULES = 1 << 16;
+    // The record index shares a long with the rule id, so it gets the 48 bits above the rule's 16
+    static final long MAX_RECORDS = 1L << 48;
+
+    // A copied list rather than a generic array, which would need an unchecked cast
+    private final List<Predicate<Person>> checks;
+    private final String[] descriptions;
+
+    private BulkValidator(List<Predicate<Person>> checks, List<String> descriptions) {
+        this.checks = new ArrayList<>(checks);
+        this.descriptions = descriptions.toArray(new String[0]);
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    int ruleCount() {
+        return checks.size();
+    }
+
+    String describe(int ruleId) {
+        return descriptions[ruleId];
+    }
+
+    Violations validate(Iterable<Person> people) {
+        Violations violations = new Violations(this);
+        long recordIndex = 0;
+        for (Person person : people) {
+            validate(recordIndex++, person, violations);
+        }
+        return violations;
+    }
+
+    void validate(long recordIndex, Person person, Violations into) {
+        if (recordIndex < 0 || recordIndex >= MAX_RECORDS) {
+            throw new IllegalArgumentException("Record index " + recordIndex + " is outside 0 to " + (MAX_RECORDS - 1));
+        }
+        for (int ruleId = 0; ruleId < checks.size(); ruleId++) {
+            if (person == null || !checks.get(ruleId).test(person)) {
+                into.add(recordIndex, ruleId);
+            }
+        }
+    }
+
+    static final class Builder {
+
+        private final List<Predicate<Person>> checks = new ArrayList<>();
+        private final List<String> descriptions = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        Builder rule(String description, Predicate<Person> check) {
+            if (checks.size() == MAX_RULES) {
+                throw new IllegalStateException("Too many rules, the limit is " + MAX_RULES);
+            }
+            checks.add(check);
+            descriptions.add(description);
+            return this;
+        }
+
+        Builder requireFirstName() {
+            return rule("first name must not be blank", person -> isNotBlank(person.getFirstName()));
+        }
+
+        Builder requireLastName() {
+            return rule("last name must not be blank", person -> isNotBlank(person.getLastName()));
+        }
+
+        Builder ageBetween(int min, int max) {
+            if (min > max) {
+                throw new IllegalArgumentException("Minimum age " + min + " is greater than maximum " + max);
+            }
+            return rule("age must be between " + min + " and " + max, person -> {
+                Integer age = person.getAge();
+                return age != null && age >= min && age <= max;
+            });
+        }
+
+        BulkValidator build() {
+            return new BulkValidator(checks, descriptions);
+        }
+
+        private static boolean isNotBlank(String value) {
+            if (value == null) {
+                return false;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                if (!Character.isWhitespace(value.charAt(i))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static final class Violations {
+
+        private static final int RULE_BITS = 16;
+        private static final long RULE_MASK = (1L << RULE_BITS) - 1;
+        // Largest array length every JVM accepts
+        static final int MAX_VIOLATIONS = Integer.MAX_VALUE - 8;
+
+        private final BulkValidator validator;
+        private long[] packed = new long[16];
+        private int size;
+
+        Violations(BulkValidator validator) {
+            this.validator = validator;
+        }
+
+        void add(long recordIndex, int ruleId) {
+            if (size == packed.length) {
+                if (size == MAX_VIOLATIONS) {
+                    throw new IllegalStateException("Too many violations, the limit is " + MAX_VIOLATIONS);
+                }
+                long[] grown = new long[(int) Math.min(packed.length * 2L, MAX_VIOLATIONS)];
+                System.arraycopy(packed, 0, grown, 0, size);
+                packed = grown;
+            }
+            packed[size++] = recordIndex << RULE_BITS | ruleId;
+        }
+
+        int count() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        long recordIndex(int violation) {
+            return entry(violation) >>> RULE_BITS;
+        }
+
+        int ruleId(int violation) {
+            return (int) (entry(violation) & RULE_MASK);
+        }
+
+        String message(int violation) {
+            return "Record " + recordIndex(violation) + ": " + validator.describe(ruleId(violation));
+        }
+
+        List<String> messages(int limit) {
+            List<String> messages = new ArrayList<>();
+            for (int i = 0; i < Math.min(limit, size); i++) {
+                messages.add(message(i));
+            }
+            return messages;
+        }
+
+        // Fails with the first few messages and the total count
+        void assertNone(int limit) {
+            if (isEmpty()) {
+                return;
+            }
+
+            StringBuilder text = new StringBuilder().append(size).append(" violation(s)");
+            for (String message : messages(limit)) {
+                text.append(System.lineSeparator()).append("  ").append(message);
+            }
+            if (size > limit) {
+                text.append(System.lineSeparator()).append("  ... and ").append(size - limit).append(" more");
+            }
+            throw new AssertionError(text.toString());
+        }
+
+        private long entry(int violation) {
+            if (violation < 0 || violation >= size) {
+                throw new IndexOutOfBoundsException("Violation " + violation + " of " + size);
+            }
+            return packed[violation];
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import org.junit.jupiter.params.converter.ArgumentConversionException;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/* Converters registered per (target type, source class) and reused for every conversion.
+   Each target type has its own table keyed by the exact source class; a source subclass is resolved
+   through its superclasses and interfaces once and the result is remembered, so repeated
+   conversions cost two map lookups and no reflection.
+ */
+final class ConverterRegistry {
+
+    interface TypedConverter<T> {
+        T convert(Object source) throws ArgumentConversionException;
+    }
+
+    private static final TypedConverter<Object> NONE = source -> null;
+
+    private final Map<Class<?>, Map<Class<?>, TypedConverter<?>>> registered = new IdentityHashMap<>();
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Class<?>, TypedConverter<?>>> resolved =
+            new ConcurrentHashMap<>();
+
+    static ConverterRegistry defaults() {
+        MessageConverter messageConverter = new MessageConverter();
+        ConverterRegistry registry = new ConverterRegistry();
+        registry.register(Message.class, String.class, source -> (Message) messageConverter.convert(source, null));
+        registry.register(Person.class, String.class, source -> PersonCsvConverter.parse((String) source));
+        registry.register(Person.class, Person.class, source -> new Person((Person) source));
+        registry.register(Pet.class, String.class, ConverterRegistry::toPet);
+        registry.register(Pet.class, Pet.class, source -> (Pet) source);
+        return registry;
+    }
+
+    // Registration is meant to finish before the registry is shared between threads
+    synchronized <T> ConverterRegistry register(Class<T> target, Class<?> source, TypedConverter<? extends T> converter) {
+        registered.computeIfAbsent(target, key -> new IdentityHashMap<>()).put(source, converter);
+        resolved.clear();
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T convert(Object source, Class<T> target) throws ArgumentConversionException {
+        if (source == null) {
+            throw new ArgumentConversionException("Cannot convert null source object to " + target.getSimpleName());
+        }
+
+        TypedConverter<?> converter = resolved
+                .computeIfAbsent(target, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(source.getClass(), sourceClass -> resolve(target, sourceClass));
+        if (converter == NONE) {
+            throw new ArgumentConversionException("No converter from " + source.getClass().getSimpleName()
+                    + " to " + target.getSimpleName());
+        }
+        return (T) converter.convert(source);
+    }
+
+    private synchronized TypedConverter<?> resolve(Class<?> target, Class<?> sourceClass) {
+        Map<Class<?>, TypedConverter<?>> converters = registered.get(target);
+        if (converters == null) {
+            return NONE;
+        }
+
+        for (Class<?> current = sourceClass; current != null; current = current.getSuperclass()) {
+            TypedConverter<?> converter = converters.get(current);
+            if (converter != null) {
+                return converter;
+            }
+            for (Class<?> implemented : current.getInterfaces()) {
+                converter = converters.get(implemented);
+                if (converter != null) {
+                    return converter;
+                }
+            }
+        }
+        return NONE;
+    }
+
+    private static Pet toPet(Object source) {
+        String name = ((String) source).trim();
+        for (Pet pet : Pet.values()) {
+            if (pet.name().equalsIgnoreCase(name)) {
+                return pet;
+            }
+        }
+        throw new ArgumentConversionException("Cannot convert '" + name + "' to a Pet");
+    }
+}
@@ -0,0 +1,50 @@
+/* Flight recorder events for code that has to build with --release 8, where jdk.jfr does not exist.
+   The event classes live in src/main/jfr, which the jfr profile compiles on JDK 11 and later.
+   Callers only see the interfaces below and get null from the begin methods when the runtime
+   has no jdk.jfr, the event classes were not built or no recording has the event enabled.
+ */
+final class FlightEvents {
+
+    interface Factory {
+
+        QueryEvent beginQuery();
+
+        ConversionEvent beginConversion();
+    }
+
+    interface QueryEvent {
+
+        // Commits the event if it passed its threshold; label names the query for whoever reads the recording
+        void finish(String label, long rowsScanned, int matches);
+    }
+
+    interface ConversionEvent {
+
+        void finish(Object source, String outcome);
+    }
+
+    private static final Factory FACTORY = load();
+
+    static final boolean AVAILABLE = FACTORY != null;
+
+    private FlightEvents() {
+    }
+
+    static QueryEvent beginQuery() {
+        return FACTORY == null ? null : FACTORY.beginQuery();
+    }
+
+    static ConversionEvent beginConversion() {
+        return FACTORY == null ? null : FACTORY.beginConversion();
+    }
+
+    private static Factory load() {
+        ClassLoader loader = FlightEvents.class.getClassLoader();
+        try {
+            Class.forName("jdk.jfr.Event", false, loader);
+            return (Factory) Class.forName("FlightEventFactory", true, loader).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+            return null;
+        }
+    }
+}
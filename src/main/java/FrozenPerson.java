@@ -0,0 +1,37 @@
+/* Read-only Person for collections that share their people between versions and threads,
+   so a stored person can be handed out as is instead of being copied on every read.
+   The setters throw; callers that want to change a person copy it with new Person(person).
+ */
+final class FrozenPerson extends Person {
+
+    private FrozenPerson(Person person) {
+        super(person);
+    }
+
+    // The person itself when it is already frozen, otherwise a frozen copy
+    static Person of(Person person) {
+        if (person == null || person instanceof FrozenPerson) {
+            return person;
+        }
+        return new FrozenPerson(person);
+    }
+
+    @Override
+    public void setFirstName(String firstName) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setLastName(String lastName) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setAge(Integer age) {
+        throw readOnly();
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Stored people are read-only, copy them to make changes");
+    }
+}
@@ -0,0 +1,134 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/* Log-linear histogram of nanosecond latencies in the spirit of HdrHistogram.
+   Every power of two is split into 32 linear sub-buckets, so a recorded value is
+   reported with at most ~3% error while the whole range fits in a fixed array.
+   Counts are striped like LongAdder cells: each thread records into the stripe picked by its id,
+   so threads on different cores do not fight over the same cache lines; reads add the stripes up.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT * (64 - SUB_BUCKET_BITS);
+
+    // A power of two near the core count, capped because each stripe holds a full bucket array
+    private static final int STRIPES = Math.min(16,
+            Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)));
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    LatencyHistogram() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    void record(long nanos) {
+        long value = Math.max(0L, nanos);
+        Stripe stripe = stripes[(int) mix(Thread.currentThread().getId()) & (STRIPES - 1)];
+        stripe.buckets.getAndIncrement(bucketIndex(value));
+
+        // Only write when the maximum grows, which quickly becomes rare
+        long currentMax;
+        while (value > (currentMax = stripe.max.get())) {
+            if (stripe.max.compareAndSet(currentMax, value)) {
+                break;
+            }
+        }
+    }
+
+    // Adds up the buckets rather than keeping a separate counter, which would cost record() another atomic
+    long getCount() {
+        long count = 0;
+        for (Stripe stripe : stripes) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                count += stripe.buckets.get(i);
+            }
+        }
+        return count;
+    }
+
+    long getMax() {
+        long max = 0;
+        for (Stripe stripe : stripes) {
+            max = Math.max(max, stripe.max.get());
+        }
+        return max;
+    }
+
+    // Returns the highest value equivalent to the bucket holding the requested percentile
+    long valueAtPercentile(double percentile) {
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+        }
+
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (Stripe stripe : stripes) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                long count = stripe.buckets.get(i);
+                snapshot[i] += count;
+                total += count;
+            }
+        }
+        if (total == 0) {
+            return 0L;
+        }
+
+        long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestEquivalentValue(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    String summary() {
+        return "count=" + getCount()
+                + " p50=" + valueAtPercentile(50.0) + "ns"
+                + " p99=" + valueAtPercentile(99.0) + "ns"
+                + " p99.9=" + valueAtPercentile(99.9) + "ns"
+                + " max=" + getMax() + "ns";
+    }
+
+    // Spreads sequential thread ids over the stripes
+    private static long mix(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long lowestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        int subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        return (long) (SUB_BUCKET_COUNT + subBucket) << shift;
+    }
+
+    static long highestEquivalentValue(int index) {
+        return index + 1 < BUCKET_COUNT ? lowestEquivalentValue(index + 1) - 1 : Long.MAX_VALUE;
+    }
+
+    private static final class Stripe {
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong max = new AtomicLong();
+    }
+}
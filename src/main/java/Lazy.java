@@ -0,0 +1,55 @@
+import java.util.function.Supplier;
+
+/* Value computed on first access and memoised afterwards.
+   If the computation throws, the exception propagates and the next access tries again.
+ */
+final class Lazy<T> implements Supplier<T> {
+
+    private final Object description;
+    private Supplier<? extends T> supplier;
+    private volatile boolean resolved;
+    private T value;
+
+    private Lazy(Object description, Supplier<? extends T> supplier) {
+        this.description = description;
+        this.supplier = supplier;
+    }
+
+    static <T> Lazy<T> of(Supplier<? extends T> supplier) {
+        return of(null, supplier);
+    }
+
+    // The description is what toString() shows, so naming an invocation does not force the value
+    static <T> Lazy<T> of(Object description, Supplier<? extends T> supplier) {
+        if (supplier == null) {
+            throw new IllegalArgumentException("Supplier is required");
+        }
+        return new Lazy<>(description, supplier);
+    }
+
+    @Override
+    public T get() {
+        if (!resolved) {
+            synchronized (this) {
+                if (!resolved) {
+                    value = supplier.get();
+                    supplier = null;
+                    resolved = true;
+                }
+            }
+        }
+        return value;
+    }
+
+    boolean isResolved() {
+        return resolved;
+    }
+
+    @Override
+    public String toString() {
+        if (description != null) {
+            return String.valueOf(description);
+        }
+        return resolved ? String.valueOf(value) : "Lazy[unresolved]";
+    }
+}
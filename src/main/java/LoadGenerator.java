@@ -0,0 +1,409 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/* Sustained open-model load against an in-process MessageConverter and PersonStore, or a
+   PartitionedPersonStore in its network-free mode when partitions are set.
+   Request i is due at start + i / rate, whether or not earlier requests are done. Workers take
+   the next due request, wait for its time and run a randomly chosen operation from the mix.
+   Latency is measured from the due time, not from when a worker got to it, so a stall shows up
+   in every request that queued behind it (coordinated omission); service time is kept separately.
+   Every report interval the percentiles of that interval are printed; workers record into the
+   interval through an IntervalRecorder, so a report never misses or races with a late record.
+ */
+final class LoadGenerator {
+
+    enum Operation {
+        CONVERT, LOOKUP, UPDATE
+    }
+
+    // What one request does; the default converts a message or looks up or updates a person
+    interface Workload {
+        void execute(Operation operation, long request) throws Exception;
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final double ratePerSecond;
+    private final long durationNanos;
+    private final int workers;
+    private final int[] cumulativeWeights;
+    private final long reportIntervalNanos;
+    private final PrintStream out;
+    private final Workload workload;
+
+    private LoadGenerator(Builder builder) {
+        this.ratePerSecond = builder.ratePerSecond;
+        this.durationNanos = builder.durationNanos;
+        this.workers = builder.workers;
+        this.reportIntervalNanos = builder.reportIntervalNanos;
+        this.out = builder.out;
+        this.workload = builder.workload != null ? builder.workload
+                : builder.partitions > 0 ? partitionedWorkload(builder.people, builder.partitions)
+                : defaultWorkload(builder.people);
+
+        this.cumulativeWeights = new int[OPERATIONS.length];
+        int total = 0;
+        for (Operation operation : OPERATIONS) {
+            total += builder.weights.getOrDefault(operation, 0);
+            cumulativeWeights[operation.ordinal()] = total;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("The operation mix is empty");
+        }
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    // Usage: LoadGenerator [requests per second] [seconds] [workers] [partitions]
+    public static void main(String[] args) throws InterruptedException {
+        Builder builder = builder();
+        if (args.length > 0) {
+            builder.rate(Double.parseDouble(args[0]));
+        }
+        if (args.length > 1) {
+            builder.duration(Long.parseLong(args[1]), TimeUnit.SECONDS);
+        }
+        if (args.length > 2) {
+            builder.workers(Integer.parseInt(args[2]));
+        }
+        if (args.length > 3) {
+            builder.partitions(Integer.parseInt(args[3]));
+        }
+        System.out.println(builder.build().run().summary());
+    }
+
+    Result run() throws InterruptedException {
+        Result result = new Result();
+        IntervalRecorder interval = new IntervalRecorder();
+        AtomicLong nextRequest = new AtomicLong();
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long start = System.nanoTime();
+        long end = start + durationNanos;
+
+        Thread[] threads = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            threads[i] = new Thread(() -> {
+                while (true) {
+                    long request = nextRequest.getAndIncrement();
+                    long due = start + (long) (request * intervalNanos);
+                    if (due >= end) {
+                        return;
+                    }
+                    long wait;
+                    while ((wait = due - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+
+                    Operation operation = pick();
+                    long started = System.nanoTime();
+                    boolean failed = false;
+                    try {
+                        workload.execute(operation, request);
+                    } catch (Exception e) {
+                        failed = true;
+                    }
+                    long finished = System.nanoTime();
+
+                    result.record(operation, due, started, finished, failed);
+                    interval.record(operation, due, started, finished, failed);
+                }
+            }, "load-worker-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+
+        long nextReport = start + reportIntervalNanos;
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                long untilReport = nextReport - System.nanoTime();
+                if (out == null) {
+                    thread.join();
+                } else if (untilReport <= 0) {
+                    report(interval.swap(), TimeUnit.NANOSECONDS.toSeconds(nextReport - start));
+                    nextReport += reportIntervalNanos;
+                } else {
+                    thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(untilReport)));
+                }
+            }
+        }
+        if (out != null) {
+            report(interval.swap(), TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+        }
+        return result;
+    }
+
+    private Operation pick() {
+        int ticket = ThreadLocalRandom.current().nextInt(cumulativeWeights[OPERATIONS.length - 1]);
+        for (Operation operation : OPERATIONS) {
+            if (ticket < cumulativeWeights[operation.ordinal()]) {
+                return operation;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private void report(Result interval, long elapsedSeconds) {
+        for (Operation operation : OPERATIONS) {
+            if (interval.latency(operation).getCount() > 0) {
+                out.printf("%6ds %-7s %s failed=%d%n", elapsedSeconds, operation,
+                        interval.latency(operation).summary(), interval.failures(operation));
+            }
+        }
+    }
+
+    private static Workload defaultWorkload(int people) {
+        MessageConverter converter = new MessageConverter();
+        PersonStore store = new PersonStore();
+        long[] ids = new long[people];
+        String[] texts = new String[people];
+        for (int i = 0; i < people; i++) {
+            ids[i] = store.add(person(i));
+            texts[i] = "Message " + i;
+        }
+
+        return (operation, request) -> {
+            int index = (int) (request % people);
+            switch (operation) {
+                case CONVERT:
+                    converter.convert(texts[index], null);
+                    break;
+                case LOOKUP:
+                    store.get(ids[index]);
+                    break;
+                case UPDATE:
+                    Person person = store.get(ids[index]);
+                    person.setAge((person.getAge() + 1) % 100);
+                    store.update(ids[index], person);
+                    break;
+            }
+        };
+    }
+
+    // The i-th person of both workloads, so they load the same people
+    private static Person person(int i) {
+        Person person = new Person();
+        person.setFirstName("First" + i);
+        person.setLastName("Last" + i);
+        person.setAge(i % 100);
+        return person;
+    }
+
+    // The same lookups and updates routed over an in-process PartitionedPersonStore
+    private static Workload partitionedWorkload(int people, int partitions) {
+        MessageConverter converter = new MessageConverter();
+        PartitionedPersonStore store = PartitionedPersonStore.inProcess(partitions);
+        String[] texts = new String[people];
+        for (int i = 0; i < people; i++) {
+            try {
+                store.put(i, person(i));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            texts[i] = "Message " + i;
+        }
+
+        return (operation, request) -> {
+            int id = (int) (request % people);
+            switch (operation) {
+                case CONVERT:
+                    converter.convert(texts[id], null);
+                    break;
+                case LOOKUP:
+                    store.get(id);
+                    break;
+                case UPDATE:
+                    Person person = store.get(id);
+                    person.setAge((person.getAge() + 1) % 100);
+                    store.put(id, person);
+                    break;
+            }
+        };
+    }
+
+    // Latency from the due time and service time from the actual start, per operation
+    static final class Result {
+
+        private final Map<Operation, LatencyHistogram> latency = new EnumMap<>(Operation.class);
+        private final Map<Operation, LatencyHistogram> serviceTime = new EnumMap<>(Operation.class);
+        private final Map<Operation, AtomicLong> failures = new EnumMap<>(Operation.class);
+
+        private Result() {
+            for (Operation operation : OPERATIONS) {
+                latency.put(operation, new LatencyHistogram());
+                serviceTime.put(operation, new LatencyHistogram());
+                failures.put(operation, new AtomicLong());
+            }
+        }
+
+        private void record(Operation operation, long due, long started, long finished, boolean failed) {
+            latency.get(operation).record(finished - due);
+            serviceTime.get(operation).record(finished - started);
+            if (failed) {
+                failures.get(operation).incrementAndGet();
+            }
+        }
+
+        LatencyHistogram latency(Operation operation) {
+            return latency.get(operation);
+        }
+
+        LatencyHistogram serviceTime(Operation operation) {
+            return serviceTime.get(operation);
+        }
+
+        long failures(Operation operation) {
+            return failures.get(operation).get();
+        }
+
+        long completed() {
+            long completed = 0;
+            for (Operation operation : OPERATIONS) {
+                completed += latency.get(operation).getCount();
+            }
+            return completed;
+        }
+
+        String summary() {
+            StringBuilder summary = new StringBuilder().append(completed()).append(" requests");
+            for (Operation operation : OPERATIONS) {
+                summary.append(System.lineSeparator()).append(operation)
+                        .append(" latency ").append(latency(operation).summary())
+                        .append(System.lineSeparator()).append(operation)
+                        .append(" service ").append(serviceTime(operation).summary())
+                        .append(" failed=").append(failures(operation));
+            }
+            return summary.toString();
+        }
+    }
+
+    /* Hands the reporter a finished interval while workers keep recording (a writer-reader phaser).
+       A worker counts itself into the current phase on startEpoch and out on that phase's end
+       counter; the sign of startEpoch tells the two phases apart. swap() installs a fresh Result,
+       flips the phase and spins until every record that started in the old phase has ended, so
+       nothing is written into the returned Result afterwards. Only the reporting thread swaps.
+     */
+    private static final class IntervalRecorder {
+
+        private final AtomicLong startEpoch = new AtomicLong();
+        private final AtomicLong evenEndEpoch = new AtomicLong();
+        private final AtomicLong oddEndEpoch = new AtomicLong(Long.MIN_VALUE);
+        private volatile Result active = new Result();
+
+        void record(Operation operation, long due, long started, long finished, boolean failed) {
+            long epoch = startEpoch.getAndIncrement();
+            try {
+                active.record(operation, due, started, finished, failed);
+            } finally {
+                (epoch < 0 ? oddEndEpoch : evenEndEpoch).getAndIncrement();
+            }
+        }
+
+        Result swap() {
+            Result finished = active;
+            active = new Result();
+
+            boolean nextPhaseIsEven = startEpoch.get() < 0;
+            long initial = nextPhaseIsEven ? 0 : Long.MIN_VALUE;
+            (nextPhaseIsEven ? evenEndEpoch : oddEndEpoch).set(initial);
+            long startedAtFlip = startEpoch.getAndSet(initial);
+            AtomicLong previousEnd = nextPhaseIsEven ? oddEndEpoch : evenEndEpoch;
+            while (previousEnd.get() != startedAtFlip) {
+                Thread.yield();
+            }
+            return finished;
+        }
+    }
+
+    static final class Builder {
+
+        private double ratePerSecond = 1_000;
+        private long durationNanos = TimeUnit.SECONDS.toNanos(10);
+        private int workers = Runtime.getRuntime().availableProcessors();
+        private final Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        private long reportIntervalNanos = TimeUnit.SECONDS.toNanos(1);
+        private PrintStream out = System.out;
+        private int people = 10_000;
+        private int partitions;
+        private Workload workload;
+
+        private Builder() {
+        }
+
+        Builder rate(double requestsPerSecond) {
+            if (!(requestsPerSecond > 0)) {
+                throw new IllegalArgumentException("Rate must be positive: " + requestsPerSecond);
+            }
+            this.ratePerSecond = requestsPerSecond;
+            return this;
+        }
+
+        Builder duration(long duration, TimeUnit unit) {
+            this.durationNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        Builder workers(int workers) {
+            if (workers < 1) {
+                throw new IllegalArgumentException("At least one worker is needed: " + workers);
+            }
+            this.workers = workers;
+            return this;
+        }
+
+        // Relative share of an operation; all three are equally likely unless set
+        Builder mix(Operation operation, int weight) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("Weight must not be negative: " + weight);
+            }
+            weights.put(operation, weight);
+            return this;
+        }
+
+        // Null turns the periodic report off
+        Builder reportEvery(long interval, TimeUnit unit, PrintStream out) {
+            this.reportIntervalNanos = Math.max(1, unit.toNanos(interval));
+            this.out = out;
+            return this;
+        }
+
+        Builder people(int people) {
+            if (people < 1) {
+                throw new IllegalArgumentException("At least one person is needed: " + people);
+            }
+            this.people = people;
+            return this;
+        }
+
+        // Runs the default workload against this many in-process partitions instead of one PersonStore
+        Builder partitions(int partitions) {
+            if (partitions < 1) {
+                throw new IllegalArgumentException("At least one partition is needed: " + partitions);
+            }
+            this.partitions = partitions;
+            return this;
+        }
+
+        Builder workload(Workload workload) {
+            this.workload = workload;
+            return this;
+        }
+
+        LoadGenerator build() {
+            if (weights.isEmpty()) {
+                for (Operation operation : OPERATIONS) {
+                    weights.put(operation, 1);
+                }
+            }
+            return new LoadGenerator(this);
+        }
+    }
+}
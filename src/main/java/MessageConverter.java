@@ -3,19 +3,78 @@ import org.junit.jupiter.params.converter.ArgumentConversionException;
 import org.junit.jupiter.params.converter.ArgumentConverter;
 
 final class MessageConverter implements ArgumentConverter {
+
+    static final int CONVERTED = 0;
+    static final int NULL_SOURCE = 1;
+    static final int NOT_STRING = 2;
+    static final int BLANK = 3;
+
+    private static final String[] OUTCOMES = {"converted", "nullSource", "notString", "blank"};
+
+    // Optional, equal texts share one String when set
+    private final MessageTextPool textPool;
+    // Optional, conversions are not measured when null
+    private final OperationMetrics metrics;
+
+    MessageConverter() {
+        this(null, null);
+    }
+
+    MessageConverter(MessageTextPool textPool) {
+        this(textPool, null);
+    }
+
+    MessageConverter(MessageTextPool textPool, OperationMetrics metrics) {
+        this.textPool = textPool;
+        this.metrics = metrics;
+    }
+
+    static OperationMetrics newMetrics() {
+        return new OperationMetrics("MessageConverter", OUTCOMES);
+    }
+
     public Object convert(Object source, ParameterContext parameterContext) throws ArgumentConversionException {
-        checkSource(source);
+        long start = metrics == null ? 0L : System.nanoTime();
+        FlightEvents.ConversionEvent event = FlightEvents.beginConversion();
+        checkSource(source, start, event);
+
+        String sourceString = canonical(source.toString());
+        Message message = new Message(sourceString);
+        record(CONVERTED, start, source, event);
+        return message;
+    }
+
+    // Fills a reusable slot instead of allocating a new Message
+    void convertInto(Object source, MessageSlot slot) throws ArgumentConversionException {
+        long start = metrics == null ? 0L : System.nanoTime();
+        FlightEvents.ConversionEvent event = FlightEvents.beginConversion();
+        checkSource(source, start, event);
+
+        slot.setMessage(canonical(source.toString()));
+        record(CONVERTED, start, source, event);
+    }
+
+    private String canonical(String sourceString) {
+        return textPool == null ? sourceString : textPool.intern(sourceString);
+    }
 
-        String sourceString = source.toString();
-        return new Message(sourceString);
+    private void record(int outcome, long start, Object source, FlightEvents.ConversionEvent event) {
+        if (metrics != null) {
+            metrics.record(outcome, start);
+        }
+        if (event != null) {
+            event.finish(source, OUTCOMES[outcome]);
+        }
     }
 
-    private void checkSource(Object source) {
+    private void checkSource(Object source, long start, FlightEvents.ConversionEvent event) {
         if (source == null) {
+            record(NULL_SOURCE, start, null, event);
             throw new ArgumentConversionException("Cannot convert null source object");
         }
 
         if (!source.getClass().equals(String.class)) {
+            record(NOT_STRING, start, source, event);
             throw new ArgumentConversionException(
                     "Cannot convert source object because it's not a string"
             );
@@ -23,6 +82,7 @@ final class MessageConverter implements ArgumentConverter {
 
         String sourceString = (String) source;
         if (sourceString.trim().isEmpty()) {
+            record(BLANK, start, source, event);
             throw new ArgumentConversionException(
                     "Cannot convert an empty source string"
             );
@@ -0,0 +1,553 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/* Append-only log of messages addressed by offset (0, 1, 2, ...), stored in segment files of at
+   most segmentBytes each. A segment is named after its first offset and has a sparse index with
+   the file position of every indexInterval-th record. Appends are encoded into one buffer and
+   written with a single FileChannel write per batch; reads map the segment and hand out
+   MessageViews over the mapped bytes. Records are [length, CRC32 of length and text, UTF-8 text].
+   The active segment is grown to segmentBytes with zeros when it is opened for appending and
+   mapped once at that size, so reads never map it again while it fills up; the CRC covering the
+   length keeps zeros from passing for empty messages. A rolled segment is cut to its records.
+   An append(List) is all or nothing: readers see none of its messages until all are written,
+   and a failed append is undone, so a later one continues where the last complete one ended.
+ */
+final class MessageLog implements Closeable {
+
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final String LOG_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".index";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int indexInterval;
+    private final ConcurrentNavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    private Segment active;
+    private volatile long nextOffset;
+
+    private MessageLog(Path directory, int segmentBytes, int indexInterval) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.indexInterval = indexInterval;
+    }
+
+    static MessageLog open(Path directory, int segmentBytes, int indexInterval) throws IOException {
+        if (segmentBytes < 1024) {
+            throw new IllegalArgumentException("Segments must hold at least 1024 bytes: " + segmentBytes);
+        }
+        if (indexInterval < 1) {
+            throw new IllegalArgumentException("Index interval must be positive: " + indexInterval);
+        }
+
+        Files.createDirectories(directory);
+        MessageLog log = new MessageLog(directory, segmentBytes, indexInterval);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + LOG_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long baseOffset = Long.parseLong(name.substring(0, name.length() - LOG_SUFFIX.length()));
+                log.segments.put(baseOffset, new Segment(directory, baseOffset));
+            }
+        }
+
+        if (log.segments.isEmpty()) {
+            log.active = new Segment(directory, 0);
+            log.segments.put(0L, log.active);
+        } else {
+            log.active = log.segments.lastEntry().getValue();
+        }
+        // Only the last segment can have a torn tail, the others were complete when they were rolled
+        log.active.recover(indexInterval);
+        for (Segment segment : log.segments.values()) {
+            if (segment != log.active) {
+                segment.loadIndex(indexInterval);
+            }
+        }
+        log.nextOffset = log.active.baseOffset + log.active.count;
+        log.active.openForAppend(segmentBytes);
+        return log;
+    }
+
+    long firstOffset() {
+        return segments.firstKey();
+    }
+
+    // Offset the next appended message will get
+    long nextOffset() {
+        return nextOffset;
+    }
+
+    long append(String message) throws IOException {
+        return append(Collections.singletonList(message));
+    }
+
+    // Appends all messages with one write per segment and returns the offset of the first one
+    synchronized long append(List<String> messages) throws IOException {
+        List<byte[]> texts = new ArrayList<>(messages.size());
+        for (String message : messages) {
+            byte[] text = message.getBytes(StandardCharsets.UTF_8);
+            if (RECORD_HEADER_SIZE + text.length > segmentBytes) {
+                throw new IllegalArgumentException("Message of " + text.length + " bytes does not fit a segment");
+            }
+            texts.add(text);
+        }
+
+        long first = nextOffset;
+        Segment start = active;
+        int startSize = start.size;
+        int startCount = start.count;
+        int startIndexSize = start.indexSize();
+        try {
+            List<byte[]> pending = new ArrayList<>();
+            int pendingBytes = 0;
+            long next = first;
+            for (byte[] text : texts) {
+                int recordSize = RECORD_HEADER_SIZE + text.length;
+                if (active.size + pendingBytes + recordSize > segmentBytes) {
+                    next += flush(pending);
+                    pending.clear();
+                    pendingBytes = 0;
+                    roll(next);
+                }
+                pending.add(text);
+                pendingBytes += recordSize;
+            }
+            next += flush(pending);
+            // Only now can readers get to the new messages
+            nextOffset = next;
+        } catch (IOException | RuntimeException e) {
+            try {
+                undo(start, startSize, startCount, startIndexSize);
+            } catch (IOException | RuntimeException undoFailure) {
+                e.addSuppressed(undoFailure);
+            }
+            throw e;
+        }
+        return first;
+    }
+
+    MessageView read(long offset) throws IOException {
+        MessageView view = new MessageView();
+        if (!locate(offset, view)) {
+            throw new NoSuchElementException("No message at offset " + offset);
+        }
+        return view;
+    }
+
+    /* Passes every message from fromOffset to the end of the log to the consumer, reusing one view,
+       and returns the offset after the last message passed on.
+     */
+    long replay(long fromOffset, Consumer<MessageView> consumer) throws IOException {
+        long end = nextOffset;
+        long offset = Math.max(fromOffset, firstOffset());
+        MessageView view = new MessageView();
+
+        while (offset < end) {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(offset);
+            if (entry == null) {
+                break;
+            }
+            Segment segment = entry.getValue();
+            ByteBuffer mapped = segment.mapped();
+            int position = segment.positionOf(offset, mapped);
+            long segmentEnd = Math.min(end, segment.baseOffset + segment.count);
+
+            while (offset < segmentEnd) {
+                int length = mapped.getInt(position);
+                view.reset(mapped, position + RECORD_HEADER_SIZE, length, offset);
+                consumer.accept(view);
+                position += RECORD_HEADER_SIZE + length;
+                offset++;
+            }
+        }
+        return offset;
+    }
+
+    /* Deletes whole segments from the start of the log while the log is larger than maxBytes
+       or the segment was last written more than maxAgeMillis ago. The active segment is kept.
+     */
+    synchronized int enforceRetention(long maxBytes, long maxAgeMillis) throws IOException {
+        long total = 0;
+        for (Segment segment : segments.values()) {
+            total += segment.size;
+        }
+
+        long now = System.currentTimeMillis();
+        int deleted = 0;
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            if (segment == active) {
+                break;
+            }
+            boolean tooLarge = total > maxBytes;
+            boolean tooOld = now - Files.getLastModifiedTime(segment.logFile).toMillis() > maxAgeMillis;
+            if (!tooLarge && !tooOld) {
+                break;
+            }
+
+            segments.remove(segment.baseOffset);
+            total -= segment.size;
+            segment.delete();
+            deleted++;
+        }
+        return deleted;
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        active.closeForAppend();
+    }
+
+    private boolean locate(long offset, MessageView view) throws IOException {
+        if (offset >= nextOffset) {
+            return false;
+        }
+        Map.Entry<Long, Segment> entry = segments.floorEntry(offset);
+        if (entry == null || offset >= entry.getKey() + entry.getValue().count) {
+            return false;
+        }
+
+        ByteBuffer mapped = entry.getValue().mapped();
+        int position = entry.getValue().positionOf(offset, mapped);
+        view.reset(mapped, position + RECORD_HEADER_SIZE, mapped.getInt(position), offset);
+        return true;
+    }
+
+    // Writes the records to the active segment and returns how many there were
+    private int flush(List<byte[]> texts) throws IOException {
+        if (texts.isEmpty()) {
+            return 0;
+        }
+
+        int bytes = 0;
+        for (byte[] text : texts) {
+            bytes += RECORD_HEADER_SIZE + text.length;
+        }
+        ByteBuffer records = ByteBuffer.allocate(bytes);
+        CRC32 crc = new CRC32();
+        for (byte[] text : texts) {
+            int start = records.position();
+            records.putInt(text.length).putInt(0).put(text);
+            crc.reset();
+            crc.update(records.array(), start, 4);
+            crc.update(text, 0, text.length);
+            records.putInt(start + 4, (int) crc.getValue());
+        }
+        records.flip();
+
+        active.write(records, texts, indexInterval);
+        return texts.size();
+    }
+
+    private void roll(long baseOffset) throws IOException {
+        active.closeForAppend();
+        Segment next = new Segment(directory, baseOffset);
+        segments.put(next.baseOffset, next);
+        active = next;
+        next.openForAppend(segmentBytes);
+    }
+
+    // Puts the log back to how it was before a failed append
+    private void undo(Segment start, int size, int count, int indexSize) throws IOException {
+        while (active != start) {
+            segments.remove(active.baseOffset);
+            active.delete();
+            active = segments.lastEntry().getValue();
+        }
+        if (!start.isOpenForAppend()) {
+            start.openForAppend(segmentBytes);
+        }
+        start.truncate(size, count, indexSize);
+    }
+
+    /* The length of the intact record at position, or -1 if there is none. The CRC covers the
+       length field as well as the text, so the zeros after the last record never pass.
+     */
+    private static int recordLength(ByteBuffer bytes, int position, int end, CRC32 crc) {
+        if (position + RECORD_HEADER_SIZE > end) {
+            return -1;
+        }
+        int length = bytes.getInt(position);
+        if (length < 0 || length > end - position - RECORD_HEADER_SIZE) {
+            return -1;
+        }
+        ByteBuffer field = bytes.duplicate();
+        field.limit(position + 4).position(position);
+        ByteBuffer text = bytes.duplicate();
+        text.limit(position + RECORD_HEADER_SIZE + length).position(position + RECORD_HEADER_SIZE);
+        crc.reset();
+        crc.update(field);
+        crc.update(text);
+        return (int) crc.getValue() == bytes.getInt(position + 4) ? length : -1;
+    }
+
+    private static final class Segment {
+
+        private final long baseOffset;
+        private final Path logFile;
+        private final Path indexFile;
+
+        // Sparse index: relative offset and file position of every indexInterval-th record
+        private int[] indexOffsets = new int[16];
+        private int[] indexPositions = new int[16];
+        private int indexSize;
+
+        private volatile int size;
+        private volatile int count;
+        private volatile MappedByteBuffer mapping;
+
+        private FileChannel logChannel;
+        private FileChannel indexChannel;
+
+        Segment(Path directory, long baseOffset) {
+            String name = String.format("%020d", baseOffset);
+            this.baseOffset = baseOffset;
+            this.logFile = directory.resolve(name + LOG_SUFFIX);
+            this.indexFile = directory.resolve(name + INDEX_SUFFIX);
+        }
+
+        // Scans the records, cuts off a torn tail and rebuilds the index
+        void recover(int indexInterval) throws IOException {
+            if (!Files.exists(logFile)) {
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                int position = 0;
+                int records = 0;
+                CRC32 crc = new CRC32();
+                int length;
+                while ((length = recordLength(bytes, position, bytes.limit(), crc)) >= 0) {
+                    if (records % indexInterval == 0) {
+                        addIndexEntry(records, position);
+                    }
+                    position += RECORD_HEADER_SIZE + length;
+                    records++;
+                }
+                channel.truncate(position);
+                size = position;
+                count = records;
+            }
+            rewriteIndex();
+        }
+
+        /* Loads the index of a rolled segment and counts its records. The index is checked against
+           the log, since an index that was not forced before a crash can be short or stale, and
+           the segment is recovered from its log instead when the two do not agree.
+         */
+        void loadIndex(int indexInterval) throws IOException {
+            if (!Files.exists(indexFile)) {
+                recover(indexInterval);
+                return;
+            }
+
+            ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(indexFile));
+            while (index.remaining() >= 8) {
+                addIndexEntry(index.getInt(), index.getInt());
+            }
+            ByteBuffer mapped = mapped();
+            size = mapped.limit();
+
+            int records = countRecords(mapped, index.hasRemaining());
+            if (records < 0) {
+                synchronized (this) {
+                    indexSize = 0;
+                }
+                mapping = null;
+                recover(indexInterval);
+                return;
+            }
+            count = records;
+        }
+
+        // Number of records if the index entries point at intact records that run to the end, or -1
+        private int countRecords(ByteBuffer mapped, boolean partialEntry) {
+            if (partialEntry || (indexSize == 0) != (size == 0)
+                    || indexSize > 0 && (indexOffsets[0] != 0 || indexPositions[0] != 0)) {
+                return -1;
+            }
+            CRC32 crc = new CRC32();
+            for (int i = 1; i < indexSize; i++) {
+                if (indexOffsets[i] <= indexOffsets[i - 1] || indexPositions[i] <= indexPositions[i - 1]
+                        || indexPositions[i] >= size || recordLength(mapped, indexPositions[i], size, crc) < 0) {
+                    return -1;
+                }
+            }
+
+            // Count the records after the last index entry
+            int position = indexSize == 0 ? 0 : indexPositions[indexSize - 1];
+            int records = indexSize == 0 ? 0 : indexOffsets[indexSize - 1];
+            while (position < size) {
+                int length = recordLength(mapped, position, size, crc);
+                if (length < 0) {
+                    return -1;
+                }
+                position += RECORD_HEADER_SIZE + length;
+                records++;
+            }
+            return records;
+        }
+
+        // Opens the segment for appending and grows it to segmentBytes so it is mapped only once
+        void openForAppend(int segmentBytes) throws IOException {
+            logChannel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            if (logChannel.size() < segmentBytes) {
+                logChannel.write(ByteBuffer.allocate(1), segmentBytes - 1);
+            }
+            logChannel.position(size);
+            indexChannel = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            mapping = null;
+        }
+
+        boolean isOpenForAppend() {
+            return logChannel != null;
+        }
+
+        // Cuts off the space that was never written and forces the log and its index
+        void closeForAppend() throws IOException {
+            if (logChannel != null) {
+                logChannel.truncate(size);
+                logChannel.force(false);
+                indexChannel.force(false);
+                logChannel.close();
+                indexChannel.close();
+                logChannel = null;
+                indexChannel = null;
+                mapping = null;
+            }
+        }
+
+        void write(ByteBuffer records, List<byte[]> texts, int indexInterval) throws IOException {
+            int position = size;
+            int relativeOffset = count;
+            int firstNewEntry = indexSize;
+            for (byte[] text : texts) {
+                if (relativeOffset % indexInterval == 0) {
+                    addIndexEntry(relativeOffset, position);
+                }
+                position += RECORD_HEADER_SIZE + text.length;
+                relativeOffset++;
+            }
+
+            while (records.hasRemaining()) {
+                logChannel.write(records);
+            }
+            if (indexSize > firstNewEntry) {
+                ByteBuffer entries = ByteBuffer.allocate((indexSize - firstNewEntry) * 8);
+                for (int i = firstNewEntry; i < indexSize; i++) {
+                    entries.putInt(indexOffsets[i]).putInt(indexPositions[i]);
+                }
+                entries.flip();
+                while (entries.hasRemaining()) {
+                    indexChannel.write(entries);
+                }
+            }
+
+            size = position;
+            count = relativeOffset;
+        }
+
+        /* Drops what was written after the segment had size bytes, count records and indexSize
+           index entries. The dropped bytes are zeroed so a crash cannot bring them back.
+         */
+        void truncate(int size, int count, int indexSize) throws IOException {
+            this.size = size;
+            this.count = count;
+            synchronized (this) {
+                this.indexSize = indexSize;
+            }
+
+            ByteBuffer zeros = ByteBuffer.allocate((int) Math.max(0, logChannel.position() - size));
+            long position = size;
+            while (zeros.hasRemaining()) {
+                position += logChannel.write(zeros, position);
+            }
+            logChannel.position(size);
+            indexChannel.truncate(indexSize * 8L);
+        }
+
+        synchronized int indexSize() {
+            return indexSize;
+        }
+
+        // Maps the segment, which is only needed again if it grew past a mapping made before
+        ByteBuffer mapped() throws IOException {
+            MappedByteBuffer current = mapping;
+            int currentSize = size;
+            if (current == null || current.limit() < currentSize) {
+                try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+                    current = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.max(currentSize, channel.size()));
+                }
+                mapping = current;
+            }
+            return current;
+        }
+
+        int positionOf(long offset, ByteBuffer mapped) {
+            int relative = (int) (offset - baseOffset);
+            int low = 0;
+            int high;
+            synchronized (this) {
+                high = indexSize - 1;
+            }
+            int entry = 0;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (indexOffsets[middle] <= relative) {
+                    entry = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+
+            int position = indexPositions[entry];
+            for (int current = indexOffsets[entry]; current < relative; current++) {
+                position += RECORD_HEADER_SIZE + mapped.getInt(position);
+            }
+            return position;
+        }
+
+        void delete() throws IOException {
+            closeForAppend();
+            Files.deleteIfExists(logFile);
+            Files.deleteIfExists(indexFile);
+        }
+
+        private synchronized void addIndexEntry(int relativeOffset, int position) {
+            if (indexSize == indexOffsets.length) {
+                indexOffsets = Arrays.copyOf(indexOffsets, indexSize * 2);
+                indexPositions = Arrays.copyOf(indexPositions, indexSize * 2);
+            }
+            indexOffsets[indexSize] = relativeOffset;
+            indexPositions[indexSize] = position;
+            indexSize++;
+        }
+
+        private void rewriteIndex() throws IOException {
+            ByteBuffer entries = ByteBuffer.allocate(indexSize * 8);
+            for (int i = 0; i < indexSize; i++) {
+                entries.putInt(indexOffsets[i]).putInt(indexPositions[i]);
+            }
+            Files.write(indexFile, entries.array());
+        }
+    }
+}
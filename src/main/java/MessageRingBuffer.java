@@ -0,0 +1,159 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/* Preallocated ring of mutable MessageSlots for handing messages from producers to one consumer.
+   Every slot carries its own sequence number: a slot is free for sequence s when its sequence is s,
+   and readable when its sequence is s + 1. Producers claim a sequence, fill the slot in place
+   and publish it; the consumer reads it and hands the slot back for the next lap.
+ */
+final class MessageRingBuffer {
+
+    enum ProducerType {
+        SINGLE,
+        MULTI
+    }
+
+    enum WaitStrategy {
+        BUSY_SPIN {
+            @Override
+            void idle() {
+            }
+        },
+        YIELD {
+            @Override
+            void idle() {
+                Thread.yield();
+            }
+        },
+        PARK {
+            @Override
+            void idle() {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        };
+
+        private static final long PARK_NANOS = 1_000L;
+
+        abstract void idle();
+    }
+
+    private final MessageSlot[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final ProducerType producerType;
+    private final WaitStrategy waitStrategy;
+
+    // Only touched by the producer thread in SINGLE mode
+    private long nextProducerSequence;
+    private final AtomicLong sharedProducerSequence = new AtomicLong();
+
+    // Only touched by the consumer thread
+    private long nextConsumerSequence;
+
+    MessageRingBuffer(int capacity, ProducerType producerType, WaitStrategy waitStrategy) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a positive power of two: " + capacity);
+        }
+        if (producerType == null || waitStrategy == null) {
+            throw new IllegalArgumentException("Producer type and wait strategy are required");
+        }
+
+        this.slots = new MessageSlot[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.producerType = producerType;
+        this.waitStrategy = waitStrategy;
+
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new MessageSlot();
+            sequences.set(i, i);
+        }
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    /* Claims the next sequence, waiting while the ring is full.
+       The caller must fill slot(sequence) and then call publish(sequence), also when filling fails:
+       an unpublished sequence stalls the consumer for good. publish(Consumer) does this for you.
+     */
+    long claim() {
+        long sequence = producerType == ProducerType.SINGLE
+                ? nextProducerSequence++
+                : sharedProducerSequence.getAndIncrement();
+
+        int index = (int) (sequence & mask);
+        while (sequences.get(index) != sequence) {
+            waitStrategy.idle();
+        }
+        return sequence;
+    }
+
+    MessageSlot slot(long sequence) {
+        return slots[(int) (sequence & mask)];
+    }
+
+    void publish(long sequence) {
+        sequences.lazySet((int) (sequence & mask), sequence + 1);
+    }
+
+    void publish(String message) {
+        long sequence = claim();
+        slot(sequence).setMessage(message);
+        publish(sequence);
+    }
+
+    /* Claims a slot, lets the filler write into it and always publishes it. When the filler throws,
+       the slot is published marked failed so the consumer can skip it, and the exception is rethrown.
+     */
+    void publish(Consumer<? super MessageSlot> filler) {
+        long sequence = claim();
+        MessageSlot slot = slot(sequence);
+        try {
+            filler.accept(slot);
+        } catch (RuntimeException e) {
+            slot.fail(e);
+            throw e;
+        } finally {
+            publish(sequence);
+        }
+    }
+
+    /* Passes the next published slot to the handler without waiting.
+       The slot is only valid during the call; copy the message out if it must outlive it.
+     */
+    boolean poll(Consumer<? super MessageSlot> handler) {
+        long sequence = nextConsumerSequence;
+        int index = (int) (sequence & mask);
+        if (sequences.get(index) != sequence + 1) {
+            return false;
+        }
+
+        release(sequence, index, handler);
+        return true;
+    }
+
+    void take(Consumer<? super MessageSlot> handler) {
+        long sequence = nextConsumerSequence;
+        int index = (int) (sequence & mask);
+        while (sequences.get(index) != sequence + 1) {
+            waitStrategy.idle();
+        }
+
+        release(sequence, index, handler);
+    }
+
+    private void release(long sequence, int index, Consumer<? super MessageSlot> handler) {
+        MessageSlot slot = slots[index];
+        try {
+            handler.accept(slot);
+        } finally {
+            slot.clear();
+            nextConsumerSequence = sequence + 1;
+            sequences.lazySet(index, sequence + slots.length);
+        }
+    }
+}
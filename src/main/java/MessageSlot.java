@@ -0,0 +1,36 @@
+final class MessageSlot {
+
+    private String message;
+    // Set when the producer failed to fill the slot, see MessageRingBuffer.publish(Consumer)
+    private RuntimeException failure;
+
+    String getMessage() {
+        return message;
+    }
+
+    void setMessage(String message) {
+        this.message = message;
+    }
+
+    boolean isFailed() {
+        return failure != null;
+    }
+
+    RuntimeException getFailure() {
+        return failure;
+    }
+
+    void fail(RuntimeException failure) {
+        this.message = null;
+        this.failure = failure;
+    }
+
+    void clear() {
+        message = null;
+        failure = null;
+    }
+
+    Message toMessage() {
+        return new Message(message);
+    }
+}
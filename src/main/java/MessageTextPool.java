@@ -0,0 +1,141 @@
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Canonicalises message texts so that equal texts share one String instance.
+   Entries are only weakly referenced, so a text disappears from the pool once
+   no Message holds on to it anymore. When the pool is full new texts are
+   returned as is instead of evicting live entries.
+ */
+final class MessageTextPool {
+
+    private final ConcurrentMap<TextKey, TextKey> entries = new ConcurrentHashMap<>();
+    private final ReferenceQueue<String> collected = new ReferenceQueue<>();
+    private final int maxSize;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    MessageTextPool(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    String intern(String text) {
+        if (text == null) {
+            return null;
+        }
+        expungeCollected();
+
+        TextKey probe = new TextKey(text, null);
+        while (true) {
+            TextKey existing = entries.get(probe);
+            if (existing != null) {
+                String pooled = existing.get();
+                if (pooled != null) {
+                    hits.increment();
+                    return pooled;
+                }
+                // Collected but not yet expunged
+                entries.remove(existing, existing);
+                continue;
+            }
+
+            if (entries.size() >= maxSize) {
+                rejected.increment();
+                return text;
+            }
+
+            TextKey entry = new TextKey(text, collected);
+            if (entries.putIfAbsent(entry, entry) == null) {
+                misses.increment();
+                return text;
+            }
+        }
+    }
+
+    int size() {
+        expungeCollected();
+        return entries.size();
+    }
+
+    Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), rejected.sum(), size());
+    }
+
+    private void expungeCollected() {
+        Object reference;
+        while ((reference = collected.poll()) != null) {
+            entries.remove(reference, reference);
+        }
+    }
+
+    static final class Stats {
+
+        private final long hits;
+        private final long misses;
+        private final long rejected;
+        private final int size;
+
+        Stats(long hits, long misses, long rejected, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.rejected = rejected;
+            this.size = size;
+        }
+
+        long getHits() {
+            return hits;
+        }
+
+        long getMisses() {
+            return misses;
+        }
+
+        long getRejected() {
+            return rejected;
+        }
+
+        int getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + ", misses=" + misses + ", rejected=" + rejected + ", size=" + size;
+        }
+    }
+
+    private static final class TextKey extends WeakReference<String> {
+
+        private final int hash;
+
+        TextKey(String text, ReferenceQueue<String> queue) {
+            super(text, queue);
+            this.hash = text.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof TextKey) || hash != other.hashCode()) {
+                return false;
+            }
+
+            String text = get();
+            return text != null && text.equals(((TextKey) other).get());
+        }
+    }
+}
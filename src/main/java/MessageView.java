@@ -0,0 +1,47 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/* A message read straight from MessageLog's mapped segment bytes.
+   The text is only decoded when getMessage() is called. During replay one view is reused
+   for every record, so copy what you need with toMessage() if it must outlive the callback.
+ */
+final class MessageView {
+
+    private ByteBuffer buffer;
+    private int position;
+    private int length;
+    private long offset;
+
+    void reset(ByteBuffer buffer, int position, int length, long offset) {
+        this.buffer = buffer;
+        this.position = position;
+        this.length = length;
+        this.offset = offset;
+    }
+
+    long offset() {
+        return offset;
+    }
+
+    int length() {
+        return length;
+    }
+
+    ByteBuffer bytes() {
+        ByteBuffer bytes = buffer.duplicate();
+        bytes.limit(position + length).position(position);
+        return bytes.slice().asReadOnlyBuffer();
+    }
+
+    String getMessage() {
+        byte[] text = new byte[length];
+        ByteBuffer bytes = buffer.duplicate();
+        bytes.position(position);
+        bytes.get(text);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    Message toMessage() {
+        return new Message(getMessage());
+    }
+}
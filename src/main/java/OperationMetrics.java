@@ -0,0 +1,111 @@
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Outcome counters and a latency histogram for one hot-path operation.
+   Callers hold a nullable reference and skip all bookkeeping when it is null,
+   so disabled metrics cost a single branch.
+ */
+final class OperationMetrics implements OperationMetricsMXBean {
+
+    private final String name;
+    private final String[] outcomes;
+    private final LongAdder[] counters;
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    OperationMetrics(String name, String... outcomes) {
+        if (outcomes.length == 0) {
+            throw new IllegalArgumentException("At least one outcome is required");
+        }
+
+        this.name = name;
+        this.outcomes = outcomes.clone();
+        this.counters = new LongAdder[outcomes.length];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    void record(int outcome, long startNanos) {
+        counters[outcome].increment();
+        latency.record(System.nanoTime() - startNanos);
+    }
+
+    long getCount(int outcome) {
+        return counters[outcome].sum();
+    }
+
+    LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public Map<String, Long> getOutcomeCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < outcomes.length; i++) {
+            counts.put(outcomes[i], counters[i].sum());
+        }
+        return counts;
+    }
+
+    @Override
+    public long getLatencyCount() {
+        return latency.getCount();
+    }
+
+    @Override
+    public long getLatencyP50Nanos() {
+        return latency.valueAtPercentile(50.0);
+    }
+
+    @Override
+    public long getLatencyP99Nanos() {
+        return latency.valueAtPercentile(99.0);
+    }
+
+    @Override
+    public long getLatencyMaxNanos() {
+        return latency.getMax();
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder builder = new StringBuilder(name).append(':');
+        for (Map.Entry<String, Long> count : getOutcomeCounts().entrySet()) {
+            builder.append(' ').append(count.getKey()).append('=').append(count.getValue());
+        }
+        return builder.append(" | ").append(latency.summary()).toString();
+    }
+
+    ObjectName objectName() throws JMException {
+        return new ObjectName("JUnitTesting:type=OperationMetrics,name=" + ObjectName.quote(name));
+    }
+
+    void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(this, objectName());
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register metrics " + name, e);
+        }
+    }
+
+    void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(objectName())) {
+                server.unregisterMBean(objectName());
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister metrics " + name, e);
+        }
+    }
+}
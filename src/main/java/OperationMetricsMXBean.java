@@ -0,0 +1,16 @@
+import java.util.Map;
+
+public interface OperationMetricsMXBean {
+
+    Map<String, Long> getOutcomeCounts();
+
+    long getLatencyCount();
+
+    long getLatencyP50Nanos();
+
+    long getLatencyP99Nanos();
+
+    long getLatencyMaxNanos();
+
+    String dump();
+}
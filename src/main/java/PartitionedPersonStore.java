@@ -0,0 +1,447 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* Person store spread over several partitions by a hash of the person id.
+   Single-id operations go straight to the owning partition, getAll() sends one batched request to
+   each partition involved and ageBetween() asks all partitions at once and merges the answers.
+   Partitions are either PersonStoreNodes reached over PersonStoreProtocol, or plain in-process
+   PersonStores, which runs the same routing without any networking for benchmarks and tests
+   (LoadGenerator with partitions set). In-process partitions share one JVM's CPUs, so they
+   measure the routing cost, not how separate nodes add capacity.
+ */
+final class PartitionedPersonStore implements Closeable {
+
+    // Connections each client keeps to every node at most, and so its requests in flight per node
+    static final int CONNECTIONS_PER_NODE = 4;
+
+    private final Partition[] partitions;
+    private final ExecutorService executor;
+
+    private PartitionedPersonStore(Partition[] partitions, int requestsPerPartition) {
+        this.partitions = partitions;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(partitions.length * requestsPerPartition, task -> {
+            Thread thread = new Thread(task, "person-store-client-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Network-free mode: every partition is a PersonStore in this JVM
+    static PartitionedPersonStore inProcess(int partitionCount) {
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("At least one partition is needed: " + partitionCount);
+        }
+        Partition[] partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new LocalPartition(new PersonStore());
+        }
+        return new PartitionedPersonStore(partitions, 1);
+    }
+
+    // One partition per node, in the given order; every client must list the nodes in the same order
+    static PartitionedPersonStore connect(List<InetSocketAddress> nodes) throws IOException {
+        return connect(nodes, CONNECTIONS_PER_NODE);
+    }
+
+    static PartitionedPersonStore connect(List<InetSocketAddress> nodes, int connectionsPerNode) throws IOException {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("At least one node is needed");
+        }
+        if (connectionsPerNode < 1) {
+            throw new IllegalArgumentException("At least one connection per node is needed: " + connectionsPerNode);
+        }
+        Partition[] partitions = new Partition[nodes.size()];
+        try {
+            for (int i = 0; i < partitions.length; i++) {
+                partitions[i] = new RemotePartition(nodes.get(i), connectionsPerNode);
+            }
+        } catch (IOException e) {
+            for (Partition partition : partitions) {
+                if (partition != null) {
+                    partition.close();
+                }
+            }
+            throw e;
+        }
+        return new PartitionedPersonStore(partitions, connectionsPerNode);
+    }
+
+    int partitionCount() {
+        return partitions.length;
+    }
+
+    int partitionOf(long id) {
+        return (int) Long.remainderUnsigned(PersonMap.hash(id), partitions.length);
+    }
+
+    // Adds or replaces the person under id; true when added
+    boolean put(long id, Person person) throws IOException {
+        return partitions[partitionOf(id)].put(id, person);
+    }
+
+    Person get(long id) throws IOException {
+        return partitions[partitionOf(id)].getAll(new long[]{id})[0];
+    }
+
+    boolean remove(long id) throws IOException {
+        return partitions[partitionOf(id)].remove(id);
+    }
+
+    // The people found for the given ids; ids that are not stored are left out
+    Map<Long, Person> getAll(long... ids) throws IOException {
+        long[][] batches = new long[partitions.length][];
+        int[] sizes = new int[partitions.length];
+        for (long id : ids) {
+            int partition = partitionOf(id);
+            if (batches[partition] == null) {
+                batches[partition] = new long[4];
+            } else if (sizes[partition] == batches[partition].length) {
+                batches[partition] = Arrays.copyOf(batches[partition], sizes[partition] * 2);
+            }
+            batches[partition][sizes[partition]++] = id;
+        }
+
+        List<Callable<Map<Long, Person>>> tasks = new ArrayList<>();
+        for (int i = 0; i < partitions.length; i++) {
+            if (sizes[i] > 0) {
+                Partition partition = partitions[i];
+                long[] batch = Arrays.copyOf(batches[i], sizes[i]);
+                tasks.add(() -> {
+                    Person[] found = partition.getAll(batch);
+                    Map<Long, Person> people = new HashMap<>();
+                    for (int j = 0; j < batch.length; j++) {
+                        if (found[j] != null) {
+                            people.put(batch[j], found[j]);
+                        }
+                    }
+                    return people;
+                });
+            }
+        }
+        return merge(scatter(tasks));
+    }
+
+    // Everyone aged min to max inclusive, asking all partitions in parallel
+    Map<Long, Person> ageBetween(int min, int max) throws IOException {
+        List<Callable<Map<Long, Person>>> tasks = new ArrayList<>();
+        for (Partition partition : partitions) {
+            tasks.add(() -> partition.ageBetween(min, max));
+        }
+        return merge(scatter(tasks));
+    }
+
+    long size() throws IOException {
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (Partition partition : partitions) {
+            tasks.add(partition::size);
+        }
+        long size = 0;
+        for (int partitionSize : scatter(tasks)) {
+            size += partitionSize;
+        }
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        IOException failure = null;
+        for (Partition partition : partitions) {
+            try {
+                partition.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private <T> List<T> scatter(List<Callable<T>> tasks) throws IOException {
+        if (tasks.size() == 1) {
+            try {
+                return Collections.singletonList(tasks.get(0).call());
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        }
+
+        try {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for partitions", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Partition request failed", e.getCause());
+        }
+    }
+
+    private static Map<Long, Person> merge(List<Map<Long, Person>> parts) {
+        int size = 0;
+        for (Map<Long, Person> part : parts) {
+            size += part.size();
+        }
+        Map<Long, Person> merged = new HashMap<>(size * 4 / 3 + 1);
+        for (Map<Long, Person> part : parts) {
+            merged.putAll(part);
+        }
+        return merged;
+    }
+
+    // One partition's share of the data, wherever it lives
+    private interface Partition extends Closeable {
+
+        boolean put(long id, Person person) throws IOException;
+
+        // The person for every id, null where there is none
+        Person[] getAll(long[] ids) throws IOException;
+
+        boolean remove(long id) throws IOException;
+
+        Map<Long, Person> ageBetween(int min, int max) throws IOException;
+
+        int size() throws IOException;
+    }
+
+    private static final class LocalPartition implements Partition {
+
+        private final PersonStore store;
+
+        LocalPartition(PersonStore store) {
+            this.store = store;
+        }
+
+        @Override
+        public boolean put(long id, Person person) {
+            return store.put(id, person);
+        }
+
+        @Override
+        public Person[] getAll(long[] ids) {
+            Person[] people = new Person[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                people[i] = store.get(ids[i]);
+            }
+            return people;
+        }
+
+        @Override
+        public boolean remove(long id) {
+            return store.remove(id);
+        }
+
+        @Override
+        public Map<Long, Person> ageBetween(int min, int max) {
+            Map<Long, Person> people = new HashMap<>();
+            store.scan((id, person) -> {
+                Integer age = person.getAge();
+                if (age != null && age >= min && age <= max) {
+                    people.put(id, new Person(person));
+                }
+            });
+            return people;
+        }
+
+        @Override
+        public int size() {
+            return store.size();
+        }
+
+        @Override
+        public void close() throws IOException {
+            store.close();
+        }
+    }
+
+    /* A small pool of blocking connections to one node. Every request borrows a connection for its
+       whole exchange, so up to connections requests to the node are in flight at once, and the node
+       runs them in parallel. A connection that failed, or whose answer was not read to the end,
+       is closed instead of being given back; the pool opens a new one when it is needed.
+     */
+    private static final class RemotePartition implements Partition {
+
+        @FunctionalInterface
+        private interface Reply<T> {
+
+            T read(SocketChannel channel) throws IOException;
+        }
+
+        private final InetSocketAddress address;
+        private final Semaphore permits;
+        private final Queue<SocketChannel> idle = new ConcurrentLinkedQueue<>();
+        private volatile boolean closed;
+
+        // Connects once right away, so an unreachable node fails connect()
+        RemotePartition(InetSocketAddress address, int connections) throws IOException {
+            this.address = address;
+            this.permits = new Semaphore(connections);
+            idle.add(open(address));
+        }
+
+        @Override
+        public boolean put(long id, Person person) throws IOException {
+            byte[] encoded = PersonCodec.encode(person);
+            ByteBuffer request = ByteBuffer.allocate(1 + 8 + encoded.length);
+            request.put(PersonStoreProtocol.PUT).putLong(id).put(encoded);
+            return call(request, channel -> receive(channel).get() == 1);
+        }
+
+        @Override
+        public Person[] getAll(long[] ids) throws IOException {
+            ByteBuffer request = ByteBuffer.allocate(1 + 4 + 8 * ids.length);
+            request.put(PersonStoreProtocol.GET_ALL).putInt(ids.length);
+            for (long id : ids) {
+                request.putLong(id);
+            }
+
+            return call(request, channel -> {
+                ByteBuffer response = receive(channel);
+                Person[] people = new Person[ids.length];
+                for (int i = 0; i < ids.length; i++) {
+                    if (response.get() == 1) {
+                        people[i] = PersonCodec.decode(response);
+                    }
+                }
+                return people;
+            });
+        }
+
+        @Override
+        public boolean remove(long id) throws IOException {
+            ByteBuffer request = ByteBuffer.allocate(1 + 8);
+            request.put(PersonStoreProtocol.REMOVE).putLong(id);
+            return call(request, channel -> receive(channel).get() == 1);
+        }
+
+        @Override
+        public Map<Long, Person> ageBetween(int min, int max) throws IOException {
+            ByteBuffer request = ByteBuffer.allocate(1 + 8);
+            request.put(PersonStoreProtocol.AGE_BETWEEN).putInt(min).putInt(max);
+
+            return call(request, channel -> {
+                Map<Long, Person> people = new HashMap<>();
+                boolean more;
+                do {
+                    ByteBuffer response = receive(channel);
+                    more = response.get() == 1;
+                    int count = response.getInt();
+                    for (int i = 0; i < count; i++) {
+                        long id = response.getLong();
+                        people.put(id, PersonCodec.decode(response));
+                    }
+                } while (more);
+                return people;
+            });
+        }
+
+        @Override
+        public int size() throws IOException {
+            ByteBuffer request = ByteBuffer.allocate(1);
+            request.put(PersonStoreProtocol.SIZE);
+            return call(request, channel -> receive(channel).getInt());
+        }
+
+        // Connections still in use are closed when they are given back
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            closeIdle();
+        }
+
+        private <T> T call(ByteBuffer request, Reply<T> reply) throws IOException {
+            SocketChannel channel = borrow();
+            boolean inStep = false;
+            try {
+                request.flip();
+                PersonStoreProtocol.write(channel, request);
+                T result = reply.read(channel);
+                inStep = true;
+                return result;
+            } catch (PersonStoreProtocol.NodeException e) {
+                // An error response ends the answer, so the connection can be used again
+                inStep = true;
+                throw e;
+            } finally {
+                giveBack(channel, inStep);
+            }
+        }
+
+        private SocketChannel borrow() throws IOException {
+            if (closed) {
+                throw new IOException("Partition client is closed");
+            }
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a connection to " + address);
+            }
+
+            SocketChannel channel = idle.poll();
+            if (channel == null) {
+                try {
+                    channel = open(address);
+                } catch (IOException | RuntimeException e) {
+                    permits.release();
+                    throw e;
+                }
+            }
+            return channel;
+        }
+
+        private void giveBack(SocketChannel channel, boolean inStep) {
+            if (inStep && !closed) {
+                idle.add(channel);
+            } else {
+                closeQuietly(channel);
+            }
+            permits.release();
+            // close() may have run between the check and the add
+            if (closed) {
+                closeIdle();
+            }
+        }
+
+        private void closeIdle() {
+            for (SocketChannel channel; (channel = idle.poll()) != null; ) {
+                closeQuietly(channel);
+            }
+        }
+
+        private static ByteBuffer receive(SocketChannel channel) throws IOException {
+            return PersonStoreProtocol.checkStatus(PersonStoreProtocol.read(channel));
+        }
+
+        private static void closeQuietly(SocketChannel channel) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already broken, nothing more to lose
+            }
+        }
+
+        private static SocketChannel open(InetSocketAddress address) throws IOException {
+            SocketChannel channel = SocketChannel.open(address);
+            channel.socket().setTcpNoDelay(true);
+            return channel;
+        }
+    }
+}
@@ -5,6 +5,12 @@ public class Person {
 
     public Person() {}
 
+    public Person(Person other) {
+        this.firstName = other.firstName;
+        this.lastName = other.lastName;
+        this.age = other.age;
+    }
+
     public String getFirstName() {
         return firstName;
     }
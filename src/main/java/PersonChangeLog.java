@@ -0,0 +1,625 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/* Append-only write-ahead log of PersonStore changes made since the last snapshot.
+   Every record is [payload length, payload CRC32, payload] and the payload holds the sequence number,
+   a timestamp, the operation, the person id and, except for removals, the encoded Person.
+   Appends from all threads are queued and a single writer thread writes them in batches
+   (group commit) to a file that is grown ahead of time in zero-filled chunks.
+   Reading stops at the first zero, incomplete, corrupt or out-of-sequence record,
+   which is how preallocated space and a torn tail are told apart from real records.
+   A damaged record that intact records follow is not a torn tail, and reading fails instead.
+   rotate() moves the records written so far to <name>.<last sequence> and continues in a new file,
+   so the log a snapshot makes redundant can be deleted instead of being read on every start.
+ */
+final class PersonChangeLog implements Closeable {
+
+    enum Operation {
+        ADD,
+        UPDATE,
+        REMOVE
+    }
+
+    static final class Entry {
+
+        private final long sequence;
+        private final long timestamp;
+        private final Operation operation;
+        private final long id;
+        private final Person person;
+
+        Entry(long sequence, long timestamp, Operation operation, long id, Person person) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.operation = operation;
+            this.id = id;
+            this.person = person;
+        }
+
+        long getSequence() {
+            return sequence;
+        }
+
+        long getTimestamp() {
+            return timestamp;
+        }
+
+        Operation getOperation() {
+            return operation;
+        }
+
+        long getId() {
+            return id;
+        }
+
+        Person getPerson() {
+            return person;
+        }
+    }
+
+    /* When appended records are forced to disk. EVERY_WRITE makes append() return only once its
+       record is durable, INTERVAL forces at most every fsyncIntervalMillis and NEVER leaves it to the OS.
+       Either way one write and one force cover every record queued in the meantime.
+     */
+    enum FsyncPolicy {
+        EVERY_WRITE,
+        INTERVAL,
+        NEVER
+    }
+
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int PAYLOAD_HEADER_SIZE = 25;
+    private static final long PREALLOCATION_CHUNK = 1024 * 1024;
+
+    // Marks the place of a rotation among the pending records
+    private static final ByteBuffer ROTATE = ByteBuffer.allocate(0);
+
+    private final Path file;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+    private final Thread writer;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hasWork = lock.newCondition();
+    private final Condition progress = lock.newCondition();
+
+    // Guarded by lock
+    private List<ByteBuffer> pending = new ArrayList<>();
+    // The last sequence before each ROTATE in pending, in the same order
+    private Deque<Long> rotations = new ArrayDeque<>();
+    private long lastSequence;
+    private long writtenSequence;
+    private long durableSequence;
+    // The sequence of the last rotation the writer has carried out
+    private long rotatedSequence;
+    private boolean forceRequested;
+    private boolean closed;
+    private IOException failure;
+
+    // Only touched by the writer thread
+    private FileChannel channel;
+    private long position;
+    private long allocated;
+    private long lastForce = System.nanoTime();
+
+    private PersonChangeLog(Path file, FileChannel channel, long validEnd, long lastSequence,
+                            FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, fsyncIntervalMillis));
+        this.position = validEnd;
+        this.allocated = channel.size();
+        this.lastSequence = lastSequence;
+        this.writtenSequence = lastSequence;
+        this.durableSequence = lastSequence;
+
+        this.writer = new Thread(this::writeLoop, "person-change-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    static PersonChangeLog open(Path file) throws IOException {
+        return open(file, FsyncPolicy.EVERY_WRITE, 0, 0);
+    }
+
+    /* Opens the log for appending after its last valid record. Anything after that record,
+       a torn write or unused preallocated space, is cut off first.
+       New records are numbered after that record, the last rotated file and afterSequence,
+       the sequence a snapshot already covers. The log may have lost its tail, or may be gone entirely,
+       when the snapshot still has those changes; reusing their numbers would make recovery skip the new records.
+       A log that ends before either of those only holds covered records; it is emptied,
+       so the numbering in the file stays contiguous.
+     */
+    static PersonChangeLog open(Path file, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis, long afterSequence)
+            throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long[] lastSequence = {0L};
+            long validEnd = read(file, channel, entry -> lastSequence[0] = entry.getSequence());
+            TreeMap<Long, Path> rotated = rotatedFiles(file);
+            long covered = Math.max(afterSequence, rotated.isEmpty() ? 0 : rotated.lastKey());
+            if (lastSequence[0] < covered) {
+                lastSequence[0] = covered;
+                validEnd = 0;
+            }
+            channel.truncate(validEnd);
+            return new PersonChangeLog(file, channel, validEnd, lastSequence[0], fsyncPolicy, fsyncIntervalMillis);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /* Passes entries with a sequence after afterSequence and a timestamp up to upToTimestamp
+       to the consumer, in log order, reading rotated files that are still there first.
+       Returns the sequence of the last entry passed on.
+     */
+    static long replay(Path file, long afterSequence, long upToTimestamp, Consumer<Entry> consumer)
+            throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Map.Entry<Long, Path> rotated : rotatedFiles(file).entrySet()) {
+            // Everything in a rotated file is numbered up to the sequence in its name
+            if (rotated.getKey() > afterSequence) {
+                files.add(rotated.getValue());
+            }
+        }
+        if (Files.exists(file)) {
+            files.add(file);
+        }
+
+        long[] replayed = {afterSequence};
+        for (Path log : files) {
+            try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+                read(log, channel, entry -> {
+                    if (entry.getSequence() > afterSequence && entry.getTimestamp() <= upToTimestamp) {
+                        consumer.accept(entry);
+                        replayed[0] = entry.getSequence();
+                    }
+                });
+            }
+        }
+        return replayed[0];
+    }
+
+    // Deletes the rotated files whose records are all numbered up to the given sequence
+    static void deleteRotated(Path file, long upToSequence) throws IOException {
+        for (Path rotated : rotatedFiles(file).headMap(upToSequence, true).values()) {
+            Files.deleteIfExists(rotated);
+        }
+    }
+
+    // Rotated files of the log, by the last sequence in each
+    private static TreeMap<Long, Path> rotatedFiles(Path file) throws IOException {
+        TreeMap<Long, Path> rotated = new TreeMap<>();
+        Path directory = file.toAbsolutePath().getParent();
+        String prefix = file.getFileName() + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path candidate : files) {
+                String suffix = candidate.getFileName().toString().substring(prefix.length());
+                if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit)) {
+                    rotated.put(Long.parseLong(suffix), candidate);
+                }
+            }
+        }
+        return rotated;
+    }
+
+    long lastSequence() {
+        lock.lock();
+        try {
+            return lastSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* Ends the current file after the records appended so far and returns the last of their sequences.
+       The writer forces that file and renames it to <name>.<sequence> before writing anything newer.
+     */
+    long rotate() {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Change log is closed");
+            }
+            pending.add(ROTATE);
+            rotations.add(lastSequence);
+            hasWork.signal();
+            return lastSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* Queues the record for the writer thread and waits until it is written,
+       or forced to disk under FsyncPolicy.EVERY_WRITE.
+     */
+    long append(Operation operation, long id, Person person) {
+        long sequence = enqueue(operation, id, person);
+        await(sequence);
+        return sequence;
+    }
+
+    /* Queues the record without waiting, so callers can order it under their own locks
+       and wait with await() once those are released.
+     */
+    long enqueue(Operation operation, long id, Person person) {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Change log is closed");
+            }
+            if (failure != null) {
+                throw new UncheckedIOException("Cannot append to the change log", failure);
+            }
+            long sequence = ++lastSequence;
+            pending.add(encode(sequence, System.currentTimeMillis(), operation, id, person));
+            hasWork.signal();
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Waits until the record is written, or forced to disk under FsyncPolicy.EVERY_WRITE
+    void await(long sequence) {
+        lock.lock();
+        try {
+            awaitSequence(sequence, fsyncPolicy == FsyncPolicy.EVERY_WRITE);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Waits until the writer has carried out the rotate() call that returned the given sequence
+    void awaitRotation(long sequence) {
+        lock.lock();
+        try {
+            while (rotatedSequence < sequence) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Cannot rotate the change log", failure);
+                }
+                progress.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Waits until everything appended so far is on disk
+    void force() {
+        lock.lock();
+        try {
+            long target = lastSequence;
+            forceRequested = true;
+            hasWork.signal();
+            awaitSequence(target, true);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            hasWork.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        lock.lock();
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with the lock held
+    private void awaitSequence(long sequence, boolean durable) {
+        while ((durable ? durableSequence : writtenSequence) < sequence) {
+            if (failure != null) {
+                throw new UncheckedIOException("Cannot append to the change log", failure);
+            }
+            progress.awaitUninterruptibly();
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                List<ByteBuffer> batch;
+                Deque<Long> batchRotations;
+                long batchSequence;
+                boolean forceNow;
+                boolean closing;
+
+                lock.lock();
+                try {
+                    while (pending.isEmpty() && !closed && !forceRequested && !intervalForceDue()) {
+                        hasWork.awaitNanos(fsyncPolicy == FsyncPolicy.INTERVAL ? fsyncIntervalNanos : Long.MAX_VALUE);
+                    }
+                    batch = pending;
+                    pending = new ArrayList<>();
+                    batchRotations = rotations;
+                    rotations = new ArrayDeque<>();
+                    batchSequence = lastSequence;
+                    closing = closed;
+                    forceNow = forceRequested || closing || fsyncPolicy == FsyncPolicy.EVERY_WRITE;
+                    forceRequested = false;
+                } finally {
+                    lock.unlock();
+                }
+
+                long batchRotation = batchRotations.isEmpty() ? -1 : batchRotations.getLast();
+                write(batch, batchRotations);
+                forceNow |= intervalForceDue();
+                if (forceNow) {
+                    channel.force(false);
+                    lastForce = System.nanoTime();
+                }
+
+                lock.lock();
+                try {
+                    writtenSequence = batchSequence;
+                    if (batchRotation >= 0) {
+                        rotatedSequence = batchRotation;
+                    }
+                    if (forceNow) {
+                        durableSequence = batchSequence;
+                    }
+                    progress.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+
+                if (closing) {
+                    channel.truncate(position);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (InterruptedException e) {
+            fail(new InterruptedIOException("Change log writer interrupted"));
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    // Only the writer thread changes the sequences it reads here, so it may call this without the lock
+    private boolean intervalForceDue() {
+        return fsyncPolicy == FsyncPolicy.INTERVAL
+                && writtenSequence > durableSequence
+                && System.nanoTime() - lastForce >= fsyncIntervalNanos;
+    }
+
+    // Writes the records between rotations, rotating the file at each ROTATE
+    private void write(List<ByteBuffer> batch, Deque<Long> batchRotations) throws IOException {
+        int from = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.get(i) == ROTATE) {
+                write(batch.subList(from, i));
+                rotateFile(batchRotations.removeFirst());
+                from = i + 1;
+            }
+        }
+        write(batch.subList(from, batch.size()));
+    }
+
+    private void rotateFile(long sequence) throws IOException {
+        if (position == 0) {
+            return;
+        }
+
+        channel.truncate(position);
+        channel.force(true);
+        channel.close();
+        Files.move(file, file.resolveSibling(file.getFileName() + "." + sequence), StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        PersonSnapshot.forceDirectory(file.toAbsolutePath().getParent());
+        position = 0;
+        allocated = 0;
+    }
+
+    private void write(List<ByteBuffer> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long batchSize = 0;
+        for (ByteBuffer record : batch) {
+            batchSize += record.remaining();
+        }
+        preallocate(position + batchSize);
+
+        ByteBuffer[] records = batch.toArray(new ByteBuffer[0]);
+        channel.position(position);
+        long written = 0;
+        while (written < batchSize) {
+            written += channel.write(records);
+        }
+        position += batchSize;
+    }
+
+    // Grows the file with zeros ahead of the writes, so forcing data does not also have to update its size
+    private void preallocate(long end) throws IOException {
+        if (end <= allocated) {
+            return;
+        }
+
+        long target = (end / PREALLOCATION_CHUNK + 1) * PREALLOCATION_CHUNK;
+        ByteBuffer zeros = ByteBuffer.allocate((int) Math.min(PREALLOCATION_CHUNK, 64 * 1024));
+        for (long offset = allocated; offset < target; ) {
+            zeros.clear();
+            zeros.limit((int) Math.min(zeros.capacity(), target - offset));
+            offset += channel.write(zeros, offset);
+        }
+        allocated = target;
+    }
+
+    private void fail(IOException e) {
+        lock.lock();
+        try {
+            if (failure == null) {
+                failure = e;
+            }
+            closed = true;
+            progress.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static ByteBuffer encode(long sequence, long timestamp, Operation operation, long id, Person person) {
+        byte[] encodedPerson = operation == Operation.REMOVE ? new byte[0] : PersonCodec.encode(person);
+        int payloadLength = PAYLOAD_HEADER_SIZE + encodedPerson.length;
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payloadLength);
+        record.putInt(payloadLength).putInt(0)
+                .putLong(sequence).putLong(timestamp).put((byte) operation.ordinal()).putLong(id)
+                .put(encodedPerson);
+
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER_SIZE, payloadLength);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+        return record;
+    }
+
+    /* Reads records from the start of the channel and returns the end of the last valid one.
+       Fails when a damaged record is followed by an intact one: a torn write only ever damages the tail,
+       and cutting the log there would throw away acknowledged changes.
+     */
+    private static long read(Path file, FileChannel channel, Consumer<Entry> consumer) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        long expectedSequence = 0;
+
+        while (true) {
+            ByteBuffer payload = payloadAt(channel, position, size);
+            if (payload == null) {
+                if (intactRecordFollows(channel, position, size)) {
+                    throw new IOException("Damaged record at offset " + position + " of " + file
+                            + " is followed by intact records");
+                }
+                return position;
+            }
+
+            long sequence = payload.getLong();
+            // Anything out of sequence is left over from before a truncation
+            if (expectedSequence != 0 && sequence != expectedSequence) {
+                return position;
+            }
+            expectedSequence = sequence + 1;
+            long timestamp = payload.getLong();
+            int operation = payload.get();
+            if (operation < 0 || operation >= Operation.values().length) {
+                throw new IOException("Unknown operation " + operation + " at offset " + position + " of " + file);
+            }
+            long id = payload.getLong();
+            Operation op = Operation.values()[operation];
+            Person person = op == Operation.REMOVE ? null : PersonCodec.decode(payload);
+
+            consumer.accept(new Entry(sequence, timestamp, op, id, person));
+            position += RECORD_HEADER_SIZE + payload.capacity();
+        }
+    }
+
+    // The payload of the complete record at position if its CRC matches, ready to read; null otherwise
+    private static ByteBuffer payloadAt(FileChannel channel, long position, long size) throws IOException {
+        if (position + RECORD_HEADER_SIZE > size) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        readFully(channel, header, position);
+        int payloadLength = header.getInt(0);
+        if (!fits(payloadLength, position, size)) {
+            return null;
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(payloadLength);
+        readFully(channel, payload, position + RECORD_HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        crc.update(payload.array(), 0, payloadLength);
+        if ((int) crc.getValue() != header.getInt(4)) {
+            return null;
+        }
+        payload.flip();
+        return payload;
+    }
+
+    // The payload length in the header at position, or -1 when it cannot belong to a complete record
+    private static int payloadLengthAt(FileChannel channel, long position, long size) throws IOException {
+        if (position + RECORD_HEADER_SIZE > size) {
+            return -1;
+        }
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(channel, length, position);
+        int payloadLength = length.getInt(0);
+        return fits(payloadLength, position, size) ? payloadLength : -1;
+    }
+
+    private static boolean fits(int payloadLength, long position, long size) {
+        return payloadLength >= PAYLOAD_HEADER_SIZE && position + RECORD_HEADER_SIZE + payloadLength <= size;
+    }
+
+    /* Whether the record after the damaged one at position is intact. Only a damaged record whose
+       length still reads correctly can be stepped over; preallocated zeros and a torn tail cannot.
+     */
+    private static boolean intactRecordFollows(FileChannel channel, long position, long size) throws IOException {
+        int payloadLength = payloadLengthAt(channel, position, size);
+        return payloadLength >= 0 && payloadAt(channel, position + RECORD_HEADER_SIZE + payloadLength, size) != null;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of change log");
+            }
+        }
+    }
+}
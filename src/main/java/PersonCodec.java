@@ -0,0 +1,79 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/* Binary layout of one Person, shared by snapshots and the change log:
+   a flags byte telling which fields are present, then length-prefixed UTF-8 names and the age.
+ */
+final class PersonCodec {
+
+    private static final int FIRST_NAME = 1;
+    private static final int LAST_NAME = 1 << 1;
+    private static final int AGE = 1 << 2;
+
+    private PersonCodec() {
+    }
+
+    static byte[] encode(Person person) {
+        byte[] firstName = bytes(person.getFirstName());
+        byte[] lastName = bytes(person.getLastName());
+        Integer age = person.getAge();
+
+        int size = 1 + sizeOf(firstName) + sizeOf(lastName) + (age == null ? 0 : 4);
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.put((byte) ((firstName == null ? 0 : FIRST_NAME)
+                | (lastName == null ? 0 : LAST_NAME)
+                | (age == null ? 0 : AGE)));
+        putName(out, firstName);
+        putName(out, lastName);
+        if (age != null) {
+            out.putInt(age);
+        }
+        return out.array();
+    }
+
+    // Reads one Person starting at the buffer's position and leaves the position after it
+    static Person decode(ByteBuffer in) {
+        int flags = in.get();
+        Person person = new Person();
+        if ((flags & FIRST_NAME) != 0) {
+            person.setFirstName(getName(in));
+        }
+        if ((flags & LAST_NAME) != 0) {
+            person.setLastName(getName(in));
+        }
+        if ((flags & AGE) != 0) {
+            person.setAge(in.getInt());
+        }
+        return person;
+    }
+
+    private static byte[] bytes(String name) {
+        if (name == null) {
+            return null;
+        }
+
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Name is too long to encode: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    private static int sizeOf(byte[] name) {
+        return name == null ? 0 : 2 + name.length;
+    }
+
+    private static void putName(ByteBuffer out, byte[] name) {
+        if (name != null) {
+            out.putShort((short) name.length);
+            out.put(name);
+        }
+    }
+
+    private static String getName(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
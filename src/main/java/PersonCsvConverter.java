@@ -0,0 +1,43 @@
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.params.converter.ArgumentConversionException;
+import org.junit.jupiter.params.converter.ArgumentConverter;
+
+/* Converts a quoted CSV row like 'Jane, Doe, 30' into a Person.
+   Empty fields stay null, so 'Jane, , ' is a person with only a first name.
+ */
+final class PersonCsvConverter implements ArgumentConverter {
+
+    public Object convert(Object source, ParameterContext parameterContext) throws ArgumentConversionException {
+        if (!(source instanceof String)) {
+            throw new ArgumentConversionException("Cannot convert source object because it's not a string");
+        }
+        return parse((String) source);
+    }
+
+    static Person parse(String row) {
+        String[] fields = row.split(",", -1);
+        if (fields.length != 3) {
+            throw new ArgumentConversionException(
+                    "Expected 'firstName, lastName, age' but got '" + row + "'"
+            );
+        }
+
+        Person person = new Person();
+        person.setFirstName(emptyToNull(fields[0]));
+        person.setLastName(emptyToNull(fields[1]));
+        String age = emptyToNull(fields[2]);
+        if (age != null) {
+            try {
+                person.setAge(Integer.valueOf(age));
+            } catch (NumberFormatException e) {
+                throw new ArgumentConversionException("Cannot convert age '" + age + "' to a number", e);
+            }
+        }
+        return person;
+    }
+
+    private static String emptyToNull(String field) {
+        String trimmed = field.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+}
@@ -0,0 +1,265 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Consumer;
+
+/* Sorts more people than fit in memory. Up to maxRecordsInMemory people are sorted at a time and
+   spilled as a run file of length-prefixed PersonCodec records; the runs are then merged k ways
+   (in several passes when there are more than mergeFanIn of them) with buffered FileChannel I/O.
+   Temporary files are deleted when sorting finishes or fails.
+ */
+final class PersonExternalSorter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path temporaryDirectory;
+    private final int maxRecordsInMemory;
+    private final int mergeFanIn;
+
+    PersonExternalSorter(Path temporaryDirectory, int maxRecordsInMemory, int mergeFanIn) {
+        if (maxRecordsInMemory < 1) {
+            throw new IllegalArgumentException("At least one record must fit in memory");
+        }
+        if (mergeFanIn < 2) {
+            throw new IllegalArgumentException("Merge fan-in must be at least 2: " + mergeFanIn);
+        }
+        this.temporaryDirectory = temporaryDirectory;
+        this.maxRecordsInMemory = maxRecordsInMemory;
+        this.mergeFanIn = mergeFanIn;
+    }
+
+    void sort(Iterator<? extends Person> input, Comparator<? super Person> comparator,
+              Consumer<? super Person> output) throws IOException {
+        List<Person> chunk = new ArrayList<>(Math.min(maxRecordsInMemory, 1024));
+        Deque<Path> runs = new ArrayDeque<>();
+        try {
+            while (input.hasNext()) {
+                chunk.add(input.next());
+                if (chunk.size() == maxRecordsInMemory) {
+                    runs.add(writeRun(chunk, comparator));
+                    chunk.clear();
+                }
+            }
+
+            if (runs.isEmpty()) {
+                chunk.sort(comparator);
+                chunk.forEach(output);
+                return;
+            }
+            if (!chunk.isEmpty()) {
+                runs.add(writeRun(chunk, comparator));
+                chunk.clear();
+            }
+
+            while (runs.size() > mergeFanIn) {
+                // The merged runs stay in runs until the merge succeeds, so a failure still deletes them
+                Path merged = Files.createTempFile(temporaryDirectory, "people", ".run");
+                runs.add(merged);
+                List<Path> batch = new ArrayList<>(mergeFanIn);
+                Iterator<Path> oldest = runs.iterator();
+                while (batch.size() < mergeFanIn) {
+                    batch.add(oldest.next());
+                }
+
+                try (RunWriter writer = new RunWriter(merged)) {
+                    merge(batch, comparator, writer::write);
+                }
+                for (Path run : batch) {
+                    runs.remove(run);
+                    Files.deleteIfExists(run);
+                }
+            }
+            merge(new ArrayList<>(runs), comparator, output::accept);
+        } finally {
+            deleteAll(runs);
+        }
+    }
+
+    /* The k people that sort first under the comparator, in that order. Only k people are kept,
+       so topK(people, Comparator.comparing(Person::getAge).reversed(), 10) finds the ten oldest
+       of any number of people.
+     */
+    static List<Person> topK(Iterator<? extends Person> input, Comparator<? super Person> comparator, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+        if (k == 0) {
+            return new ArrayList<>();
+        }
+
+        // Head is the worst of the k best seen so far
+        // Grows as needed, k may be far larger than the input
+        PriorityQueue<Person> best = new PriorityQueue<>(Math.min(k, 64), Collections.reverseOrder(comparator));
+        while (input.hasNext()) {
+            Person person = input.next();
+            if (best.size() < k) {
+                best.add(person);
+            } else if (comparator.compare(person, best.peek()) < 0) {
+                best.poll();
+                best.add(person);
+            }
+        }
+
+        List<Person> result = new ArrayList<>(best);
+        result.sort(comparator);
+        return result;
+    }
+
+    private Path writeRun(List<Person> chunk, Comparator<? super Person> comparator) throws IOException {
+        chunk.sort(comparator);
+        Path file = Files.createTempFile(temporaryDirectory, "people", ".run");
+        try (RunWriter writer = new RunWriter(file)) {
+            for (Person person : chunk) {
+                writer.write(person);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return file;
+    }
+
+    private static void merge(List<Path> runs, Comparator<? super Person> comparator,
+                              RecordSink output) throws IOException {
+        List<RunReader> readers = new ArrayList<>(runs.size());
+        try {
+            PriorityQueue<RunReader> heads = new PriorityQueue<>(runs.size(),
+                    (a, b) -> comparator.compare(a.head, b.head));
+            for (Path run : runs) {
+                RunReader reader = new RunReader(run);
+                readers.add(reader);
+                if (reader.advance()) {
+                    heads.add(reader);
+                }
+            }
+
+            while (!heads.isEmpty()) {
+                RunReader reader = heads.poll();
+                output.accept(reader.head);
+                if (reader.advance()) {
+                    heads.add(reader);
+                }
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    private static void deleteAll(Collection<Path> files) throws IOException {
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private interface RecordSink {
+        void accept(Person person) throws IOException;
+    }
+
+    private static final class RunWriter implements Closeable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        RunWriter(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        void write(Person person) throws IOException {
+            byte[] record = PersonCodec.encode(person);
+            if (buffer.remaining() < Integer.BYTES + record.length) {
+                flush();
+            }
+            if (buffer.remaining() < Integer.BYTES + record.length) {
+                ByteBuffer large = ByteBuffer.allocate(Integer.BYTES + record.length);
+                large.putInt(record.length).put(record).flip();
+                writeFully(large);
+                return;
+            }
+            buffer.putInt(record.length).put(record);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            writeFully(buffer);
+            buffer.clear();
+        }
+
+        private void writeFully(ByteBuffer bytes) throws IOException {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    private static final class RunReader implements Closeable {
+
+        private final FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private Person head;
+
+        RunReader(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            buffer.flip();
+        }
+
+        boolean advance() throws IOException {
+            if (!fill(Integer.BYTES)) {
+                head = null;
+                return false;
+            }
+            int length = buffer.getInt();
+            if (!fill(length)) {
+                throw new IOException("Truncated run file");
+            }
+
+            ByteBuffer record = buffer.slice();
+            record.limit(length);
+            head = PersonCodec.decode(record);
+            buffer.position(buffer.position() + length);
+            return true;
+        }
+
+        // Makes sure at least needed bytes are buffered, false at a clean end of file
+        private boolean fill(int needed) throws IOException {
+            if (buffer.remaining() >= needed) {
+                return true;
+            }
+            if (buffer.capacity() < needed) {
+                ByteBuffer larger = ByteBuffer.allocate(needed);
+                larger.put(buffer);
+                buffer = larger;
+            } else {
+                buffer.compact();
+            }
+            while (buffer.position() < needed) {
+                if (channel.read(buffer) < 0) {
+                    buffer.flip();
+                    return false;
+                }
+            }
+            buffer.flip();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,317 @@
+import java.util.function.BiConsumer;
+
+/* Immutable map from id to Person where with() and without() return a new version sharing all
+   untouched nodes with the old one (a hash array mapped trie). Each level consumes 5 bits of a
+   mixed 64-bit hash of the id; the mix is a bijection, so two ids never share a full hash and no
+   collision lists are needed. Lookups and changes touch at most 13 nodes and any version can be
+   read from any thread without locks. People are frozen on the way in (see FrozenPerson), so
+   get() and forEach() hand out the stored objects without copying and nobody can change them.
+ */
+final class PersonMap {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final Node EMPTY_NODE = new Node(null, 0, new Object[0]);
+
+    static final PersonMap EMPTY = new PersonMap(EMPTY_NODE, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersonMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean containsKey(long id) {
+        return find(root, id) != null;
+    }
+
+    // The read-only person stored under id, or null
+    Person get(long id) {
+        Entry entry = find(root, id);
+        return entry == null ? null : entry.person;
+    }
+
+    PersonMap with(long id, Person person) {
+        int[] delta = new int[1];
+        Node newRoot = put(null, root, 0, hash(id), new Entry(id, FrozenPerson.of(person)), delta);
+        return newRoot == root ? this : new PersonMap(newRoot, size + delta[0]);
+    }
+
+    PersonMap without(long id) {
+        int[] delta = new int[1];
+        Object newRoot = remove(null, root, 0, hash(id), id, delta);
+        if (delta[0] == 0) {
+            return this;
+        }
+        return size == 1 ? EMPTY : new PersonMap(asNode(null, newRoot), size - 1);
+    }
+
+    void forEach(BiConsumer<Long, Person> action) {
+        forEach(root, action);
+    }
+
+    // Starts a builder from this version; this version stays unchanged
+    Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    // fmix64 from MurmurHash3: spreads sequential ids over all branches and is reversible
+    static long hash(long id) {
+        long h = id;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static Entry find(Node node, long id) {
+        long hash = hash(id);
+        for (int shift = 0; ; shift += BITS) {
+            int bit = bit(hash, shift);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = node.slots[index(node.bitmap, bit)];
+            if (slot instanceof Entry) {
+                Entry entry = (Entry) slot;
+                return entry.id == id ? entry : null;
+            }
+            node = (Node) slot;
+        }
+    }
+
+    private static void forEach(Node node, BiConsumer<Long, Person> action) {
+        for (Object slot : node.slots) {
+            if (slot instanceof Entry) {
+                action.accept(((Entry) slot).id, ((Entry) slot).person);
+            } else {
+                forEach((Node) slot, action);
+            }
+        }
+    }
+
+    private static int bit(long hash, int shift) {
+        return 1 << (int) ((hash >>> shift) & MASK);
+    }
+
+    private static int index(int bitmap, int bit) {
+        return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    /* Like PersonVector, changes copy the nodes on the path unless the builder owning
+       the edit token created them. A null edit means a persistent change.
+     */
+    private static Node put(Object edit, Node node, int shift, long hash, Entry entry, int[] delta) {
+        int bit = bit(hash, shift);
+        int index = index(node.bitmap, bit);
+
+        if ((node.bitmap & bit) == 0) {
+            Object[] slots = new Object[node.slots.length + 1];
+            System.arraycopy(node.slots, 0, slots, 0, index);
+            slots[index] = entry;
+            System.arraycopy(node.slots, index, slots, index + 1, node.slots.length - index);
+            delta[0] = 1;
+            return update(edit, node, node.bitmap | bit, slots);
+        }
+
+        Object slot = node.slots[index];
+        Object replacement;
+        if (slot instanceof Node) {
+            replacement = put(edit, (Node) slot, shift + BITS, hash, entry, delta);
+        } else {
+            Entry existing = (Entry) slot;
+            if (existing.id == entry.id) {
+                if (existing.person == entry.person) {
+                    return node;
+                }
+                replacement = entry;
+            } else {
+                replacement = merge(edit, shift + BITS, existing, hash(existing.id), entry, hash);
+                delta[0] = 1;
+            }
+        }
+        if (replacement == slot) {
+            return node;
+        }
+        return set(edit, node, index, replacement);
+    }
+
+    // Returns the node unchanged when id is absent, null when it becomes empty,
+    // or the single remaining entry so the parent can hold it directly
+    private static Object remove(Object edit, Node node, int shift, long hash, long id, int[] delta) {
+        int bit = bit(hash, shift);
+        if ((node.bitmap & bit) == 0) {
+            return node;
+        }
+        int index = index(node.bitmap, bit);
+        Object slot = node.slots[index];
+
+        Object replacement;
+        if (slot instanceof Entry) {
+            if (((Entry) slot).id != id) {
+                return node;
+            }
+            replacement = null;
+            delta[0] = -1;
+        } else {
+            replacement = remove(edit, (Node) slot, shift + BITS, hash, id, delta);
+            if (replacement == slot) {
+                return node;
+            }
+        }
+
+        if (replacement != null) {
+            if (replacement instanceof Entry && node.slots.length == 1 && shift > 0) {
+                return replacement;
+            }
+            return set(edit, node, index, replacement);
+        }
+
+        if (node.slots.length == 1) {
+            return null;
+        }
+        if (node.slots.length == 2 && shift > 0 && node.slots[1 - index] instanceof Entry) {
+            return node.slots[1 - index];
+        }
+        Object[] slots = new Object[node.slots.length - 1];
+        System.arraycopy(node.slots, 0, slots, 0, index);
+        System.arraycopy(node.slots, index + 1, slots, index, slots.length - index);
+        return update(edit, node, node.bitmap & ~bit, slots);
+    }
+
+    private static Node merge(Object edit, int shift, Entry first, long firstHash, Entry second, long secondHash) {
+        int firstBit = bit(firstHash, shift);
+        int secondBit = bit(secondHash, shift);
+        if (firstBit == secondBit) {
+            return new Node(edit, firstBit, new Object[]{merge(edit, shift + BITS, first, firstHash, second, secondHash)});
+        }
+        // Unsigned, as branch 31 is the sign bit
+        Object[] slots = Integer.compareUnsigned(firstBit, secondBit) < 0
+                ? new Object[]{first, second} : new Object[]{second, first};
+        return new Node(edit, firstBit | secondBit, slots);
+    }
+
+    private static Node set(Object edit, Node node, int index, Object slot) {
+        if (edit != null && node.edit == edit) {
+            node.slots[index] = slot;
+            return node;
+        }
+        Object[] slots = node.slots.clone();
+        slots[index] = slot;
+        return new Node(edit, node.bitmap, slots);
+    }
+
+    private static Node update(Object edit, Node node, int bitmap, Object[] slots) {
+        if (edit != null && node.edit == edit) {
+            node.bitmap = bitmap;
+            node.slots = slots;
+            return node;
+        }
+        return new Node(edit, bitmap, slots);
+    }
+
+    // The root may collapse to null or a single entry; it always stays a node
+    private static Node asNode(Object edit, Object root) {
+        if (root == null) {
+            return EMPTY_NODE;
+        }
+        if (root instanceof Entry) {
+            Entry entry = (Entry) root;
+            return new Node(edit, bit(hash(entry.id), 0), new Object[]{entry});
+        }
+        return (Node) root;
+    }
+
+    private static final class Entry {
+
+        private final long id;
+        private final Person person;
+
+        Entry(long id, Person person) {
+            this.id = id;
+            this.person = person;
+        }
+    }
+
+    private static final class Node {
+
+        // The builder allowed to change this node in place, null for shared nodes
+        private final Object edit;
+        // Which of the 32 branches are present; slots holds them in branch order
+        private int bitmap;
+        private Object[] slots;
+
+        Node(Object edit, int bitmap, Object[] slots) {
+            this.edit = edit;
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+    }
+
+    /* Transient version for bulk loading: puts and removals change the nodes the builder created
+       in place. build() hands out an immutable map and ends the builder; a builder must only be
+       used by one thread.
+     */
+    static final class Builder {
+
+        private Object edit = new Object();
+        private Node root;
+        private int size;
+
+        private Builder(PersonMap map) {
+            this.root = map.root;
+            this.size = map.size;
+        }
+
+        int size() {
+            return size;
+        }
+
+        Person get(long id) {
+            checkBuilding();
+            Entry entry = find(root, id);
+            return entry == null ? null : entry.person;
+        }
+
+        Builder put(long id, Person person) {
+            checkBuilding();
+            int[] delta = new int[1];
+            root = PersonMap.put(edit, root, 0, hash(id), new Entry(id, FrozenPerson.of(person)), delta);
+            size += delta[0];
+            return this;
+        }
+
+        Builder remove(long id) {
+            checkBuilding();
+            int[] delta = new int[1];
+            root = asNode(edit, PersonMap.remove(edit, root, 0, hash(id), id, delta));
+            size += delta[0];
+            return this;
+        }
+
+        PersonMap build() {
+            checkBuilding();
+            edit = null;
+            return size == 0 ? EMPTY : new PersonMap(root, size);
+        }
+
+        private void checkBuilding() {
+            if (edit == null) {
+                throw new IllegalStateException("The builder was already built");
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Counting Bloom filter over (firstName, lastName, age) kept next to a roster of people.
+   mightContain() == false means the person is definitely not on the roster, so most
+   negative membership checks never touch the roster itself.
+   Every position is a 4 bit counter rather than a bit, so people can be removed again; that costs
+   four times the memory of a plain Bloom filter for the same false positive rate. Counters are
+   changed with a CAS per word, so puts and removes from many threads are safe. A counter that
+   reaches 15 stays there, which can only cause false positives. Only remove people that were put.
+ */
+final class PersonMembershipFilter {
+
+    private static final double LN2 = Math.log(2);
+    private static final int MAX_HASHES = 30;
+
+    private static final int COUNTER_BITS = 4;
+    private static final int COUNTERS_PER_WORD = Long.SIZE / COUNTER_BITS;
+    private static final long COUNTER_MAX = (1L << COUNTER_BITS) - 1;
+
+    private final AtomicLongArray words;
+    private final long counterCount;
+    private final int hashCount;
+    private final LongAdder members = new LongAdder();
+
+    PersonMembershipFilter(long expectedInsertions, double falsePositiveRate) {
+        this(expectedInsertions, falsePositiveRate, Long.MAX_VALUE);
+    }
+
+    // The filter is capped at maxBytes; a tight budget raises the real false positive rate
+    PersonMembershipFilter(long expectedInsertions, double falsePositiveRate, long maxBytes) {
+        if (expectedInsertions < 1) {
+            throw new IllegalArgumentException("Expected insertions must be positive: " + expectedInsertions);
+        }
+        if (falsePositiveRate <= 0.0 || falsePositiveRate >= 1.0) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + falsePositiveRate);
+        }
+        if (maxBytes < Long.BYTES) {
+            throw new IllegalArgumentException("Memory budget must be at least " + Long.BYTES + " bytes");
+        }
+
+        long wantedCounters = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (LN2 * LN2));
+        long maxCounters = Math.min(maxBytes / Long.BYTES, Integer.MAX_VALUE) * COUNTERS_PER_WORD;
+        int wordCount = (int) ((Math.max(COUNTERS_PER_WORD, Math.min(wantedCounters, maxCounters))
+                + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD);
+
+        this.words = new AtomicLongArray(wordCount);
+        this.counterCount = (long) wordCount * COUNTERS_PER_WORD;
+        this.hashCount = (int) Math.max(1, Math.min(MAX_HASHES, Math.round((double) counterCount / expectedInsertions * LN2)));
+    }
+
+    void put(Person person) {
+        long hash = hash(person);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            change(Long.remainderUnsigned(hash + i * h2, counterCount), 1);
+        }
+        members.increment();
+    }
+
+    void remove(Person person) {
+        long hash = hash(person);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            change(Long.remainderUnsigned(hash + i * h2, counterCount), -1);
+        }
+        members.decrement();
+    }
+
+    boolean mightContain(Person person) {
+        long hash = hash(person);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long counter = Long.remainderUnsigned(hash + i * h2, counterCount);
+            if (counterAt(words.get((int) (counter / COUNTERS_PER_WORD)), counter) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long counterCount() {
+        return counterCount;
+    }
+
+    int hashCount() {
+        return hashCount;
+    }
+
+    long byteSize() {
+        return (long) words.length() * Long.BYTES;
+    }
+
+    // People put and not removed again
+    long size() {
+        return members.sum();
+    }
+
+    // False positive rate expected for the number of people in the filter now
+    double expectedFalsePositiveRate() {
+        double fillRatio = 1.0 - Math.exp(-(double) hashCount * members.sum() / counterCount);
+        return Math.pow(fillRatio, hashCount);
+    }
+
+    static long hash(Person person) {
+        long hash = 0xCBF29CE484222325L;
+        hash = hashString(hash, person.getFirstName());
+        hash = hashString(hash, person.getLastName());
+        Integer age = person.getAge();
+        hash = (hash ^ (age == null ? 0xA5A5A5A5L : age.longValue())) * 0x100000001B3L;
+        return mix(hash);
+    }
+
+    private static long hashString(long hash, String value) {
+        if (value == null) {
+            return (hash ^ 0xFF) * 0x100000001B3L;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        // Field separator, so ("ab", "c") and ("a", "bc") hash differently
+        return (hash ^ 0x1F) * 0x100000001B3L;
+    }
+
+    // Adds delta to one counter; saturated counters and counters at zero are left alone
+    private void change(long counter, int delta) {
+        int word = (int) (counter / COUNTERS_PER_WORD);
+        int shift = (int) (counter % COUNTERS_PER_WORD) * COUNTER_BITS;
+        while (true) {
+            long current = words.get(word);
+            long value = current >>> shift & COUNTER_MAX;
+            if (value == COUNTER_MAX || value == 0 && delta < 0) {
+                return;
+            }
+            if (words.compareAndSet(word, current, current + ((long) delta << shift))) {
+                return;
+            }
+        }
+    }
+
+    private static long counterAt(long word, long counter) {
+        return word >>> (int) (counter % COUNTERS_PER_WORD) * COUNTER_BITS & COUNTER_MAX;
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
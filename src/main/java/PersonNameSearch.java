@@ -0,0 +1,628 @@
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/* Fuzzy and prefix search over first and last names without scanning every Person.
+   Every distinct lower-case name token is a term with the list of people using it. Terms are found
+   two ways: a prefix trie, and trigram posting lists that give the terms sharing enough trigrams
+   with a misspelled query (one edit changes at most three trigrams). Candidates are then checked
+   with a bounded edit distance. Queries too short for that bound walk the trie instead, dropping
+   every branch whose prefix is already too far from the query. A query of several tokens, like
+   "Anna-Liisa" or "Test Person", finds the people matching every one of them; it goes through
+   every person using a close enough name, so common names make it slower than single tokens.
+   Posting lists are delta + varint encoded int arrays, so appending is cheap; removed people are
+   only marked and the index is rebuilt once most entries are dead.
+   Only the posting lists are compact. Every person also costs a boxed HashMap<Long, Integer>
+   entry and a slot in three parallel arrays holding the id and references to both names, about
+   140 bytes per person besides the name strings, so 50M names need around 7 GB of heap.
+ */
+final class PersonNameSearch {
+
+    private static final char PAD = ' ';
+    private static final int MIN_COMPACTION = 1024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Index index = new Index();
+
+    // Indexes the person's names under id, replacing what was indexed for that id before
+    void add(long id, Person person) {
+        lock.writeLock().lock();
+        try {
+            index.remove(id);
+            index.add(id, person.getFirstName(), person.getLastName());
+            compactIfSparse();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            boolean removed = index.remove(id);
+            compactIfSparse();
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return index.liveCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // People with a first or last name starting with prefix, in alphabetical order of that name
+    List<Match> prefix(String prefix, int limit) {
+        String term = normalize(prefix);
+        lock.readLock().lock();
+        try {
+            Map<Integer, Match> matches = new LinkedHashMap<>();
+            index.trie.forEachWithPrefix(term, termId -> collect(termId, 0, matches, limit));
+            return new ArrayList<>(matches.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* People with a name within maxDistance edits of the query, closest first. Ties go to names
+       sharing more trigrams with the query, then to alphabetical order. A query of several tokens
+       matches the people having a name within maxDistance of each token, ranked by the sum.
+     */
+    List<Match> search(String query, int maxDistance, int limit) {
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("Distance must not be negative: " + maxDistance);
+        }
+        List<String> queryTokens = tokens(query, null);
+        if (queryTokens.size() > 1) {
+            return searchAll(queryTokens, maxDistance, limit);
+        }
+        String term = queryTokens.isEmpty() ? normalize(query) : queryTokens.get(0);
+        lock.readLock().lock();
+        try {
+            List<Candidate> candidates = index.candidates(term, maxDistance);
+            Collections.sort(candidates);
+
+            Map<Integer, Match> matches = new LinkedHashMap<>();
+            for (Candidate candidate : candidates) {
+                if (!collect(candidate.termId, candidate.distance, matches, limit)) {
+                    break;
+                }
+            }
+            return new ArrayList<>(matches.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Keeps the people matching every token, with the closest of their names for each of them
+    private List<Match> searchAll(List<String> queryTokens, int maxDistance, int limit) {
+        lock.readLock().lock();
+        try {
+            Map<Integer, TokenMatches> people = null;
+            for (String token : queryTokens) {
+                Map<Integer, TokenMatches> matching = new HashMap<>();
+                for (Candidate candidate : index.candidates(token, maxDistance)) {
+                    Postings.Cursor cursor = index.termPeople[candidate.termId].cursor();
+                    while (cursor.advance()) {
+                        int person = cursor.current();
+                        TokenMatches before = people == null ? TokenMatches.NONE : people.get(person);
+                        if (before == null || index.removed.get(person)) {
+                            continue;
+                        }
+                        TokenMatches current = matching.get(person);
+                        if (current == null || candidate.compareTo(current.candidate) < 0) {
+                            matching.put(person, new TokenMatches(before, candidate));
+                        }
+                    }
+                }
+                people = matching;
+            }
+
+            List<Map.Entry<Integer, TokenMatches>> ranked = new ArrayList<>(people.entrySet());
+            ranked.sort(Map.Entry.comparingByValue());
+            List<Match> matches = new ArrayList<>();
+            for (Map.Entry<Integer, TokenMatches> entry : ranked.subList(0, Math.min(limit, ranked.size()))) {
+                int person = entry.getKey();
+                TokenMatches matched = entry.getValue();
+                matches.add(new Match(index.ids[person], index.firstNames[person], index.lastNames[person],
+                        matched.names, matched.distance));
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Adds the live people using the term and tells whether there is room for more
+    private boolean collect(int termId, int distance, Map<Integer, Match> matches, int limit) {
+        Postings.Cursor cursor = index.termPeople[termId].cursor();
+        while (matches.size() < limit && cursor.advance()) {
+            int person = cursor.current();
+            if (!index.removed.get(person) && !matches.containsKey(person)) {
+                matches.put(person, new Match(index.ids[person], index.firstNames[person],
+                        index.lastNames[person], index.terms[termId], distance));
+            }
+        }
+        return matches.size() < limit;
+    }
+
+    private void compactIfSparse() {
+        int dead = index.count - index.liveCount();
+        if (dead >= MIN_COMPACTION && dead > index.liveCount()) {
+            Index compacted = new Index();
+            for (int person = 0; person < index.count; person++) {
+                if (!index.removed.get(person)) {
+                    compacted.add(index.ids[person], index.firstNames[person], index.lastNames[person]);
+                }
+            }
+            index = compacted;
+        }
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static List<String> tokens(String firstName, String lastName) {
+        List<String> tokens = new ArrayList<>(2);
+        for (String name : new String[]{firstName, lastName}) {
+            for (String token : normalize(name).split("[^\\p{L}\\p{N}]+")) {
+                if (!token.isEmpty() && !tokens.contains(token)) {
+                    tokens.add(token);
+                }
+            }
+        }
+        return tokens;
+    }
+
+    // Trigrams of "  term ", packed as three 16-bit chars
+    private static long[] trigrams(String term) {
+        String padded = PAD + "" + PAD + term + PAD;
+        long[] trigrams = new long[padded.length() - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = (long) padded.charAt(i) << 32 | (long) padded.charAt(i + 1) << 16 | padded.charAt(i + 2);
+        }
+        return trigrams;
+    }
+
+    // Levenshtein distance, or maxDistance + 1 as soon as it is known to be larger
+    static int editDistance(String a, String b, int maxDistance) {
+        if (Math.abs(a.length() - b.length()) > maxDistance) {
+            return maxDistance + 1;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxDistance) {
+                return maxDistance + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], maxDistance + 1);
+    }
+
+    static final class Match {
+
+        private final long id;
+        private final String firstName;
+        private final String lastName;
+        private final String matchedName;
+        private final int distance;
+
+        Match(long id, String firstName, String lastName, String matchedName, int distance) {
+            this.id = id;
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.matchedName = matchedName;
+            this.distance = distance;
+        }
+
+        long getId() {
+            return id;
+        }
+
+        String getFirstName() {
+            return firstName;
+        }
+
+        String getLastName() {
+            return lastName;
+        }
+
+        // The lower-case name token that matched the query, one per query token separated by spaces
+        String getMatchedName() {
+            return matchedName;
+        }
+
+        int getDistance() {
+            return distance;
+        }
+
+        @Override
+        public String toString() {
+            return id + " " + firstName + " " + lastName + " (" + matchedName + ", distance " + distance + ")";
+        }
+    }
+
+    private static final class Candidate implements Comparable<Candidate> {
+
+        private final int termId;
+        private final String term;
+        private final int distance;
+        private final int sharedTrigrams;
+
+        Candidate(int termId, String term, int distance, int sharedTrigrams) {
+            this.termId = termId;
+            this.term = term;
+            this.distance = distance;
+            this.sharedTrigrams = sharedTrigrams;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            if (distance != other.distance) {
+                return Integer.compare(distance, other.distance);
+            }
+            if (sharedTrigrams != other.sharedTrigrams) {
+                return Integer.compare(other.sharedTrigrams, sharedTrigrams);
+            }
+            return term.compareTo(other.term);
+        }
+    }
+
+    // The closest name of one person for each query token so far, compared like Candidates by their sums
+    private static final class TokenMatches implements Comparable<TokenMatches> {
+
+        static final TokenMatches NONE = new TokenMatches();
+
+        private final Candidate candidate;
+        private final String names;
+        private final int distance;
+        private final int sharedTrigrams;
+
+        private TokenMatches() {
+            this.candidate = null;
+            this.names = "";
+            this.distance = 0;
+            this.sharedTrigrams = 0;
+        }
+
+        TokenMatches(TokenMatches before, Candidate candidate) {
+            this.candidate = candidate;
+            this.names = before.names.isEmpty() ? candidate.term : before.names + " " + candidate.term;
+            this.distance = before.distance + candidate.distance;
+            this.sharedTrigrams = before.sharedTrigrams + candidate.sharedTrigrams;
+        }
+
+        @Override
+        public int compareTo(TokenMatches other) {
+            if (distance != other.distance) {
+                return Integer.compare(distance, other.distance);
+            }
+            if (sharedTrigrams != other.sharedTrigrams) {
+                return Integer.compare(other.sharedTrigrams, sharedTrigrams);
+            }
+            return names.compareTo(other.names);
+        }
+    }
+
+    // Everything the lock guards; replaced as a whole when compacting
+    private static final class Index {
+
+        private final Map<String, Integer> termIds = new HashMap<>();
+        private final Map<Long, Postings> trigramTerms = new HashMap<>();
+        private final Trie trie = new Trie();
+        private String[] terms = new String[16];
+        private Postings[] termPeople = new Postings[16];
+        private int termCount;
+
+        private final Map<Long, Integer> people = new HashMap<>();
+        private final BitSet removed = new BitSet();
+        private long[] ids = new long[16];
+        private String[] firstNames = new String[16];
+        private String[] lastNames = new String[16];
+        private int count;
+
+        int liveCount() {
+            return people.size();
+        }
+
+        void add(long id, String firstName, String lastName) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                firstNames = Arrays.copyOf(firstNames, count * 2);
+                lastNames = Arrays.copyOf(lastNames, count * 2);
+            }
+            int person = count++;
+            ids[person] = id;
+            firstNames[person] = firstName;
+            lastNames[person] = lastName;
+            people.put(id, person);
+
+            for (String token : tokens(firstName, lastName)) {
+                // termId() may grow termPeople, so look the array up afterwards
+                int termId = termId(token);
+                termPeople[termId].add(person);
+            }
+        }
+
+        boolean remove(long id) {
+            Integer person = people.remove(id);
+            if (person == null) {
+                return false;
+            }
+            removed.set(person);
+            return true;
+        }
+
+        // Terms within maxDistance of the query, through trigrams when the query is long enough
+        List<Candidate> candidates(String query, int maxDistance) {
+            List<Candidate> candidates = new ArrayList<>();
+            Set<Long> queryTrigrams = new LinkedHashSet<>();
+            for (long trigram : trigrams(query)) {
+                queryTrigrams.add(trigram);
+            }
+            // Terms are listed once per distinct trigram, so the bound has to count distinct ones too
+            int minShared = queryTrigrams.size() - 3 * maxDistance;
+
+            if (minShared < 1) {
+                // Too short for the trigram bound to exclude anything
+                trie.forEachWithin(query, maxDistance, (termId, distance) ->
+                        candidates.add(new Candidate(termId, terms[termId], distance, 0)));
+                return candidates;
+            }
+
+            List<Postings.Cursor> cursors = new ArrayList<>();
+            for (long trigram : queryTrigrams) {
+                Postings postings = trigramTerms.get(trigram);
+                if (postings != null) {
+                    cursors.add(postings.cursor());
+                }
+            }
+
+            // Merge the sorted lists and count in how many of them each term occurs
+            PriorityQueue<Postings.Cursor> heap = new PriorityQueue<>(Math.max(1, cursors.size()),
+                    Comparator.comparingInt(Postings.Cursor::current));
+            for (Postings.Cursor cursor : cursors) {
+                if (cursor.advance()) {
+                    heap.add(cursor);
+                }
+            }
+            while (!heap.isEmpty()) {
+                int termId = heap.peek().current();
+                int shared = 0;
+                while (!heap.isEmpty() && heap.peek().current() == termId) {
+                    Postings.Cursor cursor = heap.poll();
+                    shared++;
+                    if (cursor.advance()) {
+                        heap.add(cursor);
+                    }
+                }
+                if (shared >= minShared) {
+                    addIfClose(candidates, termId, query, maxDistance, shared);
+                }
+            }
+            return candidates;
+        }
+
+        private void addIfClose(List<Candidate> candidates, int termId, String query, int maxDistance, int shared) {
+            int distance = editDistance(query, terms[termId], maxDistance);
+            if (distance <= maxDistance) {
+                candidates.add(new Candidate(termId, terms[termId], distance, shared));
+            }
+        }
+
+        private int termId(String term) {
+            Integer existing = termIds.get(term);
+            if (existing != null) {
+                return existing;
+            }
+
+            if (termCount == terms.length) {
+                terms = Arrays.copyOf(terms, termCount * 2);
+                termPeople = Arrays.copyOf(termPeople, termCount * 2);
+            }
+            int termId = termCount++;
+            terms[termId] = term;
+            termPeople[termId] = new Postings();
+            termIds.put(term, termId);
+            trie.insert(term, termId);
+            for (long trigram : trigrams(term)) {
+                Postings postings = trigramTerms.computeIfAbsent(trigram, key -> new Postings());
+                // A term like "anana" repeats trigrams, list it once
+                if (postings.last() != termId) {
+                    postings.add(termId);
+                }
+            }
+            return termId;
+        }
+    }
+
+    /* Ascending ints stored as varint-encoded gaps, so dense lists take about a byte per entry.
+       Values must be added in increasing order, which holds because ids are handed out in order.
+     */
+    private static final class Postings {
+
+        private byte[] data = new byte[4];
+        private int length;
+        private int last = -1;
+
+        int last() {
+            return last;
+        }
+
+        void add(int value) {
+            if (value <= last) {
+                throw new IllegalArgumentException("Postings must be added in increasing order: " + value);
+            }
+            int gap = value - last;
+            last = value;
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+            }
+            while ((gap & ~0x7F) != 0) {
+                data[length++] = (byte) ((gap & 0x7F) | 0x80);
+                gap >>>= 7;
+            }
+            data[length++] = (byte) gap;
+        }
+
+        Cursor cursor() {
+            return new Cursor();
+        }
+
+        final class Cursor {
+
+            private int position;
+            private int current = -1;
+            private final int end = length;
+
+            boolean advance() {
+                if (position >= end) {
+                    return false;
+                }
+                int gap = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[position++];
+                    gap |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                current += gap;
+                return true;
+            }
+
+            int current() {
+                return current;
+            }
+        }
+    }
+
+    // Terms by character, children kept in sorted arrays so walks come out in alphabetical order
+    private static final class Trie {
+
+        interface TermVisitor {
+            void accept(int termId, int distance);
+        }
+
+        private final Node root = new Node();
+
+        void insert(String term, int termId) {
+            Node node = root;
+            for (int i = 0; i < term.length(); i++) {
+                node = node.childOrCreate(term.charAt(i));
+            }
+            node.termId = termId;
+        }
+
+        // Stops as soon as the action returns false
+        void forEachWithPrefix(String prefix, IntPredicate action) {
+            Node node = root;
+            for (int i = 0; i < prefix.length() && node != null; i++) {
+                node = node.child(prefix.charAt(i));
+            }
+            if (node != null) {
+                walk(node, action);
+            }
+        }
+
+        /* Terms within maxDistance edits of the query. Each node extends the edit distance row of
+           its parent by one character, and a branch is left as soon as no cell of the row is
+           within maxDistance, as no longer term can get closer again.
+         */
+        void forEachWithin(String query, int maxDistance, TermVisitor visitor) {
+            int[] row = new int[query.length() + 1];
+            for (int j = 0; j < row.length; j++) {
+                row[j] = j;
+            }
+            for (int i = 0; i < root.size; i++) {
+                walkWithin(root.children[i], root.keys[i], query, row, maxDistance, visitor);
+            }
+        }
+
+        private static void walkWithin(Node node, char key, String query, int[] previous, int maxDistance,
+                                       TermVisitor visitor) {
+            int[] current = new int[previous.length];
+            current[0] = previous[0] + 1;
+            int rowMin = current[0];
+            for (int j = 1; j < current.length; j++) {
+                int cost = query.charAt(j - 1) == key ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+
+            int distance = current[query.length()];
+            if (node.termId >= 0 && distance <= maxDistance) {
+                visitor.accept(node.termId, distance);
+            }
+            if (rowMin <= maxDistance) {
+                for (int i = 0; i < node.size; i++) {
+                    walkWithin(node.children[i], node.keys[i], query, current, maxDistance, visitor);
+                }
+            }
+        }
+
+        private static boolean walk(Node node, IntPredicate action) {
+            if (node.termId >= 0 && !action.test(node.termId)) {
+                return false;
+            }
+            for (int i = 0; i < node.size; i++) {
+                if (!walk(node.children[i], action)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static final class Node {
+
+            private char[] keys = new char[0];
+            private Node[] children = new Node[0];
+            private int size;
+            private int termId = -1;
+
+            Node child(char key) {
+                int index = Arrays.binarySearch(keys, 0, size, key);
+                return index >= 0 ? children[index] : null;
+            }
+
+            Node childOrCreate(char key) {
+                int index = Arrays.binarySearch(keys, 0, size, key);
+                if (index >= 0) {
+                    return children[index];
+                }
+                int insertAt = -index - 1;
+                if (size == keys.length) {
+                    keys = Arrays.copyOf(keys, Math.max(2, size * 2));
+                    children = Arrays.copyOf(children, Math.max(2, size * 2));
+                }
+                System.arraycopy(keys, insertAt, keys, insertAt + 1, size - insertAt);
+                System.arraycopy(children, insertAt, children, insertAt + 1, size - insertAt);
+                keys[insertAt] = key;
+                children[insertAt] = new Node();
+                size++;
+                return children[insertAt];
+            }
+        }
+    }
+}
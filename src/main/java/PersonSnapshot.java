@@ -0,0 +1,319 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/* Read-only Person population backed by a memory-mapped snapshot file.
+   Opening maps the file and verifies the header and index; records are decoded one at a time
+   when they are read, and each block of records is checked against its CRC the first time
+   one of its records is read, so a store can serve requests straight after startup.
+
+   Layout: a 48 byte header (magic, version, log sequence, record count, max id, records length,
+   capture time, CRC32 of the header before it, the index and the block table), an index of
+   (id, offset) pairs sorted by id,
+   one CRC32 per 64 KiB block of records, and the encoded records.
+   A snapshot is a single mapping, so it is limited to 2 GB; write refuses anything larger.
+ */
+final class PersonSnapshot {
+
+    static final int MAGIC = 0x50534E50;
+    static final int VERSION = 4;
+
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    private static final int HEADER_SIZE = 48;
+    private static final int INDEX_ENTRY_SIZE = 12;
+    private static final int CRC_POSITION = 44;
+
+    private final Path file;
+    private final ByteBuffer buffer;
+    private final long logSequence;
+    private final long capturedAt;
+    private final int count;
+    private final long maxId;
+    private final int recordsLength;
+    private final int blockTableStart;
+    private final int recordsStart;
+    // Written without synchronisation; a thread that misses another's update only checks a block again
+    private final boolean[] verified;
+
+    private PersonSnapshot(Path file, ByteBuffer buffer, int count, int recordsLength) {
+        this.file = file;
+        this.buffer = buffer;
+        this.logSequence = buffer.getLong(8);
+        this.capturedAt = buffer.getLong(36);
+        this.count = count;
+        this.maxId = buffer.getLong(20);
+        this.recordsLength = recordsLength;
+        this.blockTableStart = HEADER_SIZE + count * INDEX_ENTRY_SIZE;
+        this.verified = new boolean[blockCount(recordsLength)];
+        this.recordsStart = blockTableStart + verified.length * 4;
+    }
+
+    static PersonSnapshot open(Path file) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not a Person snapshot: " + file);
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (mapped.getInt(0) != MAGIC) {
+            throw new IOException("Not a Person snapshot: " + file);
+        }
+        if (mapped.getInt(4) != VERSION) {
+            throw new IOException("Unsupported snapshot version " + mapped.getInt(4) + " in " + file);
+        }
+
+        int count = mapped.getInt(16);
+        long recordsLength = mapped.getLong(28);
+        if (count < 0 || recordsLength < 0 || totalSize(count, recordsLength) != mapped.capacity()) {
+            throw new IOException("Truncated or damaged snapshot " + file);
+        }
+
+        ByteBuffer header = mapped.duplicate();
+        header.limit(CRC_POSITION);
+        ByteBuffer index = mapped.duplicate();
+        index.position(HEADER_SIZE).limit(HEADER_SIZE + count * INDEX_ENTRY_SIZE + blockCount(recordsLength) * 4);
+        CRC32 crc = new CRC32();
+        crc.update(header);
+        crc.update(index);
+        if ((int) crc.getValue() != mapped.getInt(CRC_POSITION)) {
+            throw new IOException("Snapshot checksum mismatch in the header or index of " + file);
+        }
+
+        return new PersonSnapshot(file, mapped, count, (int) recordsLength);
+    }
+
+    /* Writes the records to a temporary file next to the target, forces it to disk
+       and moves it into place, so readers see either the old or the new snapshot.
+       The directory is forced as well, so the move itself survives a crash.
+       capturedAt is the time the records were read from the store, in epoch milliseconds.
+     */
+    static void write(Path file, long logSequence, long capturedAt, SortedMap<Long, Person> records)
+            throws IOException {
+        List<byte[]> encoded = new ArrayList<>(records.size());
+        long maxId = 0;
+        long recordsLength = 0;
+        for (Map.Entry<Long, Person> record : records.entrySet()) {
+            byte[] bytes = PersonCodec.encode(record.getValue());
+            encoded.add(bytes);
+            recordsLength += bytes.length;
+            maxId = Math.max(maxId, record.getKey());
+        }
+        long totalSize = totalSize(records.size(), recordsLength);
+        if (totalSize > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot of " + records.size() + " records needs " + totalSize
+                    + " bytes, more than the 2 GB a snapshot can map");
+        }
+
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            // Everything in the header is known up front, so the CRC starts with it and goes on over the index
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(logSequence).putInt(records.size())
+                    .putLong(maxId).putLong(recordsLength).putLong(capturedAt);
+            CRC32 crc = new CRC32();
+            crc.update(header.array(), 0, CRC_POSITION);
+            ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+            channel.position(HEADER_SIZE);
+
+            int offset = 0;
+            int i = 0;
+            for (Long id : records.keySet()) {
+                out = flushIfFull(channel, crc, out, INDEX_ENTRY_SIZE);
+                out.putLong(id).putInt(offset);
+                offset += encoded.get(i++).length;
+            }
+            for (int blockCrc : blockChecksums(encoded, blockCount(recordsLength))) {
+                out = flushIfFull(channel, crc, out, 4);
+                out.putInt(blockCrc);
+            }
+            flush(channel, crc, out);
+
+            for (byte[] record : encoded) {
+                out = flushIfFull(channel, null, out, record.length);
+                out.put(record);
+            }
+            flush(channel, null, out);
+
+            header.putInt((int) crc.getValue());
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(directory);
+    }
+
+    long logSequence() {
+        return logSequence;
+    }
+
+    long capturedAt() {
+        return capturedAt;
+    }
+
+    int size() {
+        return count;
+    }
+
+    long maxId() {
+        return maxId;
+    }
+
+    boolean contains(long id) {
+        return indexOf(id) >= 0;
+    }
+
+    Person get(long id) {
+        int index = indexOf(id);
+        return index < 0 ? null : personAt(index);
+    }
+
+    long idAt(int index) {
+        return buffer.getLong(HEADER_SIZE + index * INDEX_ENTRY_SIZE);
+    }
+
+    Person personAt(int index) {
+        int offset = offsetAt(index);
+        int end = index + 1 < count ? offsetAt(index + 1) : recordsLength;
+        for (int block = offset / BLOCK_SIZE; block <= (end - 1) / BLOCK_SIZE; block++) {
+            verify(block);
+        }
+
+        ByteBuffer record = buffer.duplicate();
+        record.position(recordsStart + offset);
+        return PersonCodec.decode(record);
+    }
+
+    void forEach(BiConsumer<Long, Person> action) {
+        for (int i = 0; i < count; i++) {
+            action.accept(idAt(i), personAt(i));
+        }
+    }
+
+    private int indexOf(long id) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleId = idAt(middle);
+            if (middleId < id) {
+                low = middle + 1;
+            } else if (middleId > id) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private int offsetAt(int index) {
+        return buffer.getInt(HEADER_SIZE + index * INDEX_ENTRY_SIZE + 8);
+    }
+
+    private void verify(int block) {
+        if (verified[block]) {
+            return;
+        }
+
+        ByteBuffer data = buffer.duplicate();
+        data.position(recordsStart + block * BLOCK_SIZE)
+                .limit(recordsStart + Math.min(recordsLength, (block + 1) * BLOCK_SIZE));
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        if ((int) crc.getValue() != buffer.getInt(blockTableStart + block * 4)) {
+            throw new UncheckedIOException(new IOException(
+                    "Snapshot checksum mismatch in block " + block + " of " + file));
+        }
+        verified[block] = true;
+    }
+
+    private static long totalSize(int count, long recordsLength) {
+        return HEADER_SIZE + (long) count * INDEX_ENTRY_SIZE + blockCount(recordsLength) * 4L + recordsLength;
+    }
+
+    private static int blockCount(long recordsLength) {
+        return (int) ((recordsLength + BLOCK_SIZE - 1) / BLOCK_SIZE);
+    }
+
+    // CRC32 of each BLOCK_SIZE slice of the records laid end to end
+    private static int[] blockChecksums(List<byte[]> encoded, int blocks) {
+        int[] checksums = new int[blocks];
+        CRC32 crc = new CRC32();
+        int block = 0;
+        int filled = 0;
+        for (byte[] record : encoded) {
+            int position = 0;
+            while (position < record.length) {
+                int length = Math.min(record.length - position, BLOCK_SIZE - filled);
+                crc.update(record, position, length);
+                position += length;
+                filled += length;
+                if (filled == BLOCK_SIZE) {
+                    checksums[block++] = (int) crc.getValue();
+                    crc.reset();
+                    filled = 0;
+                }
+            }
+        }
+        if (filled > 0) {
+            checksums[block] = (int) crc.getValue();
+        }
+        return checksums;
+    }
+
+    // Makes a rename durable; not every platform can open a directory, and those need no extra step
+    static void forceDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (FileChannel opened = channel) {
+            opened.force(true);
+        }
+    }
+
+    private static ByteBuffer flushIfFull(FileChannel channel, CRC32 crc, ByteBuffer out, int needed)
+            throws IOException {
+        if (out.remaining() >= needed) {
+            return out;
+        }
+        flush(channel, crc, out);
+        return needed > out.capacity() ? ByteBuffer.allocate(needed) : out;
+    }
+
+    // Records pass a null crc, they are covered by the block checksums instead
+    private static void flush(FileChannel channel, CRC32 crc, ByteBuffer out) throws IOException {
+        out.flip();
+        if (crc != null) {
+            crc.update(out.duplicate());
+        }
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+}
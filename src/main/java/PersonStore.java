@@ -0,0 +1,529 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/* Thread-safe Person collection keyed by a generated id.
+   Records may come from a memory-mapped PersonSnapshot; changes made since then live in an
+   in-memory overlay where removals are marked with a tombstone. Stored people are frozen copies
+   (FrozenPerson), callers always get and give mutable ones. Every overlay change is also published
+   into a persistent PersonMap with a compare-and-set, so scans and snapshot capture read one
+   consistent version of the overlay without copying it or blocking writers. Once a snapshot of the
+   store's own file is written, it becomes the new base and the overlay entries it covers are dropped.
+   A change is queued in the change log while its map entry is locked, which keeps log order and
+   map order the same for each id, but the wait for the write or fsync happens after the entry and
+   the capture lock are released. Other threads may therefore see a change shortly before it is
+   durable; the caller that made it only returns once it is.
+ */
+final class PersonStore implements Closeable {
+
+    static final int ADD = 0;
+    static final int GET = 1;
+    static final int MISS = 2;
+    static final int UPDATE = 3;
+    static final int REMOVE = 4;
+    static final int QUERY = 5;
+
+    private static final Person TOMBSTONE = FrozenPerson.of(new Person());
+
+    private final ConcurrentMap<Long, Person> overlay = new ConcurrentHashMap<>();
+    // The base and the same entries as overlay; replaced inside compute for the changed id, or by rebase
+    private final AtomicReference<Version> version;
+    private final AtomicLong nextId;
+    private final AtomicInteger size;
+
+    // Mutations share the read lock, capturing a snapshot takes the write lock
+    private final ReadWriteLock captureLock = new ReentrantReadWriteLock();
+
+    // Optional, changes are only kept in memory when null
+    private final PersonChangeLog changeLog;
+    private final Path changeLogFile;
+    // The snapshot the store was opened from; writing it rotates the change log
+    private final Path snapshotFile;
+    // Log sequence of the newest snapshot written to snapshotFile, guarded by itself
+    private final long[] snapshotSequence = {0L};
+    // Optional, operations are not measured when null
+    private final OperationMetrics metrics;
+    // Optional, containsPerson() always scans when null; set under the capture write lock
+    private volatile PersonMembershipFilter membership;
+
+    PersonStore() {
+        this(null, null, null);
+    }
+
+    PersonStore(PersonSnapshot base, PersonChangeLog changeLog, OperationMetrics metrics) {
+        this(base, null, changeLog, null, metrics);
+    }
+
+    private PersonStore(PersonSnapshot base, Path snapshotFile, PersonChangeLog changeLog, Path changeLogFile,
+                        OperationMetrics metrics) {
+        this.version = new AtomicReference<>(new Version(base, PersonMap.EMPTY));
+        this.snapshotFile = snapshotFile == null ? null : snapshotFile.toAbsolutePath().normalize();
+        this.changeLog = changeLog;
+        this.changeLogFile = changeLogFile;
+        this.metrics = metrics;
+        this.nextId = new AtomicLong(base == null ? 1 : base.maxId() + 1);
+        this.size = new AtomicInteger(base == null ? 0 : base.size());
+    }
+
+    static OperationMetrics newMetrics() {
+        return new OperationMetrics("PersonStore", "add", "get", "miss", "update", "remove", "query");
+    }
+
+    /* Opens the snapshot if there is one, replays the change log on top of it
+       and keeps appending to that log. Snapshots written back to snapshotFile rotate the log,
+       and the log files they cover are deleted once the snapshot is on disk.
+     */
+    static PersonStore open(Path snapshotFile, Path changeLogFile, OperationMetrics metrics) throws IOException {
+        return open(snapshotFile, changeLogFile, PersonChangeLog.FsyncPolicy.EVERY_WRITE, 0, metrics);
+    }
+
+    static PersonStore open(Path snapshotFile, Path changeLogFile, PersonChangeLog.FsyncPolicy fsyncPolicy,
+                            long fsyncIntervalMillis, OperationMetrics metrics) throws IOException {
+        PersonStore recovered = recover(snapshotFile, changeLogFile, Long.MAX_VALUE);
+        Version recoveredVersion = recovered.version.get();
+        long snapshotSequence = recoveredVersion.base == null ? 0 : recoveredVersion.base.logSequence();
+        PersonChangeLog changeLog = PersonChangeLog.open(changeLogFile, fsyncPolicy, fsyncIntervalMillis,
+                snapshotSequence);
+
+        PersonStore store = new PersonStore(recoveredVersion.base, snapshotFile, changeLog, changeLogFile, metrics);
+        store.overlay.putAll(recovered.overlay);
+        store.version.set(recoveredVersion);
+        store.nextId.set(recovered.nextId.get());
+        store.size.set(recovered.size.get());
+        return store;
+    }
+
+    /* Read-only recovery of the state as it was at the given time, for point-in-time inspection.
+       Only times from the snapshot's capture on can be recovered: the log before it has been rotated away.
+     */
+    static PersonStore recover(Path snapshotFile, Path changeLogFile, long upToTimestamp) throws IOException {
+        PersonSnapshot snapshot = Files.exists(snapshotFile) ? PersonSnapshot.open(snapshotFile) : null;
+        if (snapshot != null && snapshot.capturedAt() > upToTimestamp) {
+            throw new IllegalArgumentException("Cannot recover the state at " + upToTimestamp
+                    + ", the snapshot was captured later, at " + snapshot.capturedAt());
+        }
+        PersonStore store = new PersonStore(snapshot, null, null);
+
+        long afterSequence = snapshot == null ? 0 : snapshot.logSequence();
+        PersonChangeLog.replay(changeLogFile, afterSequence, upToTimestamp, store::apply);
+        return store;
+    }
+
+    long add(Person person) {
+        long start = metrics == null ? 0L : System.nanoTime();
+        Person stored = FrozenPerson.of(person);
+        boolean[] taken = {false};
+        long[] sequence = {0L};
+
+        long id;
+        do {
+            // put() may claim an id between getAndIncrement and compute; never overwrite it, take the next one
+            id = nextId.getAndIncrement();
+            long candidate = id;
+            mutate(() -> overlay.compute(candidate, (key, previous) -> {
+                taken[0] = exists(candidate, previous);
+                if (taken[0]) {
+                    return previous;
+                }
+                sequence[0] = log(PersonChangeLog.Operation.ADD, candidate, stored);
+                size.incrementAndGet();
+                track(null, stored);
+                return publish(candidate, stored);
+            }));
+        } while (taken[0]);
+        awaitLogged(sequence[0]);
+        record(ADD, start);
+        return id;
+    }
+
+    // Stores the person under an id chosen by the caller, adding or replacing; true when added
+    boolean put(long id, Person person) {
+        long start = metrics == null ? 0L : System.nanoTime();
+        Person stored = FrozenPerson.of(person);
+        boolean[] added = {false};
+        long[] sequence = {0L};
+
+        // Before the entry is written, so add() hands out this id only if it claimed it first
+        nextId.accumulateAndGet(id + 1, Math::max);
+        mutate(() -> overlay.compute(id, (key, previous) -> {
+            added[0] = !exists(id, previous);
+            sequence[0] = log(added[0] ? PersonChangeLog.Operation.ADD : PersonChangeLog.Operation.UPDATE, id, stored);
+            if (added[0]) {
+                size.incrementAndGet();
+            }
+            track(added[0] ? null : current(id, previous), stored);
+            return publish(id, stored);
+        }));
+        awaitLogged(sequence[0]);
+        record(added[0] ? ADD : UPDATE, start);
+        return added[0];
+    }
+
+    Person get(long id) {
+        long start = metrics == null ? 0L : System.nanoTime();
+        Person stored = lookup(id);
+        record(stored == null ? MISS : GET, start);
+        return stored == null ? null : new Person(stored);
+    }
+
+    boolean contains(long id) {
+        return lookup(id) != null;
+    }
+
+    boolean update(long id, Person person) {
+        long start = metrics == null ? 0L : System.nanoTime();
+        Person stored = FrozenPerson.of(person);
+        boolean[] updated = {false};
+        long[] sequence = {0L};
+
+        mutate(() -> overlay.compute(id, (key, previous) -> {
+            if (!exists(id, previous)) {
+                return previous;
+            }
+            sequence[0] = log(PersonChangeLog.Operation.UPDATE, id, stored);
+            updated[0] = true;
+            track(current(id, previous), stored);
+            return publish(id, stored);
+        }));
+        awaitLogged(sequence[0]);
+        record(UPDATE, start);
+        return updated[0];
+    }
+
+    boolean remove(long id) {
+        long start = metrics == null ? 0L : System.nanoTime();
+        boolean[] removed = {false};
+        long[] sequence = {0L};
+
+        mutate(() -> overlay.compute(id, (key, previous) -> {
+            if (!exists(id, previous)) {
+                return previous;
+            }
+            sequence[0] = log(PersonChangeLog.Operation.REMOVE, id, null);
+            size.decrementAndGet();
+            removed[0] = true;
+            track(current(id, previous), null);
+            return publish(id, TOMBSTONE);
+        }));
+        awaitLogged(sequence[0]);
+        record(REMOVE, start);
+        return removed[0];
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    // Changes made since the base snapshot, tombstones included
+    int overlaySize() {
+        return overlay.size();
+    }
+
+    /* Builds a membership filter over everyone in the store and keeps it up to date from then on,
+       so containsPerson() answers most misses without a scan. Size it for the expected roster;
+       the false positive rate rises once the store grows well past expectedPeople.
+     */
+    void enableMembershipFilter(long expectedPeople, double falsePositiveRate) {
+        PersonMembershipFilter filter = new PersonMembershipFilter(
+                Math.max(expectedPeople, size.get()), falsePositiveRate);
+        captureLock.writeLock().lock();
+        try {
+            scan((id, person) -> filter.put(person));
+            membership = filter;
+        } finally {
+            captureLock.writeLock().unlock();
+        }
+    }
+
+    // Whether someone with the same first name, last name and age is stored
+    boolean containsPerson(Person person) {
+        PersonMembershipFilter filter = membership;
+        if (filter != null && !filter.mightContain(person)) {
+            return false;
+        }
+
+        boolean[] found = {false};
+        scan((id, stored) -> found[0] |= sameFields(stored, person));
+        return found[0];
+    }
+
+    // Flushes and closes the change log, the store itself needs no cleanup
+    @Override
+    public void close() throws IOException {
+        if (changeLog != null) {
+            changeLog.close();
+        }
+    }
+
+    // Copies of all people matching the predicate, in no particular order
+    List<Person> query(Predicate<Person> predicate) {
+        return query("unnamed", predicate);
+    }
+
+    // Same, with a label that names the query in flight recordings
+    List<Person> query(String label, Predicate<Person> predicate) {
+        long start = metrics == null ? 0L : System.nanoTime();
+        FlightEvents.QueryEvent event = FlightEvents.beginQuery();
+
+        List<Person> matches = new ArrayList<>();
+        long[] scanned = new long[1];
+        scan((id, person) -> {
+            scanned[0]++;
+            if (predicate.test(person)) {
+                matches.add(new Person(person));
+            }
+        });
+        record(QUERY, start);
+
+        if (event != null) {
+            event.finish(label, scanned[0], matches.size());
+        }
+        return matches;
+    }
+
+    /* Captures the current state and writes it as a new snapshot on the executor.
+       Writers are only blocked while the overlay version and log sequence are read.
+       A snapshot to the file the store was opened from also rotates the change log; once it is written,
+       it replaces the base (see rebase) and the rotated log files it covers are deleted. Should an older
+       capture finish after a newer one, it is not written, so the snapshot file only moves forward.
+     */
+    CompletableFuture<Path> snapshot(Path file, Executor executor) {
+        boolean ownSnapshot = snapshotFile != null && snapshotFile.equals(file.toAbsolutePath().normalize());
+        Version captured;
+        long logSequence;
+        long capturedAt;
+        captureLock.writeLock().lock();
+        try {
+            captured = version.get();
+            capturedAt = System.currentTimeMillis();
+            if (changeLog == null) {
+                logSequence = 0;
+            } else {
+                logSequence = ownSnapshot ? changeLog.rotate() : changeLog.lastSequence();
+            }
+        } finally {
+            captureLock.writeLock().unlock();
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            PersonMap changes = captured.changes;
+            SortedMap<Long, Person> records = new TreeMap<>();
+            if (captured.base != null) {
+                captured.base.forEach((id, person) -> {
+                    if (!changes.containsKey(id)) {
+                        records.put(id, person);
+                    }
+                });
+            }
+            changes.forEach((id, person) -> {
+                if (person != TOMBSTONE) {
+                    records.put(id, person);
+                }
+            });
+
+            try {
+                if (!ownSnapshot) {
+                    PersonSnapshot.write(file, logSequence, capturedAt, records);
+                    return file;
+                }
+                synchronized (snapshotSequence) {
+                    if (logSequence < snapshotSequence[0]) {
+                        return file;
+                    }
+                    PersonSnapshot.write(file, logSequence, capturedAt, records);
+                    snapshotSequence[0] = logSequence;
+                    rebase(PersonSnapshot.open(file), changes);
+                    changeLog.awaitRotation(logSequence);
+                    PersonChangeLog.deleteRotated(changeLogFile, logSequence);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write snapshot " + file, e);
+            }
+            return file;
+        }, executor);
+    }
+
+    // Visits one consistent version of the store; people from the overlay are handed out frozen
+    void scan(BiConsumer<Long, Person> action) {
+        Version current = version.get();
+        PersonSnapshot base = current.base;
+        PersonMap changes = current.changes;
+        if (base != null) {
+            for (int i = 0; i < base.size(); i++) {
+                long id = base.idAt(i);
+                if (!changes.containsKey(id)) {
+                    action.accept(id, base.personAt(i));
+                }
+            }
+        }
+        changes.forEach((id, person) -> {
+            if (person != TOMBSTONE) {
+                action.accept(id, person);
+            }
+        });
+    }
+
+    private Person lookup(long id) {
+        Person stored = overlay.get(id);
+        if (stored == TOMBSTONE) {
+            return null;
+        }
+        if (stored != null) {
+            return stored;
+        }
+        // Read after overlay: an entry is only dropped from it once the base covers it
+        PersonSnapshot base = version.get().base;
+        return base == null ? null : base.get(id);
+    }
+
+    // The stored person an overlay value stands for, reading the snapshot when the overlay has none
+    private Person current(long id, Person previous) {
+        if (previous != null) {
+            return previous == TOMBSTONE ? null : previous;
+        }
+        PersonSnapshot base = version.get().base;
+        return base == null ? null : base.get(id);
+    }
+
+    // Called inside compute, so the filter changes in the same order as the entry
+    private void track(Person removed, Person added) {
+        PersonMembershipFilter filter = membership;
+        if (filter == null) {
+            return;
+        }
+        if (removed != null) {
+            filter.remove(removed);
+        }
+        if (added != null) {
+            filter.put(added);
+        }
+    }
+
+    private static boolean sameFields(Person a, Person b) {
+        return Objects.equals(a.getFirstName(), b.getFirstName())
+                && Objects.equals(a.getLastName(), b.getLastName())
+                && Objects.equals(a.getAge(), b.getAge());
+    }
+
+    private boolean exists(long id, Person previous) {
+        if (previous != null) {
+            return previous != TOMBSTONE;
+        }
+        PersonSnapshot base = version.get().base;
+        return base != null && base.contains(id);
+    }
+
+    // Replays one change log entry without logging it again
+    private void apply(PersonChangeLog.Entry entry) {
+        long id = entry.getId();
+        switch (entry.getOperation()) {
+            case ADD:
+                if (!exists(id, overlay.get(id))) {
+                    size.incrementAndGet();
+                }
+                overlay.put(id, publish(id, FrozenPerson.of(entry.getPerson())));
+                nextId.accumulateAndGet(id + 1, Math::max);
+                break;
+            case UPDATE:
+                overlay.put(id, publish(id, FrozenPerson.of(entry.getPerson())));
+                break;
+            case REMOVE:
+                if (exists(id, overlay.get(id))) {
+                    size.decrementAndGet();
+                }
+                overlay.put(id, publish(id, TOMBSTONE));
+                break;
+        }
+    }
+
+    /* Called inside compute or during replay, so each id's versions change in overlay order.
+       A failed compare-and-set only means another id or a rebase got in first; the retry rebuilds
+       the path to this id on top of theirs.
+     */
+    private Person publish(long id, Person stored) {
+        Version current;
+        do {
+            current = version.get();
+        } while (!version.compareAndSet(current, current.with(id, stored)));
+        return stored;
+    }
+
+    /* Makes a snapshot written from the given overlay version the new base and drops the entries it
+       covers, so the overlay and its versions only hold changes made since the newest snapshot.
+       An entry changed again in the meantime is not the same object any more and stays.
+     */
+    private void rebase(PersonSnapshot snapshot, PersonMap covered) {
+        Version current;
+        Version trimmed;
+        do {
+            current = version.get();
+            PersonMap.Builder changes = current.changes.toBuilder();
+            covered.forEach((id, person) -> {
+                if (changes.get(id) == person) {
+                    changes.remove(id);
+                }
+            });
+            trimmed = new Version(snapshot, changes.build());
+        } while (!version.compareAndSet(current, trimmed));
+
+        // After the new base is visible, so a lookup that misses the overlay finds the entry there
+        covered.forEach(overlay::remove);
+    }
+
+    // A base snapshot and the overlay changes on top of it, replaced as a pair
+    private static final class Version {
+
+        final PersonSnapshot base;
+        final PersonMap changes;
+
+        Version(PersonSnapshot base, PersonMap changes) {
+            this.base = base;
+            this.changes = changes;
+        }
+
+        Version with(long id, Person stored) {
+            return new Version(base, changes.with(id, stored));
+        }
+    }
+
+    private void mutate(Runnable mutation) {
+        captureLock.readLock().lock();
+        try {
+            mutation.run();
+        } finally {
+            captureLock.readLock().unlock();
+        }
+    }
+
+    // Only queues the entry, it is called inside compute and must not block; 0 when nothing is logged
+    private long log(PersonChangeLog.Operation operation, long id, Person person) {
+        return changeLog == null ? 0L : changeLog.enqueue(operation, id, person);
+    }
+
+    // Called after compute and the capture lock are released
+    private void awaitLogged(long sequence) {
+        if (sequence != 0L) {
+            changeLog.await(sequence);
+        }
+    }
+
+    private void record(int outcome, long start) {
+        if (metrics != null) {
+            metrics.record(outcome, start);
+        }
+    }
+}
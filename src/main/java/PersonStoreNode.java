@@ -0,0 +1,389 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/* Serves one PersonStore partition over PersonStoreProtocol.
+   A single selector thread accepts connections, collects request bytes until a whole message has
+   arrived and writes queued responses, so a slow client never blocks the others. Requests run
+   against the store on worker threads, one at a time per connection so responses keep their
+   order; a request waiting for the change log only holds up its own connection.
+   A worker queues at most about CHUNK_SIZE response bytes per connection and otherwise waits for
+   the selector thread to write them, so a client that reads a large answer slowly holds a worker,
+   not the whole answer in memory.
+   Listens on the loopback address only; port 0 picks a free port.
+ */
+final class PersonStoreNode implements Closeable {
+
+    // Payload bytes after which an AGE_BETWEEN answer is cut into another message
+    static final int CHUNK_SIZE = 1 << 20;
+
+    private final PersonStore store;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Thread thread;
+    private final ExecutorService workers;
+    // Connections with new responses, for the selector thread to switch to writing
+    private final Queue<SelectionKey> responded = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    private PersonStoreNode(PersonStore store, int port, int workerThreads) throws IOException {
+        this.store = store;
+        AtomicInteger threads = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerThreads, task -> {
+            Thread worker = new Thread(task, "person-store-worker-" + threads.incrementAndGet());
+            worker.setDaemon(true);
+            return worker;
+        });
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+
+        this.thread = new Thread(this::serve, "person-store-node-" + address().getPort());
+        thread.setDaemon(true);
+    }
+
+    static PersonStoreNode start(PersonStore store, int port) throws IOException {
+        return start(store, port, Math.max(4, Runtime.getRuntime().availableProcessors()));
+    }
+
+    static PersonStoreNode start(PersonStore store, int port, int workerThreads) throws IOException {
+        if (workerThreads < 1) {
+            throw new IllegalArgumentException("At least one worker is needed: " + workerThreads);
+        }
+        PersonStoreNode node = new PersonStoreNode(store, port, workerThreads);
+        node.thread.start();
+        return node;
+    }
+
+    InetSocketAddress address() {
+        try {
+            return (InetSocketAddress) server.getLocalAddress();
+        } catch (IOException e) {
+            throw new IllegalStateException("Node is closed", e);
+        }
+    }
+
+    PersonStore store() {
+        return store;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!selector.isOpen()) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdownNow();
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    private void serve() {
+        while (running) {
+            try {
+                selector.select();
+                for (SelectionKey key; (key = responded.poll()) != null; ) {
+                    if (key.isValid()) {
+                        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            if (key.isReadable()) {
+                                read(key);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                write(key);
+                            }
+                        }
+                    } catch (IOException e) {
+                        // The client went away or sent garbage, drop only that connection
+                        key.channel().close();
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                return;
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel != null) {
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, new Connection());
+        }
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+        if (channel.read(connection.in) < 0) {
+            channel.close();
+            return;
+        }
+
+        connection.in.flip();
+        while (connection.in.remaining() >= 4) {
+            int size = connection.in.getInt(connection.in.position());
+            if (size < 0 || size > PersonStoreProtocol.MAX_MESSAGE_SIZE) {
+                throw new IOException("Invalid message size " + size);
+            }
+            if (connection.in.remaining() < 4 + size) {
+                break;
+            }
+            connection.in.getInt();
+            // Copied, as the input buffer is compacted and reused before a worker gets to it
+            ByteBuffer request = ByteBuffer.allocate(size);
+            ByteBuffer body = connection.in.slice();
+            body.limit(size);
+            request.put(body).flip();
+            connection.in.position(connection.in.position() + size);
+            submit(key, connection, request);
+        }
+        connection.in.compact();
+
+        // A message larger than the buffer needs a larger one
+        if (connection.in.position() >= 4 && connection.in.capacity() < 4 + connection.in.getInt(0)) {
+            ByteBuffer larger = ByteBuffer.allocate(4 + connection.in.getInt(0));
+            connection.in.flip();
+            larger.put(connection.in);
+            connection.in = larger;
+        }
+    }
+
+    // Queues the request and starts a worker on the connection unless one is already running
+    private void submit(SelectionKey key, Connection connection, ByteBuffer request) {
+        synchronized (connection) {
+            connection.requests.add(request);
+            if (connection.busy) {
+                return;
+            }
+            connection.busy = true;
+        }
+        workers.execute(() -> process(key, connection));
+    }
+
+    private void process(SelectionKey key, Connection connection) {
+        while (true) {
+            ByteBuffer request;
+            synchronized (connection) {
+                request = connection.requests.poll();
+                if (request == null) {
+                    connection.busy = false;
+                    return;
+                }
+            }
+            handle(request, response -> {
+                ByteBuffer framed = PersonStoreProtocol.frame(checkSize(response));
+                connection.awaitRoom(key);
+                connection.queue(framed);
+                responded.add(key);
+                selector.wakeup();
+            });
+        }
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+        while (!connection.out.isEmpty()) {
+            ByteBuffer next = connection.out.peek();
+            connection.written(channel.write(next));
+            if (next.hasRemaining()) {
+                return;
+            }
+            connection.out.poll();
+        }
+        key.interestOps(SelectionKey.OP_READ);
+    }
+
+    /* Runs one request against the store on a worker and passes every response message on.
+       Bad requests get an error response, not a dropped connection; an error also ends an
+       AGE_BETWEEN answer that already sent some chunks, so the client stays in step.
+     */
+    private void handle(ByteBuffer request, Consumer<ByteBuffer> respond) {
+        try {
+            byte operation = request.get();
+            switch (operation) {
+                case PersonStoreProtocol.PUT: {
+                    long id = request.getLong();
+                    boolean added = store.put(id, PersonCodec.decode(request));
+                    respond.accept(done(ok(1).put((byte) (added ? 1 : 0))));
+                    break;
+                }
+                case PersonStoreProtocol.GET_ALL: {
+                    int count = request.getInt();
+                    List<byte[]> people = new ArrayList<>(count);
+                    long size = 0;
+                    for (int i = 0; i < count; i++) {
+                        Person person = store.get(request.getLong());
+                        byte[] encoded = person == null ? null : PersonCodec.encode(person);
+                        people.add(encoded);
+                        size += 1 + (encoded == null ? 0 : encoded.length);
+                    }
+                    if (size >= PersonStoreProtocol.MAX_MESSAGE_SIZE) {
+                        respond.accept(PersonStoreProtocol.error("Too many people for one response, ask for fewer ids"));
+                        break;
+                    }
+                    ByteBuffer response = ok((int) size);
+                    for (byte[] encoded : people) {
+                        response.put((byte) (encoded == null ? 0 : 1));
+                        if (encoded != null) {
+                            response.put(encoded);
+                        }
+                    }
+                    respond.accept(done(response));
+                    break;
+                }
+                case PersonStoreProtocol.REMOVE:
+                    respond.accept(done(ok(1).put((byte) (store.remove(request.getLong()) ? 1 : 0))));
+                    break;
+                case PersonStoreProtocol.AGE_BETWEEN:
+                    ageBetween(request.getInt(), request.getInt(), respond);
+                    break;
+                case PersonStoreProtocol.SIZE:
+                    respond.accept(done(ok(4).putInt(store.size())));
+                    break;
+                default:
+                    respond.accept(PersonStoreProtocol.error("Unknown operation " + operation));
+            }
+        } catch (Disconnected e) {
+            // Nobody is left to answer
+        } catch (BufferUnderflowException e) {
+            respond.accept(PersonStoreProtocol.error("Truncated request"));
+        } catch (RuntimeException e) {
+            respond.accept(PersonStoreProtocol.error(e.toString()));
+        }
+    }
+
+    // Streams the matches in chunks of about CHUNK_SIZE bytes, all but the last marked with more
+    private void ageBetween(int min, int max, Consumer<ByteBuffer> respond) {
+        List<Long> ids = new ArrayList<>();
+        List<byte[]> people = new ArrayList<>();
+        int[] size = {0};
+        store.scan((id, person) -> {
+            Integer age = person.getAge();
+            if (age != null && age >= min && age <= max) {
+                byte[] encoded = PersonCodec.encode(person);
+                ids.add(id);
+                people.add(encoded);
+                size[0] += 8 + encoded.length;
+                if (size[0] >= CHUNK_SIZE) {
+                    respond.accept(chunk(ids, people, size[0], true));
+                    ids.clear();
+                    people.clear();
+                    size[0] = 0;
+                }
+            }
+        });
+        respond.accept(chunk(ids, people, size[0], false));
+    }
+
+    private static ByteBuffer chunk(List<Long> ids, List<byte[]> people, int size, boolean more) {
+        ByteBuffer response = ok(1 + 4 + size).put((byte) (more ? 1 : 0)).putInt(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            response.putLong(ids.get(i)).put(people.get(i));
+        }
+        return done(response);
+    }
+
+    // A response the client would refuse must not be sent, it would lose its place in the stream
+    private static ByteBuffer checkSize(ByteBuffer response) {
+        if (response.remaining() > PersonStoreProtocol.MAX_MESSAGE_SIZE) {
+            return PersonStoreProtocol.error("Response of " + response.remaining() + " bytes is too large");
+        }
+        return response;
+    }
+
+    // A response buffer with the OK status written, for the payload to follow
+    private static ByteBuffer ok(int payloadSize) {
+        return ByteBuffer.allocate(1 + payloadSize).put(PersonStoreProtocol.OK);
+    }
+
+    private static ByteBuffer done(ByteBuffer response) {
+        response.flip();
+        return response;
+    }
+
+    // Ends a request whose connection was closed, or whose node is closing, while it waited to respond
+    private static final class Disconnected extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        Disconnected() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final class Connection {
+
+        // Only used by the selector thread
+        private ByteBuffer in = ByteBuffer.allocate(4096);
+        // Filled by workers, drained by the selector thread
+        private final Queue<ByteBuffer> out = new ConcurrentLinkedQueue<>();
+        // Guarded by the connection
+        private final ArrayDeque<ByteBuffer> requests = new ArrayDeque<>();
+        private boolean busy;
+        // Bytes in out that are not written yet; guarded by the connection
+        private long queued;
+
+        // Called by the worker before it queues a response; the selector thread wakes it as it writes
+        synchronized void awaitRoom(SelectionKey key) {
+            while (queued >= CHUNK_SIZE) {
+                if (!key.isValid()) {
+                    throw new Disconnected();
+                }
+                try {
+                    // Timed, as a closed connection does not notify
+                    wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new Disconnected();
+                }
+            }
+        }
+
+        synchronized void queue(ByteBuffer framed) {
+            queued += framed.remaining();
+            out.add(framed);
+        }
+
+        synchronized void written(int bytes) {
+            queued -= bytes;
+            if (queued < CHUNK_SIZE) {
+                notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/* Wire format between PartitionedPersonStore and PersonStoreNode. Every message is an int length
+   followed by that many bytes. A request starts with an operation byte, a response with a status
+   byte; people are written with PersonCodec.
+
+     PUT          id, person            -> added (byte)
+     GET_ALL      count, count x id     -> count x (present byte [, person])
+     REMOVE       id                    -> removed (byte)
+     AGE_BETWEEN  min, max              -> more (byte), count, count x (id, person)
+     SIZE                               -> size (int)
+
+   AGE_BETWEEN is answered in as many messages as it takes; every one but the last has more set.
+   An error response ends any answer. A message the client cannot read whole leaves it at an
+   unknown place in the stream, so the client then drops the connection.
+   A connection carries one request at a time; clients that want more in flight open more connections.
+ */
+final class PersonStoreProtocol {
+
+    static final byte PUT = 1;
+    static final byte GET_ALL = 2;
+    static final byte REMOVE = 3;
+    static final byte AGE_BETWEEN = 4;
+    static final byte SIZE = 5;
+
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+
+    static final int MAX_MESSAGE_SIZE = 64 << 20;
+
+    // An error response from the node; the connection is still in step after it
+    static final class NodeException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        NodeException(String message) {
+            super(message);
+        }
+    }
+
+    private PersonStoreProtocol() {
+    }
+
+    // Wraps a message body in its length prefix
+    static ByteBuffer frame(ByteBuffer body) {
+        ByteBuffer framed = ByteBuffer.allocate(4 + body.remaining());
+        framed.putInt(body.remaining()).put(body);
+        framed.flip();
+        return framed;
+    }
+
+    static void write(SocketChannel channel, ByteBuffer body) throws IOException {
+        ByteBuffer framed = frame(body);
+        while (framed.hasRemaining()) {
+            channel.write(framed);
+        }
+    }
+
+    // Blocking read of one whole message body
+    static ByteBuffer read(SocketChannel channel) throws IOException {
+        ByteBuffer length = readFully(channel, ByteBuffer.allocate(4));
+        int size = length.getInt();
+        if (size < 0 || size > MAX_MESSAGE_SIZE) {
+            throw new IOException("Invalid message size " + size);
+        }
+        return readFully(channel, ByteBuffer.allocate(size));
+    }
+
+    static ByteBuffer error(String message) {
+        byte[] text = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(1 + 4 + text.length);
+        body.put(ERROR).putInt(text.length).put(text);
+        body.flip();
+        return body;
+    }
+
+    // Reads the status byte and turns an error response into an IOException
+    static ByteBuffer checkStatus(ByteBuffer response) throws IOException {
+        if (response.get() == ERROR) {
+            byte[] text = new byte[response.getInt()];
+            response.get(text);
+            throw new NodeException("Node failed: " + new String(text, StandardCharsets.UTF_8));
+        }
+        return response;
+    }
+
+    private static ByteBuffer readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Connection closed by the node");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
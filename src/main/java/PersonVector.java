@@ -0,0 +1,353 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/* Immutable list of people where every change returns a new version that shares all untouched
+   parts with the old one. Elements live in a 32-way tree with the last (up to) 32 elements in a
+   separate tail, so get(), with() and plus() touch O(log32 n) nodes and most appends only copy
+   the tail. Any version can be read from any thread without locks.
+   People are frozen on the way in (see FrozenPerson), so reads hand out the stored objects.
+ */
+final class PersonVector implements Iterable<Person> {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final Node EMPTY_NODE = new Node(null, new Object[WIDTH]);
+
+    static final PersonVector EMPTY = new PersonVector(0, BITS, EMPTY_NODE, new Object[0]);
+
+    private final int count;
+    private final int shift;
+    private final Node root;
+    private final Object[] tail;
+
+    private PersonVector(int count, int shift, Node root, Object[] tail) {
+        this.count = count;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    static PersonVector of(Iterable<Person> people) {
+        Builder builder = EMPTY.toBuilder();
+        for (Person person : people) {
+            builder.add(person);
+        }
+        return builder.build();
+    }
+
+    int size() {
+        return count;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    Person get(int index) {
+        checkIndex(index, count);
+        return (Person) leafFor(index, count, shift, root, tail)[index & MASK];
+    }
+
+    // A new version with the person at index replaced, or appended when index == size()
+    PersonVector with(int index, Person person) {
+        person = FrozenPerson.of(person);
+        if (index == count) {
+            return plus(person);
+        }
+        checkIndex(index, count);
+        if (index >= tailOffset(count)) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = person;
+            return new PersonVector(count, shift, root, newTail);
+        }
+        return new PersonVector(count, shift, assoc(null, shift, root, index, person), tail);
+    }
+
+    PersonVector plus(Person person) {
+        person = FrozenPerson.of(person);
+        if (count - tailOffset(count) < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = person;
+            return new PersonVector(count + 1, shift, root, newTail);
+        }
+
+        Node tailNode = new Node(null, tail);
+        int newShift = shift;
+        Node newRoot;
+        if ((count >>> BITS) > (1 << shift)) {
+            newRoot = new Node(null, new Object[WIDTH]);
+            newRoot.array[0] = root;
+            newRoot.array[1] = newPath(null, shift, tailNode);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(null, count, shift, root, tailNode);
+        }
+        return new PersonVector(count + 1, newShift, newRoot, new Object[]{person});
+    }
+
+    // A new version without the last person
+    PersonVector withoutLast() {
+        if (count == 0) {
+            throw new IllegalStateException("The vector is empty");
+        }
+        if (count == 1) {
+            return EMPTY;
+        }
+        if (count - tailOffset(count) > 1) {
+            return new PersonVector(count - 1, shift, root, Arrays.copyOf(tail, tail.length - 1));
+        }
+
+        Object[] newTail = leafFor(count - 2, count, shift, root, tail);
+        Node newRoot = popTail(null, count, shift, root);
+        int newShift = shift;
+        if (newRoot == null) {
+            newRoot = EMPTY_NODE;
+        }
+        if (shift > BITS && newRoot.array[1] == null) {
+            newRoot = (Node) newRoot.array[0];
+            newShift -= BITS;
+        }
+        return new PersonVector(count - 1, newShift, newRoot, newTail);
+    }
+
+    // Read-only List view of this version, without copying
+    List<Person> asList() {
+        return new AbstractList<Person>() {
+            @Override
+            public Person get(int index) {
+                return PersonVector.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    @Override
+    public void forEach(Consumer<? super Person> action) {
+        for (int base = 0; base < count; base += WIDTH) {
+            Object[] leaf = leafFor(base, count, shift, root, tail);
+            int end = Math.min(WIDTH, count - base);
+            for (int i = 0; i < end; i++) {
+                action.accept((Person) leaf[i]);
+            }
+        }
+    }
+
+    @Override
+    public Iterator<Person> iterator() {
+        return new Iterator<Person>() {
+            private int index;
+            private Object[] leaf;
+
+            @Override
+            public boolean hasNext() {
+                return index < count;
+            }
+
+            @Override
+            public Person next() {
+                if (index >= count) {
+                    throw new NoSuchElementException();
+                }
+                if ((index & MASK) == 0) {
+                    leaf = leafFor(index, count, shift, root, tail);
+                }
+                return (Person) leaf[index++ & MASK];
+            }
+        };
+    }
+
+    // Starts a builder from this version; this version stays unchanged
+    Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    private static void checkIndex(int index, int count) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index " + index + " outside 0.." + (count - 1));
+        }
+    }
+
+    private static int tailOffset(int count) {
+        return count < WIDTH ? 0 : ((count - 1) >>> BITS) << BITS;
+    }
+
+    private static Object[] leafFor(int index, int count, int shift, Node root, Object[] tail) {
+        if (index >= tailOffset(count)) {
+            return tail;
+        }
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Node) node.array[(index >>> level) & MASK];
+        }
+        return node.array;
+    }
+
+    /* The tree operations below copy every node on the path, except nodes the given builder
+       created itself, which it may change in place. A null edit means a persistent change.
+     */
+    private static Node editable(Object edit, Node node) {
+        return edit != null && node.edit == edit ? node : new Node(edit, node.array.clone());
+    }
+
+    private static Node assoc(Object edit, int level, Node node, int index, Person person) {
+        Node result = editable(edit, node);
+        if (level == 0) {
+            result.array[index & MASK] = person;
+        } else {
+            int child = (index >>> level) & MASK;
+            result.array[child] = assoc(edit, level - BITS, (Node) node.array[child], index, person);
+        }
+        return result;
+    }
+
+    private static Node newPath(Object edit, int level, Node node) {
+        if (level == 0) {
+            return node;
+        }
+        Node path = new Node(edit, new Object[WIDTH]);
+        path.array[0] = newPath(edit, level - BITS, node);
+        return path;
+    }
+
+    // count is the size before the full tail is pushed into the tree
+    private static Node pushTail(Object edit, int count, int level, Node parent, Node tailNode) {
+        Node result = editable(edit, parent);
+        int child = ((count - 1) >>> level) & MASK;
+        Node inserted;
+        if (level == BITS) {
+            inserted = tailNode;
+        } else {
+            Node existing = (Node) parent.array[child];
+            inserted = existing != null
+                    ? pushTail(edit, count, level - BITS, existing, tailNode)
+                    : newPath(edit, level - BITS, tailNode);
+        }
+        result.array[child] = inserted;
+        return result;
+    }
+
+    // Removes the rightmost leaf, returning null when the node becomes empty
+    private static Node popTail(Object edit, int count, int level, Node node) {
+        int child = ((count - 2) >>> level) & MASK;
+        if (level > BITS) {
+            Node newChild = popTail(edit, count, level - BITS, (Node) node.array[child]);
+            if (newChild == null && child == 0) {
+                return null;
+            }
+            Node result = editable(edit, node);
+            result.array[child] = newChild;
+            return result;
+        }
+        if (child == 0) {
+            return null;
+        }
+        Node result = editable(edit, node);
+        result.array[child] = null;
+        return result;
+    }
+
+    private static final class Node {
+
+        // The builder allowed to change this node in place, null for shared nodes
+        private final Object edit;
+        private final Object[] array;
+
+        Node(Object edit, Object[] array) {
+            this.edit = edit;
+            this.array = array;
+        }
+    }
+
+    /* Transient version for bulk loading: changes are made in place on nodes the builder created,
+       so adding n people copies nothing after the first touch of a path. build() hands out an
+       immutable vector and ends the builder; a builder must only be used by one thread.
+     */
+    static final class Builder {
+
+        private Object edit = new Object();
+        private int count;
+        private int shift;
+        private Node root;
+        private Object[] tail;
+
+        private Builder(PersonVector vector) {
+            this.count = vector.count;
+            this.shift = vector.shift;
+            this.root = editable(edit, vector.root);
+            this.tail = Arrays.copyOf(vector.tail, WIDTH);
+        }
+
+        int size() {
+            return count;
+        }
+
+        Person get(int index) {
+            checkBuilding();
+            checkIndex(index, count);
+            return (Person) leafFor(index, count, shift, root, tail)[index & MASK];
+        }
+
+        Builder add(Person person) {
+            checkBuilding();
+            person = FrozenPerson.of(person);
+            if (count - tailOffset(count) < WIDTH) {
+                tail[count & MASK] = person;
+                count++;
+                return this;
+            }
+
+            Node tailNode = new Node(edit, tail);
+            tail = new Object[WIDTH];
+            tail[0] = person;
+            if ((count >>> BITS) > (1 << shift)) {
+                Node newRoot = new Node(edit, new Object[WIDTH]);
+                newRoot.array[0] = root;
+                newRoot.array[1] = newPath(edit, shift, tailNode);
+                root = newRoot;
+                shift += BITS;
+            } else {
+                root = pushTail(edit, count, shift, root, tailNode);
+            }
+            count++;
+            return this;
+        }
+
+        Builder set(int index, Person person) {
+            checkBuilding();
+            if (index == count) {
+                return add(person);
+            }
+            person = FrozenPerson.of(person);
+            checkIndex(index, count);
+            if (index >= tailOffset(count)) {
+                tail[index & MASK] = person;
+            } else {
+                root = assoc(edit, shift, root, index, person);
+            }
+            return this;
+        }
+
+        PersonVector build() {
+            checkBuilding();
+            edit = null;
+            return count == 0 ? EMPTY
+                    : new PersonVector(count, shift, root, Arrays.copyOf(tail, count - tailOffset(count)));
+        }
+
+        private void checkBuilding() {
+            if (edit == null) {
+                throw new IllegalStateException("The builder was already built");
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Per-pet event counter indexed by Pet.ordinal().
+   Each pet has its own LongAdder, so concurrent increments spread over per-thread cells
+   instead of contending on one map entry, and nothing is boxed on the hot path.
+ */
+final class PetCounter {
+
+    private static final Pet[] PETS = Pet.values();
+
+    private final LongAdder[] counts = new LongAdder[PETS.length];
+
+    PetCounter() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    void increment(Pet pet) {
+        counts[pet.ordinal()].increment();
+    }
+
+    void add(Pet pet, long amount) {
+        counts[pet.ordinal()].add(amount);
+    }
+
+    long count(Pet pet) {
+        return counts[pet.ordinal()].sum();
+    }
+
+    long total() {
+        long total = 0;
+        for (LongAdder count : counts) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    // Adds the other counter's current counts to this one
+    void merge(PetCounter other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i].add(other.counts[i].sum());
+        }
+    }
+
+    // Counts indexed by ordinal. Not atomic across pets while increments are still running
+    long[] snapshot() {
+        long[] snapshot = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            snapshot[i] = counts[i].sum();
+        }
+        return snapshot;
+    }
+
+    Map<Pet, Long> toMap() {
+        long[] snapshot = snapshot();
+        Map<Pet, Long> map = new EnumMap<>(Pet.class);
+        for (Pet pet : PETS) {
+            map.put(pet, snapshot[pet.ordinal()]);
+        }
+        return map;
+    }
+
+    // The k most counted pets, highest first. Ties keep declaration order
+    List<Pet> topK(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+
+        long[] snapshot = snapshot();
+        List<Pet> pets = new ArrayList<>(PETS.length);
+        Collections.addAll(pets, PETS);
+        pets.sort((a, b) -> Long.compare(snapshot[b.ordinal()], snapshot[a.ordinal()]));
+        return pets.subList(0, Math.min(k, pets.size()));
+    }
+
+    void reset() {
+        for (LongAdder count : counts) {
+            count.reset();
+        }
+    }
+}
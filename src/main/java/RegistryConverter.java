@@ -0,0 +1,16 @@
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.params.converter.ArgumentConversionException;
+import org.junit.jupiter.params.converter.ArgumentConverter;
+
+/* ArgumentConverter backed by the shared default ConverterRegistry.
+   JUnit still creates one per parameter, but it has no state, so the cost is an empty constructor;
+   the converters themselves are created once and picked by parameter type and source class.
+ */
+final class RegistryConverter implements ArgumentConverter {
+
+    static final ConverterRegistry REGISTRY = ConverterRegistry.defaults();
+
+    public Object convert(Object source, ParameterContext parameterContext) throws ArgumentConversionException {
+        return REGISTRY.convert(source, parameterContext.getParameter().getType());
+    }
+}
@@ -0,0 +1,23 @@
+// Loaded by name from FlightEvents, only when jdk.jfr is there
+final class FlightEventFactory implements FlightEvents.Factory {
+
+    @Override
+    public FlightEvents.QueryEvent beginQuery() {
+        PersonQueryEvent event = new PersonQueryEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public FlightEvents.ConversionEvent beginConversion() {
+        MessageConversionEvent event = new MessageConversionEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+}
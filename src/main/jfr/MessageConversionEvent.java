@@ -0,0 +1,33 @@
+import jdk.jfr.*;
+
+/* One MessageConverter conversion. Disabled by default because there can be millions of them;
+   enable it in the recording settings, with a threshold to keep only the slow ones.
+ */
+@Name("JUnitTesting.MessageConversion")
+@Label("Message Conversion")
+@Category({"JUnitTesting", "Messages"})
+@Enabled(false)
+@Threshold("0 ms")
+@StackTrace(false)
+final class MessageConversionEvent extends Event implements FlightEvents.ConversionEvent {
+
+    @Label("Source Type")
+    String sourceType;
+
+    @Label("Length")
+    @Description("Length of the source string, -1 when the source is not a string")
+    int length;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Override
+    public void finish(Object source, String outcome) {
+        if (shouldCommit()) {
+            this.sourceType = source == null ? "null" : source.getClass().getName();
+            this.length = source instanceof String ? ((String) source).length() : -1;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
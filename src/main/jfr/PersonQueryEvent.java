@@ -0,0 +1,29 @@
+import jdk.jfr.*;
+
+// A PersonStore query that took at least the threshold, 10 ms unless the recording says otherwise
+@Name("JUnitTesting.PersonQuery")
+@Label("Person Query")
+@Category({"JUnitTesting", "Person Store"})
+@Threshold("10 ms")
+final class PersonQueryEvent extends Event implements FlightEvents.QueryEvent {
+
+    @Label("Query")
+    @Description("Label the caller gave the query")
+    String label;
+
+    @Label("Rows Scanned")
+    long rowsScanned;
+
+    @Label("Matches")
+    int matches;
+
+    @Override
+    public void finish(String label, long rowsScanned, int matches) {
+        if (shouldCommit()) {
+            this.label = label;
+            this.rowsScanned = rowsScanned;
+            this.matches = matches;
+            commit();
+        }
+    }
+}
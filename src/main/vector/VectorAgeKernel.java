@@ -0,0 +1,90 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Loaded by name from AgeColumn, only when jdk.incubator.vector is there
+final class VectorAgeKernel implements AgeColumn.Kernel {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public int countGreaterThan(int[] ages, int threshold) {
+        int count = 0;
+        int i = 0;
+        for (int bound = SPECIES.loopBound(ages.length); i < bound; i += SPECIES.length()) {
+            count += IntVector.fromArray(SPECIES, ages, i).compare(VectorOperators.GT, threshold).trueCount();
+        }
+        for (; i < ages.length; i++) {
+            count += ages[i] > threshold ? 1 : 0;
+        }
+        return count;
+    }
+
+    @Override
+    public int countLessThan(int[] ages, int threshold) {
+        int count = 0;
+        int i = 0;
+        for (int bound = SPECIES.loopBound(ages.length); i < bound; i += SPECIES.length()) {
+            count += IntVector.fromArray(SPECIES, ages, i).compare(VectorOperators.LT, threshold).trueCount();
+        }
+        for (; i < ages.length; i++) {
+            count += ages[i] < threshold ? 1 : 0;
+        }
+        return count;
+    }
+
+    @Override
+    public int countBetween(int[] ages, int min, int max) {
+        int count = 0;
+        int i = 0;
+        for (int bound = SPECIES.loopBound(ages.length); i < bound; i += SPECIES.length()) {
+            IntVector vector = IntVector.fromArray(SPECIES, ages, i);
+            count += vector.compare(VectorOperators.GE, min).and(vector.compare(VectorOperators.LE, max)).trueCount();
+        }
+        for (; i < ages.length; i++) {
+            count += ages[i] >= min && ages[i] <= max ? 1 : 0;
+        }
+        return count;
+    }
+
+    /* Without IntVector.compress, which JDK 17 does not have, turning each mask into indexes
+       measured slower than this loop, so only the counting pass before it is vectorised.
+     */
+    @Override
+    public void indexesGreaterThan(int[] ages, int threshold, int[] indexes) {
+        int found = 0;
+        for (int i = 0; found < indexes.length; i++) {
+            if (ages[i] > threshold) {
+                indexes[found++] = i;
+            }
+        }
+    }
+
+    @Override
+    public int min(int[] ages) {
+        IntVector min = IntVector.broadcast(SPECIES, Integer.MAX_VALUE);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(ages.length); i < bound; i += SPECIES.length()) {
+            min = min.min(IntVector.fromArray(SPECIES, ages, i));
+        }
+        int result = min.reduceLanes(VectorOperators.MIN);
+        for (; i < ages.length; i++) {
+            result = Math.min(result, ages[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public int max(int[] ages) {
+        IntVector max = IntVector.broadcast(SPECIES, Integer.MIN_VALUE);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(ages.length); i < bound; i += SPECIES.length()) {
+            max = max.max(IntVector.fromArray(SPECIES, ages, i));
+        }
+        int result = max.reduceLanes(VectorOperators.MAX);
+        for (; i < ages.length; i++) {
+            result = Math.max(result, ages[i]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,66 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Age column scans")
+public class AgeColumnTests {
+
+    private static final int OLD_ENOUGH = 20;
+
+    private int[] ages;
+    private AgeColumn column;
+
+    @BeforeEach
+    void createColumn() {
+        ages = new Random(42).ints(10_000, 0, 100).toArray();
+        ages[17] = Integer.MIN_VALUE;
+        ages[42] = Integer.MAX_VALUE;
+        column = new AgeColumn(ages);
+    }
+
+    @Test
+    @DisplayName("Counts should match a plain loop")
+    void countsShouldMatch() {
+        assertThat(column.countGreaterThan(OLD_ENOUGH)).isEqualTo(Arrays.stream(ages).filter(age -> age > OLD_ENOUGH).count());
+        assertThat(column.countLessThan(OLD_ENOUGH)).isEqualTo(Arrays.stream(ages).filter(age -> age < OLD_ENOUGH).count());
+        assertThat(column.countBetween(18, 65)).isEqualTo(Arrays.stream(ages).filter(age -> age >= 18 && age <= 65).count());
+    }
+
+    @Test
+    @DisplayName("Filter should return matching indexes in order")
+    void filterShouldMatch() {
+        int[] expected = IntStream.range(0, ages.length).filter(i -> ages[i] > OLD_ENOUGH).toArray();
+
+        assertThat(column.indexesGreaterThan(OLD_ENOUGH)).containsExactly(expected);
+    }
+
+    @Test
+    @DisplayName("Scalar fallback should match whichever kernel was picked")
+    void scalarKernelShouldMatch() {
+        AgeColumn.Kernel scalar = new AgeColumn.ScalarKernel();
+        int[] indexes = new int[scalar.countGreaterThan(ages, OLD_ENOUGH)];
+        scalar.indexesGreaterThan(ages, OLD_ENOUGH, indexes);
+
+        assertThat(scalar.countLessThan(ages, OLD_ENOUGH)).isEqualTo(column.countLessThan(OLD_ENOUGH));
+        assertThat(scalar.countBetween(ages, 18, 65)).isEqualTo(column.countBetween(18, 65));
+        assertThat(indexes).containsExactly(column.indexesGreaterThan(OLD_ENOUGH));
+        assertThat(scalar.min(ages)).isEqualTo(column.min());
+        assertThat(scalar.max(ages)).isEqualTo(column.max());
+    }
+
+    @Test
+    @DisplayName("Min and max should match")
+    void minAndMaxShouldMatch() {
+        assertThat(column.min()).isEqualTo(Integer.MIN_VALUE);
+        assertThat(column.max()).isEqualTo(Integer.MAX_VALUE);
+        assertThatThrownBy(() -> new AgeColumn(new int[0]).min()).isInstanceOf(NoSuchElementException.class);
+    }
+}
@@ -4,6 +4,8 @@ import org.junit.jupiter.params.converter.ConvertWith;
 import org.junit.jupiter.params.provider.CsvSource;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 /* This example demonstrates custom ArgumentConverter.
    ArgumentConverter's only responsibility is to convert one source to another source.
@@ -33,4 +35,38 @@ public class ArgumentConverterExample {
                             @ConvertWith(MessageConverter.class) Message expected) {
         assertEquals(expected.getMessage(), actual.getMessage());
     }
+
+    /* Expensive conversions can be deferred with LazyMessageConverter.
+       The parameter is a Lazy<Message> and MessageConverter runs only when get() is called,
+       so here the second column is never converted at all.
+     */
+    @DisplayName("Should convert lazily only the messages the test reads")
+    @ParameterizedTest(name = "{index} => actual={0}, unused={1}")
+    @CsvSource({
+            "Hello, Hello",
+            "Hi, Hi",
+    })
+    void shouldPassLazyMessage(@ConvertWith(LazyMessageConverter.class) Lazy<Message> actual,
+                               @ConvertWith(LazyMessageConverter.class) Lazy<Message> unused) {
+        assertNotNull(actual.get().getMessage());
+        assertFalse(unused.isResolved());
+    }
+
+    /* RegistryConverter picks a converter by parameter type from a shared registry,
+       so one converter class handles Message, Person and Pet parameters.
+       A Person is given as one quoted CSV row.
+     */
+    @DisplayName("Should convert parameters through the converter registry")
+    @ParameterizedTest(name = "{index} => message={0}, person={1}, pet={2}")
+    @CsvSource({
+            "Hello, 'Jane, Doe, 30', CAT",
+            "Hi, 'John, Doe, 25', dog",
+    })
+    void shouldPassRegistryConvertedParameters(@ConvertWith(RegistryConverter.class) Message message,
+                                               @ConvertWith(RegistryConverter.class) Person person,
+                                               @ConvertWith(RegistryConverter.class) Pet pet) {
+        assertNotNull(message.getMessage());
+        assertEquals("Doe", person.getLastName());
+        assertNotNull(pet);
+    }
 }
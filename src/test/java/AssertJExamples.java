@@ -128,6 +128,18 @@ public class AssertJExamples {
             void shouldNotContainSameItems() {
                 assertThat(ACTUAL).isNotEqualTo(NOTEXPECTED);
             }
+
+            /* When large arrays differ, isEqualTo() prints both of them in full.
+               LargeArrayAssert shows only a few elements around the first differences.
+             */
+            @Test
+            @DisplayName("Should contain same items in a large array")
+            void shouldContainSameItemsInLargeArray() {
+                int[] large = new int[1_000_000];
+                Arrays.fill(large, 7);
+
+                LargeArrayAssert.assertArrayEquals(large, large.clone());
+            }
         }
     }
 
@@ -185,6 +197,23 @@ public class AssertJExamples {
             // To check not equal use isNotEqualTo
             assertThat(list).isEqualTo(mutualList);
         }
+
+        /* containsExactlyInAnyOrder() looks up every expected element from the whole list,
+           so with a million elements it never finishes. LargeCollectionAssert does the same
+           check with one pass through a hash map and only prints a sample of the differences.
+         */
+        @Test
+        @DisplayName("Should contain same elements in a large list")
+        void shouldContainSameElementsInLargeList() {
+            List<Integer> large = new ArrayList<>();
+            for (int i = 0; i < 1_000_000; i++) {
+                large.add(i);
+            }
+            List<Integer> shuffled = new ArrayList<>(large);
+            Collections.shuffle(shuffled);
+
+            LargeCollectionAssert.assertThatLarge(large).containsExactlyInAnyOrder(shuffled);
+        }
     }
 
     @Nested
@@ -0,0 +1,91 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Bulk validation of people")
+public class BulkValidatorTests {
+
+    private BulkValidator validator;
+
+    @BeforeEach
+    void createValidator() {
+        validator = BulkValidator.builder()
+                .requireFirstName()
+                .requireLastName()
+                .ageBetween(0, 150)
+                .build();
+    }
+
+    @Test
+    @DisplayName("Should collect every violation of every record")
+    void shouldCollectEveryViolation() {
+        List<Person> people = Arrays.asList(
+                People.person("Jane", "Doe", 30),
+                People.person(" ", null, 30),
+                People.person("John", "Doe", 200)
+        );
+
+        BulkValidator.Violations violations = validator.validate(people);
+
+        assertThat(violations.count()).isEqualTo(3);
+        assertThat(violations.recordIndex(0)).isEqualTo(1);
+        assertThat(violations.ruleId(0)).isEqualTo(0);
+        assertThat(violations.ruleId(1)).isEqualTo(1);
+        assertThat(violations.message(2)).isEqualTo("Record 2: age must be between 0 and 150");
+    }
+
+    @Test
+    @DisplayName("Should pass valid records")
+    void shouldPassValidRecords() {
+        List<Person> people = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            people.add(People.person("Test", "Person", i % 100));
+        }
+
+        BulkValidator.Violations violations = validator.validate(people);
+
+        assertThat(violations.isEmpty()).isTrue();
+        violations.assertNone(10);
+    }
+
+    @Test
+    @DisplayName("Should limit failure messages")
+    void shouldLimitMessages() {
+        List<Person> people = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            people.add(People.person("Test", "Person", -1));
+        }
+
+        BulkValidator.Violations violations = validator.validate(people);
+
+        assertThat(violations.messages(2)).hasSize(2);
+        assertThatThrownBy(() -> violations.assertNone(2))
+                .isInstanceOf(AssertionError.class)
+                .hasMessageContaining("5 violation(s)")
+                .hasMessageContaining("... and 3 more");
+    }
+
+    @Test
+    @DisplayName("Should reject record indexes that do not fit beside the rule id")
+    void shouldRejectRecordIndexOutOfRange() {
+        BulkValidator.Violations violations = new BulkValidator.Violations(validator);
+        Person invalid = People.person(null, null, -1);
+
+        validator.validate(BulkValidator.MAX_RECORDS - 1, invalid, violations);
+
+        assertThat(violations.recordIndex(0)).isEqualTo(BulkValidator.MAX_RECORDS - 1);
+        assertThat(violations.ruleId(2)).isEqualTo(2);
+        assertThatThrownBy(() -> validator.validate(BulkValidator.MAX_RECORDS, invalid, violations))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> validator.validate(-1, invalid, violations))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(violations.count()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,304 @@
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.InvocationInterceptor;
+import org.junit.jupiter.api.extension.ReflectiveInvocationContext;
+import org.junit.jupiter.api.extension.TestWatcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/* Result cache for @CacheableTest invocations.
+   The key hashes the test method, the values of the invocation's arguments, the method's bytecode
+   and the checksums of the project classes the test class depends on, including those it loads by
+   name. A passing invocation leaves a small entry in .test-cache beside pom.xml (override with
+   -Dtest.cache.dir); while the key is unchanged the method body is not run again and the invocation
+   is reported as passed, with a "cached pass" report entry. Only passes are cached, and an
+   invocation with an argument whose value cannot be read (see describe) always runs.
+   Once the directory grows beyond -Dtest.cache.maxBytes (default 1 MiB) the least recently used
+   entries are deleted. Run with -Dtest.cache=off to ignore the cache.
+ */
+class CacheableTestExtension implements InvocationInterceptor, TestWatcher {
+
+    private static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+    private static final String REPORT_KEY = "test.cache";
+
+    private static final ExtensionContext.Namespace NAMESPACE =
+            ExtensionContext.Namespace.create(CacheableTestExtension.class);
+
+    private static final Map<Path, CacheIndex> INDEXES = new ConcurrentHashMap<>();
+
+    @Override
+    public void interceptTestMethod(Invocation<Void> invocation, ReflectiveInvocationContext<Method> invocationContext,
+                                    ExtensionContext extensionContext) throws Throwable {
+        intercept(invocation, invocationContext, extensionContext);
+    }
+
+    @Override
+    public void interceptTestTemplateMethod(Invocation<Void> invocation,
+                                            ReflectiveInvocationContext<Method> invocationContext,
+                                            ExtensionContext extensionContext) throws Throwable {
+        intercept(invocation, invocationContext, extensionContext);
+    }
+
+    private static void intercept(Invocation<Void> invocation, ReflectiveInvocationContext<Method> invocationContext,
+                                  ExtensionContext context) throws Throwable {
+        if ("off".equals(System.getProperty("test.cache"))) {
+            invocation.proceed();
+            return;
+        }
+
+        Path entry = computeEntry(context, invocationContext.getArguments());
+        if (entry != null && Files.isRegularFile(entry)) {
+            try {
+                String cached = new String(Files.readAllBytes(entry), StandardCharsets.UTF_8);
+                Files.setLastModifiedTime(entry, FileTime.from(Instant.now()));
+                index(entry.getParent()).touched(entry);
+                context.publishReportEntry(REPORT_KEY, "cached pass, " + cached + ", inputs unchanged");
+                invocation.skip();
+                return;
+            } catch (IOException e) {
+                // An unreadable entry is a miss
+            }
+        }
+        if (entry != null) {
+            // Written by testSuccessful, which also knows that the @AfterEach methods passed
+            context.getStore(NAMESPACE).put(context.getUniqueId(), entry);
+        }
+        invocation.proceed();
+    }
+
+    @Override
+    public void testSuccessful(ExtensionContext context) {
+        Path entry = context.getStore(NAMESPACE).remove(context.getUniqueId(), Path.class);
+        if (entry == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(entry.getParent());
+            byte[] result = ("passed at " + Instant.now()).getBytes(StandardCharsets.UTF_8);
+            Files.write(entry, result);
+            long maxBytes = Long.getLong("test.cache.maxBytes", DEFAULT_MAX_BYTES);
+            index(entry.getParent()).added(entry, result.length, maxBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write test result cache", e);
+        }
+    }
+
+    // Null when the inputs cannot be fingerprinted, in which case the invocation always runs
+    private static Path computeEntry(ExtensionContext context, List<Object> arguments) {
+        Method method = context.getRequiredTestMethod();
+        String methodChecksum = ClassDependencies.methodChecksum(method);
+        if (methodChecksum == null) {
+            return null;
+        }
+        String values = describeArguments(arguments);
+        if (values == null) {
+            return null;
+        }
+
+        String testClass = context.getRequiredTestClass().getName();
+        MessageDigest digest = sha256();
+        // The method rather than the invocation, so reordering a source keeps the entries of its arguments
+        update(digest, testClass + "#" + method.getName() + Arrays.toString(method.getParameterTypes()));
+        update(digest, values);
+        update(digest, methodChecksum);
+        Map<String, String> closure = ClassDependencies.closure(context.getRequiredTestClass());
+        for (Map.Entry<String, String> dependency : closure.entrySet()) {
+            // The method checksum covers this test's part of its class, so editing other tests keeps the entry
+            if (!dependency.getKey().equals(testClass)) {
+                update(digest, dependency.getKey() + "=" + dependency.getValue());
+            }
+        }
+
+        StringBuilder name = new StringBuilder();
+        for (byte b : digest.digest()) {
+            name.append(String.format("%02x", b));
+        }
+        return Paths.get(System.getProperty("test.cache.dir", ".test-cache")).resolve(name.toString());
+    }
+
+    // The arguments' values as text, or null when one of them has none that can be relied on
+    static String describeArguments(List<Object> arguments) {
+        StringBuilder text = new StringBuilder();
+        for (Object argument : arguments) {
+            if (!describe(argument, text)) {
+                return null;
+            }
+            text.append('\0');
+        }
+        return text.toString();
+    }
+
+    /* Appends the type and value of plain values, arrays, collections and people. Anything else has
+       to be Serializable and is described by its serialized form, since toString() need not show
+       every field; other objects, like a @TempDir or TestInfo, make the invocation uncacheable.
+     */
+    private static boolean describe(Object value, StringBuilder text) {
+        if (value == null) {
+            text.append("null");
+            return true;
+        }
+        Class<?> type = value.getClass();
+        text.append(type.getName()).append(':');
+        if (value instanceof String || value instanceof Number || value instanceof Boolean
+                || value instanceof Character || value instanceof Enum) {
+            String plain = value instanceof Enum ? ((Enum<?>) value).name() : value.toString();
+            text.append(plain.length()).append(':').append(plain);
+            return true;
+        }
+        if (value instanceof Person) {
+            Person person = (Person) value;
+            return describeAll(Arrays.asList(person.getFirstName(), person.getLastName(), person.getAge()), text);
+        }
+        if (type.isArray()) {
+            List<Object> elements = new ArrayList<>();
+            for (int i = 0; i < Array.getLength(value); i++) {
+                elements.add(Array.get(value, i));
+            }
+            return describeAll(elements, text);
+        }
+        if (value instanceof List || value instanceof SortedSet) {
+            return describeAll((Collection<?>) value, text);
+        }
+        if (value instanceof Map && value instanceof SortedMap) {
+            List<Object> entries = new ArrayList<>();
+            ((Map<?, ?>) value).forEach((key, entryValue) -> {
+                entries.add(key);
+                entries.add(entryValue);
+            });
+            return describeAll(entries, text);
+        }
+        if (value instanceof Serializable) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(value);
+            } catch (NotSerializableException e) {
+                return false;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            text.append(Base64.getEncoder().encodeToString(bytes.toByteArray()));
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean describeAll(Collection<?> values, StringBuilder text) {
+        text.append('[').append(values.size());
+        for (Object element : values) {
+            text.append(',');
+            if (!describe(element, text)) {
+                return false;
+            }
+        }
+        text.append(']');
+        return true;
+    }
+
+    // One full pass over the directory, for cleaning up outside a test run
+    static void evict(Path directory, long maxBytes) throws IOException {
+        CacheIndex.load(directory).evict(maxBytes);
+    }
+
+    private static CacheIndex index(Path directory) throws IOException {
+        try {
+            return INDEXES.computeIfAbsent(directory.toAbsolutePath(), key -> {
+                try {
+                    return CacheIndex.load(key);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static FileTime lastModified(Path entry) {
+        try {
+            return Files.getLastModifiedTime(entry);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /* Sizes of the entries in one cache directory in least recently used order, listed once per JVM
+       and then kept up to date, so a passing test costs one write instead of a directory scan.
+       Entries written by other forks in the meantime are only counted on the next run.
+     */
+    static final class CacheIndex {
+
+        private final Map<Path, Long> sizes = new LinkedHashMap<>(16, 0.75f, true);
+        private long total;
+
+        static CacheIndex load(Path directory) throws IOException {
+            List<Path> entries;
+            try (Stream<Path> files = Files.list(directory)) {
+                entries = files.filter(Files::isRegularFile).collect(Collectors.toCollection(ArrayList::new));
+            }
+            entries.sort(Comparator.comparing(CacheableTestExtension::lastModified));
+
+            CacheIndex index = new CacheIndex();
+            for (Path entry : entries) {
+                long size = Files.size(entry);
+                index.sizes.put(entry.toAbsolutePath(), size);
+                index.total += size;
+            }
+            return index;
+        }
+
+        synchronized void touched(Path entry) {
+            sizes.get(entry.toAbsolutePath());
+        }
+
+        synchronized void added(Path entry, long size, long maxBytes) throws IOException {
+            Long previous = sizes.put(entry.toAbsolutePath(), size);
+            total += size - (previous == null ? 0 : previous);
+            evict(maxBytes);
+        }
+
+        synchronized void evict(long maxBytes) throws IOException {
+            Iterator<Map.Entry<Path, Long>> oldest = sizes.entrySet().iterator();
+            while (total > maxBytes && oldest.hasNext()) {
+                Map.Entry<Path, Long> entry = oldest.next();
+                Files.deleteIfExists(entry.getKey());
+                total -= entry.getValue();
+                oldest.remove();
+            }
+        }
+
+        synchronized long totalBytes() {
+            return total;
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
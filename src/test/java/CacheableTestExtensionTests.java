@@ -0,0 +1,80 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Test result cache")
+public class CacheableTestExtensionTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should evict least recently used entries over the size limit")
+    void shouldEvictOldestEntries() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            Path entry = Files.write(directory.resolve("entry" + i), new byte[100]);
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(1_000L * i));
+        }
+
+        CacheableTestExtension.evict(directory, 250);
+
+        assertThat(directory.resolve("entry0")).doesNotExist();
+        assertThat(directory.resolve("entry2")).doesNotExist();
+        assertThat(directory.resolve("entry3")).exists();
+        assertThat(directory.resolve("entry4")).exists();
+    }
+
+    @Test
+    @DisplayName("Should evict from the index without listing the directory again")
+    void shouldEvictOnAdd() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            Path entry = Files.write(directory.resolve("entry" + i), new byte[100]);
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(1_000L * i));
+        }
+        CacheableTestExtension.CacheIndex index = CacheableTestExtension.CacheIndex.load(directory);
+        index.touched(directory.resolve("entry0"));
+
+        Path added = Files.write(directory.resolve("entry3"), new byte[100]);
+        index.added(added, 100, 250);
+
+        assertThat(directory.resolve("entry0")).exists();
+        assertThat(directory.resolve("entry1")).doesNotExist();
+        assertThat(directory.resolve("entry2")).doesNotExist();
+        assertThat(added).exists();
+        assertThat(index.totalBytes()).isEqualTo(200);
+    }
+
+    @Test
+    @DisplayName("Method checksum should differ between methods")
+    void shouldFingerprintMethods() throws Exception {
+        String sum = ClassDependencies.methodChecksum(
+                ParameterizedTestExamples.class.getDeclaredMethod("shouldCalculateCorrectSum", int.class, int.class, int.class));
+        String other = ClassDependencies.methodChecksum(
+                ParameterizedTestExamples.class.getDeclaredMethod("shouldPassNonNullMessage", String.class));
+
+        assertThat(sum).isNotNull().isNotEqualTo(other);
+    }
+
+    @Test
+    @DisplayName("Arguments should be described by their values")
+    void shouldDescribeArgumentValues() {
+        String described =
+                CacheableTestExtension.describeArguments(Arrays.asList(1, "a", People.person("Jane", "Doe", 30)));
+
+        assertThat(CacheableTestExtension.describeArguments(Arrays.asList(1, "a", People.person("Jane", "Doe", 30))))
+                .isEqualTo(described);
+        assertThat(CacheableTestExtension.describeArguments(Arrays.asList(1, "a", People.person("Jane", "Doe", 31))))
+                .isNotEqualTo(described);
+        assertThat(CacheableTestExtension.describeArguments(Arrays.asList("1", "a", People.person("Jane", "Doe", 30))))
+                .isNotEqualTo(described);
+        assertThat(CacheableTestExtension.describeArguments(Collections.singletonList(new Object()))).isNull();
+    }
+}
@@ -0,0 +1,616 @@
+import org.junit.platform.commons.annotation.Testable;
+import org.junit.platform.commons.support.AnnotationSupport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/* Finds the project classes a class depends on by reading class file constant pools.
+   Only classes loaded from directories count, so JUnit, Hamcrest, AssertJ and the JDK are ignored.
+   Type descriptors are scanned as well, which catches classes that only appear in signatures
+   and annotations, like @ConvertWith(MessageConverter.class). String constants that name a project
+   class count too, so classes loaded by name such as Class.forName("VectorAgeKernel") are followed;
+   a name put together at run time is not seen.
+   Resources such as the CSV files behind @CsvFileSource do not show up in constant pools. Instead
+   every output directory the closure loads from adds one entry with a checksum of all its non-class
+   files, so changing any resource affects every class there.
+ */
+final class ClassDependencies {
+
+    private static final Pattern DESCRIPTOR_TYPE = Pattern.compile("L([\\w/$]+)[;<]");
+    private static final Pattern BINARY_NAME = Pattern.compile("[A-Za-z_$][\\w$]*(\\.[A-Za-z_$][\\w$]*)*");
+
+    // Class files do not change while the JVM runs, so both are computed once per class or method
+    private static final Map<Class<?>, Map<String, String>> CLOSURES = new ConcurrentHashMap<>();
+    private static final Map<Method, String> METHOD_CHECKSUMS = new ConcurrentHashMap<>();
+
+    static final String RESOURCES_PREFIX = "resources@";
+
+    private ClassDependencies() {
+    }
+
+    // Class name -> checksum of its class file for the class itself and everything it reaches
+    static Map<String, String> closure(Class<?> root) {
+        return CLOSURES.computeIfAbsent(root, ClassDependencies::computeClosure);
+    }
+
+    private static Map<String, String> computeClosure(Class<?> root) {
+        ClassLoader loader = root.getClassLoader();
+        Map<String, String> checksums = new TreeMap<>();
+        Deque<String> pending = new ArrayDeque<>();
+        pending.add(root.getName().replace('.', '/'));
+
+        Set<Path> roots = new HashSet<>();
+
+        while (!pending.isEmpty()) {
+            String internalName = pending.poll();
+            String name = internalName.replace('/', '.');
+            if (checksums.containsKey(name)) {
+                continue;
+            }
+
+            byte[] bytes = readProjectClass(loader, internalName);
+            if (bytes == null) {
+                continue;
+            }
+            checksums.put(name, checksum(bytes));
+            pending.addAll(referencedClasses(bytes));
+
+            Path directory = outputDirectory(loader, internalName);
+            if (directory != null) {
+                roots.add(directory);
+            }
+        }
+        for (Path directory : roots) {
+            checksums.put(RESOURCES_PREFIX + directory.getFileName(), resourceChecksum(directory));
+        }
+        return Collections.unmodifiableMap(checksums);
+    }
+
+    static Set<String> referencedClasses(byte[] classFile) {
+        Set<String> names = new HashSet<>();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFile))) {
+            ConstantPool pool = ConstantPool.read(in);
+
+            for (int i = 0; i < pool.classCount; i++) {
+                String name = pool.utf8[pool.classIndexes[i]];
+                if (name != null && !name.startsWith("[")) {
+                    names.add(name);
+                }
+            }
+            // Possible class names for Class.forName; the closure drops those that are not project classes
+            for (int i = 1; i < pool.tags.length; i++) {
+                if (pool.tags[i] == 8 && BINARY_NAME.matcher(pool.utf8[pool.first[i]]).matches()) {
+                    names.add(pool.utf8[pool.first[i]].replace('.', '/'));
+                }
+            }
+            for (String value : pool.utf8) {
+                if (value != null && value.indexOf(';') > 0) {
+                    Matcher matcher = DESCRIPTOR_TYPE.matcher(value);
+                    while (matcher.find()) {
+                        names.add(matcher.group(1));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed class file", e);
+        }
+        return names;
+    }
+
+    /* Checksum of one test method's bytecode and annotations, with every constant pool reference
+       replaced by the constant it names, plus the same for the class's fields and every method that is
+       not a test itself: helpers, lifecycle methods, lambda bodies and constructors. Editing another
+       test therefore keeps the checksum, editing anything this test may run changes it.
+       Returns null when the class file cannot be read.
+     */
+    static String methodChecksum(Method method) {
+        return METHOD_CHECKSUMS.computeIfAbsent(method, ClassDependencies::computeMethodChecksum);
+    }
+
+    private static String computeMethodChecksum(Method method) {
+        Class<?> owner = method.getDeclaringClass();
+        byte[] bytes = readProjectClass(owner.getClassLoader(), owner.getName().replace('.', '/'));
+        if (bytes == null) {
+            return null;
+        }
+
+        Set<String> tests = new HashSet<>();
+        for (Method declared : owner.getDeclaredMethods()) {
+            if (!declared.equals(method) && AnnotationSupport.isAnnotated(declared, Testable.class)) {
+                tests.add(declared.getName() + descriptor(declared));
+            }
+        }
+
+        String target = method.getName() + descriptor(method);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            ConstantPool pool = ConstantPool.read(in);
+
+            in.skipBytes(6); // access flags, this and super class
+            in.skipBytes(2 * in.readUnsignedShort());
+            List<String> fields = new ArrayList<>();
+            int fieldCount = in.readUnsignedShort();
+            for (int i = 0; i < fieldCount; i++) {
+                in.skipBytes(2);
+                fields.add(pool.utf8[in.readUnsignedShort()] + ":" + pool.utf8[in.readUnsignedShort()]);
+                skipAttributes(in);
+            }
+
+            // Name and descriptor -> offset of the method's attributes, resolved once BootstrapMethods is known
+            Map<String, Integer> methods = new LinkedHashMap<>();
+            int methodCount = in.readUnsignedShort();
+            for (int i = 0; i < methodCount; i++) {
+                in.skipBytes(2);
+                String nameAndDescriptor = pool.utf8[in.readUnsignedShort()] + pool.utf8[in.readUnsignedShort()];
+                methods.put(nameAndDescriptor, bytes.length - in.available());
+                skipAttributes(in);
+            }
+            if (!methods.containsKey(target)) {
+                return null;
+            }
+            pool.readBootstrapMethods(in);
+
+            MethodHasher hasher = new MethodHasher(bytes, pool);
+            hasher.method(target, methods.get(target));
+            for (Map.Entry<String, Integer> other : methods.entrySet()) {
+                if (!other.getKey().equals(target) && !tests.contains(other.getKey())) {
+                    hasher.method(other.getKey(), other.getValue());
+                }
+            }
+            for (String field : fields) {
+                hasher.text(field);
+            }
+            return hasher.checksum();
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Malformed class file for " + owner.getName(), e);
+        }
+    }
+
+    private static void skipAttributes(DataInputStream in) throws IOException {
+        int attributes = in.readUnsignedShort();
+        for (int i = 0; i < attributes; i++) {
+            in.skipBytes(2);
+            in.skipBytes(in.readInt());
+        }
+    }
+
+    private static String descriptor(Method method) {
+        StringBuilder descriptor = new StringBuilder("(");
+        for (Class<?> parameter : method.getParameterTypes()) {
+            descriptor.append(descriptor(parameter));
+        }
+        return descriptor.append(')').append(descriptor(method.getReturnType())).toString();
+    }
+
+    private static String descriptor(Class<?> type) {
+        if (type.isArray()) {
+            return type.getName().replace('.', '/');
+        }
+        if (!type.isPrimitive()) {
+            return "L" + type.getName().replace('.', '/') + ";";
+        }
+        if (type == void.class) {
+            return "V";
+        }
+        if (type == boolean.class) {
+            return "Z";
+        }
+        if (type == long.class) {
+            return "J";
+        }
+        return String.valueOf(Character.toUpperCase(type.getName().charAt(0)));
+    }
+
+    private static byte[] readProjectClass(ClassLoader loader, String internalName) {
+        URL resource = loader.getResource(internalName + ".class");
+        if (resource == null || !"file".equals(resource.getProtocol())) {
+            return null;
+        }
+
+        try (InputStream in = resource.openStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // The directory the class file was loaded from, with the package path taken off
+    private static Path outputDirectory(ClassLoader loader, String internalName) {
+        URL resource = loader.getResource(internalName + ".class");
+        try {
+            Path classFile = Paths.get(resource.toURI());
+            Path root = classFile;
+            for (int depth = internalName.split("/").length; depth > 0 && root != null; depth--) {
+                root = root.getParent();
+            }
+            return root;
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // One checksum over the paths and contents of every non-class file below the directory
+    private static String resourceChecksum(Path root) {
+        CRC32 crc = new CRC32();
+        long[] bytes = {0};
+        try (Stream<Path> files = Files.walk(root)) {
+            files.filter(Files::isRegularFile)
+                    .filter(file -> !file.toString().endsWith(".class"))
+                    .map(file -> root.relativize(file).toString().replace('\\', '/'))
+                    .sorted()
+                    .forEach(name -> {
+                        try {
+                            byte[] content = Files.readAllBytes(root.resolve(name));
+                            byte[] path = name.getBytes(StandardCharsets.UTF_8);
+                            crc.update(path, 0, path.length);
+                            crc.update(content, 0, content.length);
+                            bytes[0] += content.length;
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        } catch (IOException | UncheckedIOException e) {
+            // Unreadable resources always count as changed
+            return "unreadable:" + System.nanoTime();
+        }
+        return Long.toHexString(crc.getValue()) + ":" + Long.toHexString(bytes[0]);
+    }
+
+    private static String checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return Long.toHexString(crc.getValue()) + ":" + Integer.toHexString(bytes.length);
+    }
+
+    // Feeds resolved method bodies into one CRC, so constant pool renumbering alone changes nothing
+    private static final class MethodHasher {
+
+        private static final int[] INSTRUCTION_LENGTHS = new int[256];
+
+        static {
+            Arrays.fill(INSTRUCTION_LENGTHS, 1);
+            for (int opcode : new int[]{0x10, 0x15, 0x16, 0x17, 0x18, 0x19, 0x36, 0x37, 0x38, 0x39, 0x3a, 0xa9, 0xbc}) {
+                INSTRUCTION_LENGTHS[opcode] = 2;
+            }
+            for (int opcode = 0x99; opcode <= 0xa8; opcode++) {
+                INSTRUCTION_LENGTHS[opcode] = 3;
+            }
+            INSTRUCTION_LENGTHS[0x11] = 3;
+            INSTRUCTION_LENGTHS[0x84] = 3;
+            INSTRUCTION_LENGTHS[0xc6] = 3;
+            INSTRUCTION_LENGTHS[0xc7] = 3;
+            INSTRUCTION_LENGTHS[0xc8] = 5;
+            INSTRUCTION_LENGTHS[0xc9] = 5;
+        }
+
+        private final byte[] classFile;
+        private final ConstantPool pool;
+        private final CRC32 crc = new CRC32();
+        private long length;
+
+        MethodHasher(byte[] classFile, ConstantPool pool) {
+            this.classFile = classFile;
+            this.pool = pool;
+        }
+
+        void method(String nameAndDescriptor, int attributesOffset) throws IOException {
+            text(nameAndDescriptor);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                    classFile, attributesOffset, classFile.length - attributesOffset));
+            int attributes = in.readUnsignedShort();
+            for (int i = 0; i < attributes; i++) {
+                String name = pool.utf8[in.readUnsignedShort()];
+                byte[] attribute = new byte[in.readInt()];
+                in.readFully(attribute);
+                text(name);
+                attribute(name, new DataInputStream(new ByteArrayInputStream(attribute)), attribute);
+            }
+        }
+
+        void text(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            crc.update(bytes, 0, bytes.length);
+            crc.update(0);
+            length += bytes.length + 1;
+        }
+
+        String checksum() {
+            return Long.toHexString(crc.getValue()) + ":" + Long.toHexString(length);
+        }
+
+        private void raw(byte[] bytes, int offset, int count) {
+            crc.update(bytes, offset, count);
+            length += count;
+        }
+
+        private void attribute(String name, DataInputStream in, byte[] attribute) throws IOException {
+            switch (name) {
+                case "Code":
+                    in.skipBytes(4); // max stack and locals
+                    byte[] code = new byte[in.readInt()];
+                    in.readFully(code);
+                    code(code);
+                    int handlers = in.readUnsignedShort();
+                    for (int i = 0; i < handlers; i++) {
+                        text(in.readUnsignedShort() + "-" + in.readUnsignedShort() + ">" + in.readUnsignedShort());
+                        text(pool.render(in.readUnsignedShort()));
+                    }
+                    // Line numbers, local variable names and stack maps follow, and only mirror the code
+                    break;
+                case "RuntimeVisibleAnnotations":
+                case "RuntimeInvisibleAnnotations":
+                    annotations(in);
+                    break;
+                case "RuntimeVisibleParameterAnnotations":
+                case "RuntimeInvisibleParameterAnnotations":
+                    int parameters = in.readUnsignedByte();
+                    for (int i = 0; i < parameters; i++) {
+                        annotations(in);
+                    }
+                    break;
+                case "AnnotationDefault":
+                    elementValue(in);
+                    break;
+                case "Signature":
+                    text(pool.render(in.readUnsignedShort()));
+                    break;
+                case "Exceptions":
+                    int exceptions = in.readUnsignedShort();
+                    for (int i = 0; i < exceptions; i++) {
+                        text(pool.render(in.readUnsignedShort()));
+                    }
+                    break;
+                default:
+                    // May hold pool indexes, which at worst changes the checksum without need
+                    raw(attribute, 0, attribute.length);
+            }
+        }
+
+        private void code(byte[] code) {
+            int pc = 0;
+            while (pc < code.length) {
+                int opcode = code[pc] & 0xff;
+                int size;
+                switch (opcode) {
+                    case 0x12: // ldc
+                        text(opcode + " " + pool.render(code[pc + 1] & 0xff));
+                        size = 2;
+                        break;
+                    case 0x13: case 0x14: // ldc_w, ldc2_w
+                    case 0xb2: case 0xb3: case 0xb4: case 0xb5: // field access
+                    case 0xb6: case 0xb7: case 0xb8: // invokevirtual, invokespecial, invokestatic
+                    case 0xbb: case 0xbd: case 0xc0: case 0xc1: // new, anewarray, checkcast, instanceof
+                        text(opcode + " " + pool.render(u2(code, pc + 1)));
+                        size = 3;
+                        break;
+                    case 0xb9: case 0xba: // invokeinterface, invokedynamic
+                        text(opcode + " " + pool.render(u2(code, pc + 1)));
+                        size = 5;
+                        break;
+                    case 0xc5: // multianewarray
+                        text(opcode + " " + pool.render(u2(code, pc + 1)) + " " + code[pc + 3]);
+                        size = 4;
+                        break;
+                    case 0xaa: { // tableswitch
+                        int base = pc + 1 + (3 - pc % 4);
+                        size = base - pc + 12 + 4 * (s4(code, base + 8) - s4(code, base + 4) + 1);
+                        raw(code, pc, size);
+                        break;
+                    }
+                    case 0xab: { // lookupswitch
+                        int base = pc + 1 + (3 - pc % 4);
+                        size = base - pc + 8 + 8 * s4(code, base + 4);
+                        raw(code, pc, size);
+                        break;
+                    }
+                    case 0xc4: // wide
+                        size = (code[pc + 1] & 0xff) == 0x84 ? 6 : 4;
+                        raw(code, pc, size);
+                        break;
+                    default:
+                        size = INSTRUCTION_LENGTHS[opcode];
+                        raw(code, pc, size);
+                }
+                pc += size;
+            }
+        }
+
+        private void annotations(DataInputStream in) throws IOException {
+            int annotations = in.readUnsignedShort();
+            for (int i = 0; i < annotations; i++) {
+                annotation(in);
+            }
+        }
+
+        private void annotation(DataInputStream in) throws IOException {
+            text("@" + pool.render(in.readUnsignedShort()));
+            int pairs = in.readUnsignedShort();
+            for (int i = 0; i < pairs; i++) {
+                text(pool.render(in.readUnsignedShort()));
+                elementValue(in);
+            }
+        }
+
+        private void elementValue(DataInputStream in) throws IOException {
+            char tag = (char) in.readUnsignedByte();
+            switch (tag) {
+                case 'e':
+                    text(tag + pool.render(in.readUnsignedShort()) + "." + pool.render(in.readUnsignedShort()));
+                    break;
+                case '@':
+                    annotation(in);
+                    break;
+                case '[':
+                    int values = in.readUnsignedShort();
+                    text("[" + values);
+                    for (int i = 0; i < values; i++) {
+                        elementValue(in);
+                    }
+                    break;
+                default:
+                    text(tag + pool.render(in.readUnsignedShort()));
+            }
+        }
+
+        private static int u2(byte[] code, int position) {
+            return (code[position] & 0xff) << 8 | code[position + 1] & 0xff;
+        }
+
+        private static int s4(byte[] code, int position) {
+            return u2(code, position) << 16 | u2(code, position + 2);
+        }
+    }
+
+    private static final class ConstantPool {
+
+        private final String[] utf8;
+        private final int[] classIndexes;
+        private int classCount;
+
+        // For rendering: the tag, the one or two indexes (or the value) of each entry
+        private final int[] tags;
+        private final int[] first;
+        private final int[] second;
+        private final long[] numbers;
+        private int[][] bootstrapMethods = new int[0][];
+
+        private ConstantPool(int count) {
+            this.utf8 = new String[count];
+            this.classIndexes = new int[count];
+            this.tags = new int[count];
+            this.first = new int[count];
+            this.second = new int[count];
+            this.numbers = new long[count];
+        }
+
+        // Reads from the start of a class file and leaves the stream right after the constant pool
+        static ConstantPool read(DataInputStream in) throws IOException {
+            in.skipBytes(8); // magic, minor and major version
+            int count = in.readUnsignedShort();
+            ConstantPool pool = new ConstantPool(count);
+
+            for (int i = 1; i < count; i++) {
+                int tag = in.readUnsignedByte();
+                pool.tags[i] = tag;
+                switch (tag) {
+                    case 1:
+                        pool.utf8[i] = in.readUTF();
+                        break;
+                    case 7:
+                        pool.first[i] = in.readUnsignedShort();
+                        pool.classIndexes[pool.classCount++] = pool.first[i];
+                        break;
+                    case 8:
+                    case 16:
+                    case 19:
+                    case 20:
+                        pool.first[i] = in.readUnsignedShort();
+                        break;
+                    case 15:
+                        pool.first[i] = in.readUnsignedByte();
+                        pool.second[i] = in.readUnsignedShort();
+                        break;
+                    case 3:
+                    case 4:
+                        pool.numbers[i] = in.readInt();
+                        break;
+                    case 9:
+                    case 10:
+                    case 11:
+                    case 12:
+                    case 17:
+                    case 18:
+                        pool.first[i] = in.readUnsignedShort();
+                        pool.second[i] = in.readUnsignedShort();
+                        break;
+                    case 5:
+                    case 6:
+                        pool.numbers[i] = in.readLong();
+                        i++; // longs and doubles take two entries
+                        break;
+                    default:
+                        throw new IOException("Unknown constant pool tag " + tag);
+                }
+            }
+            return pool;
+        }
+
+        // Reads the class attributes, the stream must be right after the methods
+        void readBootstrapMethods(DataInputStream in) throws IOException {
+            int attributes = in.readUnsignedShort();
+            for (int i = 0; i < attributes; i++) {
+                String name = utf8[in.readUnsignedShort()];
+                int length = in.readInt();
+                if (!"BootstrapMethods".equals(name)) {
+                    in.skipBytes(length);
+                    continue;
+                }
+                bootstrapMethods = new int[in.readUnsignedShort()][];
+                for (int j = 0; j < bootstrapMethods.length; j++) {
+                    int handle = in.readUnsignedShort();
+                    int[] method = new int[1 + in.readUnsignedShort()];
+                    method[0] = handle;
+                    for (int k = 1; k < method.length; k++) {
+                        method[k] = in.readUnsignedShort();
+                    }
+                    bootstrapMethods[j] = method;
+                }
+            }
+        }
+
+        // The constant an index names, written out in full; index 0 means none
+        String render(int index) {
+            if (index == 0) {
+                return "-";
+            }
+            switch (tags[index]) {
+                case 1:
+                    return utf8[index];
+                case 3:
+                case 4:
+                case 5:
+                case 6:
+                    return tags[index] + "#" + numbers[index];
+                case 7:
+                case 8:
+                case 16:
+                case 19:
+                case 20:
+                    return tags[index] + "#" + utf8[first[index]];
+                case 15:
+                    return "handle" + first[index] + " " + render(second[index]);
+                case 17:
+                case 18:
+                    StringBuilder bootstrap = new StringBuilder();
+                    for (int argument : bootstrapMethods[first[index]]) {
+                        bootstrap.append(render(argument)).append(',');
+                    }
+                    return "dynamic " + bootstrap + " " + render(second[index]);
+                default:
+                    return render(first[index]) + "." + render(second[index]);
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Class dependencies for test impact analysis")
+public class ClassDependenciesTests {
+
+    @Test
+    @DisplayName("Should find project classes referenced through annotations and signatures")
+    void shouldFindConverterDependencies() {
+        // The registry example takes Person and Pet parameters, so they are dependencies as well
+        assertThat(ClassDependencies.closure(ArgumentConverterExample.class).keySet())
+                .contains("ArgumentConverterExample", "Message", "MessageConverter", "LazyMessageConverter", "Lazy")
+                .contains("RegistryConverter", "ConverterRegistry", "Person", "Pet")
+                .doesNotContain("PersonStore", "AgeColumn", "org.junit.jupiter.api.Test");
+    }
+
+    @Test
+    @DisplayName("Should follow classes loaded by name")
+    void shouldFollowClassesLoadedByName() {
+        // Present only when the jfr and vector profiles compiled them, and then reached through string constants
+        assertThat(ClassDependencies.closure(AgeColumnTests.class).keySet())
+                .contains("AgeColumn")
+                .containsAll(compiled("VectorAgeKernel"));
+        assertThat(ClassDependencies.closure(FlightEvents.class).keySet())
+                .containsAll(compiled("FlightEventFactory", "PersonQueryEvent", "MessageConversionEvent"));
+    }
+
+    private static List<String> compiled(String... classes) {
+        return Arrays.stream(classes)
+                .filter(name -> ClassDependenciesTests.class.getClassLoader().getResource(name + ".class") != null)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    @DisplayName("Should not depend on main classes a test never touches")
+    void shouldSkipUnrelatedClasses() {
+        assertThat(ClassDependencies.closure(HamcrestExamples.class).keySet())
+                .contains("Person")
+                .doesNotContain("Message", "MessageConverter");
+    }
+
+    @Test
+    @DisplayName("Should fingerprint resources next to the test classes")
+    void shouldIncludeResources() {
+        assertThat(ClassDependencies.closure(HamcrestExamples.class))
+                .containsKeys(ClassDependencies.RESOURCES_PREFIX + "test-classes", ClassDependencies.RESOURCES_PREFIX + "classes")
+                .containsEntry(ClassDependencies.RESOURCES_PREFIX + "test-classes",
+                        ClassDependencies.closure(ArgumentConverterExample.class)
+                                .get(ClassDependencies.RESOURCES_PREFIX + "test-classes"));
+    }
+}
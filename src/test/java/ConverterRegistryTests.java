@@ -0,0 +1,54 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.converter.ArgumentConversionException;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Converter registry")
+public class ConverterRegistryTests {
+
+    private final ConverterRegistry registry = ConverterRegistry.defaults();
+
+    @Test
+    @DisplayName("Should convert strings to messages and people")
+    void shouldConvertStrings() {
+        assertThat(registry.convert("Hello", Message.class).getMessage()).isEqualTo("Hello");
+
+        Person person = registry.convert("Jane, Doe, 30", Person.class);
+        assertThat(person.getFirstName()).isEqualTo("Jane");
+        assertThat(person.getLastName()).isEqualTo("Doe");
+        assertThat(person.getAge()).isEqualTo(30);
+        assertThat(registry.convert("Jane, , ", Person.class).getAge()).isNull();
+    }
+
+    @DisplayName("Should convert names of every pet")
+    @ParameterizedTest(name = "{index} => pet=''{0}''")
+    @EnumSource(Pet.class)
+    void shouldConvertPets(Pet pet) {
+        assertThat(registry.convert(pet.name().toLowerCase(), Pet.class)).isEqualTo(pet);
+        assertThat(registry.convert(pet, Pet.class)).isSameAs(pet);
+    }
+
+    @Test
+    @DisplayName("Should resolve converters registered for a supertype")
+    void shouldResolveSupertypes() {
+        ConverterRegistry custom = new ConverterRegistry()
+                .register(Message.class, CharSequence.class, source -> new Message(source.toString()));
+
+        assertThat(custom.convert(new StringBuilder("Hi"), Message.class).getMessage()).isEqualTo("Hi");
+        assertThat(custom.convert("Hello", Message.class).getMessage()).isEqualTo("Hello");
+    }
+
+    @Test
+    @DisplayName("Should reject unsupported conversions")
+    void shouldRejectUnsupported() {
+        assertThatThrownBy(() -> registry.convert(1, Message.class)).isInstanceOf(ArgumentConversionException.class);
+        assertThatThrownBy(() -> registry.convert("Hello", Integer.class)).isInstanceOf(ArgumentConversionException.class);
+        assertThatThrownBy(() -> registry.convert("Jane, Doe", Person.class)).isInstanceOf(ArgumentConversionException.class);
+        assertThatThrownBy(() -> registry.convert("Fish", Pet.class)).isInstanceOf(ArgumentConversionException.class);
+        assertThatThrownBy(() -> registry.convert(null, Pet.class)).isInstanceOf(ArgumentConversionException.class);
+    }
+}
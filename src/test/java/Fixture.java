@@ -0,0 +1,25 @@
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/* Marks a parameter that FixtureExtension should inject.
+   The value names a static no-arg factory method in the test class or one of its enclosing classes.
+   The factory runs once per scope and the result is shared, so tests must not change it,
+   unless they ask for a private copy with mutable = true.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@interface Fixture {
+
+    String value();
+
+    Scope scope() default Scope.CLASS;
+
+    boolean mutable() default false;
+
+    enum Scope {
+        CLASS,
+        RUN
+    }
+}
@@ -0,0 +1,177 @@
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.extension.ParameterResolutionException;
+import org.junit.jupiter.api.extension.ParameterResolver;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/* Builds fixtures once per test class (or once per run) and injects them with a ParameterResolver.
+   Shared fixtures are handed out read-only all the way down: collections are unmodifiable and the
+   people in them are frozen, so no test can change what later tests see. Parameters marked mutable
+   get a deep copy which is shared by all mutable parameters of the same test, so references between
+   fixtures stay intact.
+ */
+class FixtureExtension implements ParameterResolver {
+
+    private static final ExtensionContext.Namespace NAMESPACE =
+            ExtensionContext.Namespace.create(FixtureExtension.class);
+
+    @Override
+    public boolean supportsParameter(ParameterContext parameterContext, ExtensionContext extensionContext)
+            throws ParameterResolutionException {
+        return parameterContext.isAnnotated(Fixture.class);
+    }
+
+    @Override
+    public Object resolveParameter(ParameterContext parameterContext, ExtensionContext extensionContext)
+            throws ParameterResolutionException {
+        Fixture fixture = parameterContext.findAnnotation(Fixture.class)
+                .orElseThrow(() -> new ParameterResolutionException("Missing @Fixture"));
+        Method factory = findFactory(extensionContext.getRequiredTestClass(), fixture.value());
+
+        ExtensionContext.Store store = scopeContext(extensionContext, fixture.scope(), factory.getDeclaringClass())
+                .getStore(NAMESPACE);
+        Object shared = store.getOrComputeIfAbsent(factory, FixtureExtension::create);
+
+        Object value = fixture.mutable() ? copyForTest(extensionContext, shared) : shared;
+        Class<?> type = parameterContext.getParameter().getType();
+        if (value != null && !type.isPrimitive() && !type.isInstance(value)) {
+            throw new ParameterResolutionException("Fixture " + fixture.value() + " is a "
+                    + value.getClass().getName() + ", not a " + type.getName());
+        }
+        return value;
+    }
+
+    private static Method findFactory(Class<?> testClass, String name) {
+        for (Class<?> current = testClass; current != null; current = current.getEnclosingClass()) {
+            for (Method method : current.getDeclaredMethods()) {
+                if (method.getName().equals(name) && method.getParameterCount() == 0
+                        && Modifier.isStatic(method.getModifiers())) {
+                    method.setAccessible(true);
+                    return method;
+                }
+            }
+        }
+        throw new ParameterResolutionException("No static fixture method " + name + "() in "
+                + testClass.getName() + " or its enclosing classes");
+    }
+
+    private static ExtensionContext scopeContext(ExtensionContext context, Fixture.Scope scope, Class<?> owner) {
+        if (scope == Fixture.Scope.RUN) {
+            return context.getRoot();
+        }
+
+        // Cache in the context of the class that declares the factory, so @Nested classes share it
+        for (Optional<ExtensionContext> current = Optional.of(context); current.isPresent();
+             current = current.get().getParent()) {
+            ExtensionContext candidate = current.get();
+            if (!candidate.getTestMethod().isPresent()
+                    && candidate.getTestClass().filter(owner::equals).isPresent()) {
+                return candidate;
+            }
+        }
+        return context;
+    }
+
+    private static Object create(Object key) {
+        Method factory = (Method) key;
+        try {
+            return readOnly(factory.invoke(null), new IdentityHashMap<>());
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new ParameterResolutionException("Cannot create fixture " + factory.getName(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object copyForTest(ExtensionContext context, Object shared) {
+        Map<Object, Object> copies = context.getStore(NAMESPACE)
+                .getOrComputeIfAbsent("copies", key -> new IdentityHashMap<>(), Map.class);
+        return copy(shared, copies);
+    }
+
+    // Freezes people and wraps collections, keeping one frozen version of anything reachable twice
+    private static Object readOnly(Object value, Map<Object, Object> frozen) {
+        if (!(value instanceof Person || value instanceof List || value instanceof Set || value instanceof Map)) {
+            return value;
+        }
+        Object existing = frozen.get(value);
+        if (existing != null) {
+            return existing;
+        }
+
+        Object result;
+        if (value instanceof Person) {
+            result = FrozenPerson.of((Person) value);
+        } else if (value instanceof List) {
+            List<Object> elements = new ArrayList<>();
+            for (Object element : (List<?>) value) {
+                elements.add(readOnly(element, frozen));
+            }
+            result = Collections.unmodifiableList(elements);
+        } else if (value instanceof Set) {
+            Set<Object> elements = new LinkedHashSet<>();
+            for (Object element : (Set<?>) value) {
+                elements.add(readOnly(element, frozen));
+            }
+            result = Collections.unmodifiableSet(elements);
+        } else {
+            Map<Object, Object> entries = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                entries.put(readOnly(entry.getKey(), frozen), readOnly(entry.getValue(), frozen));
+            }
+            result = Collections.unmodifiableMap(entries);
+        }
+        frozen.put(value, result);
+        return result;
+    }
+
+    static Object copy(Object value, Map<Object, Object> copies) {
+        if (value == null || value instanceof String || value instanceof Number
+                || value instanceof Boolean || value instanceof Character || value instanceof Enum) {
+            return value;
+        }
+        // Immutable all the way down, since they freeze the people put into them
+        if (value instanceof PersonVector || value instanceof PersonMap) {
+            return value;
+        }
+
+        Object existing = copies.get(value);
+        if (existing != null) {
+            return existing;
+        }
+
+        if (value instanceof Person) {
+            Person copy = new Person((Person) value);
+            copies.put(value, copy);
+            return copy;
+        }
+        if (value instanceof List) {
+            List<Object> copy = new ArrayList<>();
+            copies.put(value, copy);
+            for (Object element : (List<?>) value) {
+                copy.add(copy(element, copies));
+            }
+            return copy;
+        }
+        if (value instanceof Set) {
+            Set<Object> copy = new LinkedHashSet<>();
+            copies.put(value, copy);
+            for (Object element : (Set<?>) value) {
+                copy.add(copy(element, copies));
+            }
+            return copy;
+        }
+        if (value instanceof Map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            copies.put(value, copy);
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(copy(entry.getKey(), copies), copy(entry.getValue(), copies));
+            }
+            return copy;
+        }
+        throw new ParameterResolutionException("Cannot copy fixture of type " + value.getClass().getName());
+    }
+}
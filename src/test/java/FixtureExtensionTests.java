@@ -0,0 +1,78 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Fixture extension")
+@ExtendWith(FixtureExtension.class)
+@TestMethodOrder(MethodOrderer.Alphanumeric.class)
+public class FixtureExtensionTests {
+
+    private static int created;
+
+    static List<Person> people() {
+        created++;
+        List<Person> people = new ArrayList<>();
+        people.add(People.person("Jane", "Doe", 30));
+        return people;
+    }
+
+    @Test
+    @DisplayName("Shared fixture should be created once per class")
+    void a_shouldCreateOnce(@Fixture("people") List<Person> people) {
+        assertThat(people).hasSize(1);
+        assertThat(created).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Shared fixture list and the people in it should be read-only")
+    void b_shouldBeReadOnly(@Fixture("people") List<Person> people) {
+        assertThatThrownBy(() -> people.add(new Person())).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> people.get(0).setAge(31)).isInstanceOf(UnsupportedOperationException.class);
+        assertThat(people.get(0).getAge()).isEqualTo(30);
+        assertThat(created).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Mutable fixture should be a private copy")
+    void c_shouldCopyMutableFixture(@Fixture(value = "people", mutable = true) List<Person> copy,
+                                    @Fixture(value = "people", mutable = true) List<Person> sameCopy,
+                                    @Fixture("people") List<Person> shared) {
+        copy.get(0).setAge(31);
+        copy.add(new Person());
+
+        assertThat(copy.get(0).getAge()).isEqualTo(31);
+        assertThat(sameCopy).isSameAs(copy);
+        assertThat(shared).hasSize(1);
+        assertThat(shared.get(0).getAge()).isEqualTo(30);
+    }
+
+    static PersonVector vector() {
+        return PersonVector.of(Collections.singletonList(People.person("Jane", "Doe", 30)));
+    }
+
+    @Test
+    @DisplayName("Mutable fixture of an immutable type should be the shared instance")
+    void d_shouldShareImmutableFixture(@Fixture(value = "vector", mutable = true) PersonVector copy,
+                                       @Fixture("vector") PersonVector shared) {
+        assertThat(copy).isSameAs(shared);
+        assertThatThrownBy(() -> copy.get(0).setAge(31)).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Nested
+    @DisplayName("In nested classes")
+    class NestedTests {
+
+        @Test
+        @DisplayName("Should share the enclosing class fixture")
+        void shouldShareEnclosingFixture(@Fixture("people") List<Person> people) {
+            assertThat(people.get(0).getFirstName()).isEqualTo("Jane");
+            assertThat(created).isEqualTo(1);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+import java.util.Objects;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+
+/* Array equality for arrays with millions of elements.
+   assertArrayEquals() and AssertJ's isEqualTo() turn both whole arrays into strings when they fail,
+   which can need hundreds of megabytes. Here every primitive type has its own mismatch loop
+   (Arrays.mismatch() only arrived in Java 9), and a failure shows a small window of elements
+   around each of the first few differences, plus the total number of differences.
+ */
+final class LargeArrayAssert {
+
+    static final int REPORTED_DIFFERENCES = 3;
+    static final int WINDOW = 4;
+
+    private LargeArrayAssert() {
+    }
+
+    static void assertArrayEquals(int[] expected, int[] actual) {
+        if (expected == actual) {
+            return;
+        }
+        failIfOneIsNull(expected, actual);
+        int mismatch = mismatch(expected, actual, 0);
+        if (mismatch >= 0) {
+            fail("int", expected.length, actual.length, mismatch, from -> mismatch(expected, actual, from),
+                    i -> Integer.toString(expected[i]), i -> Integer.toString(actual[i]));
+        }
+    }
+
+    static void assertArrayEquals(long[] expected, long[] actual) {
+        if (expected == actual) {
+            return;
+        }
+        failIfOneIsNull(expected, actual);
+        int mismatch = mismatch(expected, actual, 0);
+        if (mismatch >= 0) {
+            fail("long", expected.length, actual.length, mismatch, from -> mismatch(expected, actual, from),
+                    i -> Long.toString(expected[i]), i -> Long.toString(actual[i]));
+        }
+    }
+
+    static void assertArrayEquals(short[] expected, short[] actual) {
+        if (expected == actual) {
+            return;
+        }
+        failIfOneIsNull(expected, actual);
+        int mismatch = mismatch(expected, actual, 0);
+        if (mismatch >= 0) {
+            fail("short", expected.length, actual.length, mismatch, from -> mismatch(expected, actual, from),
+                    i -> Short.toString(expected[i]), i -> Short.toString(actual[i]));
+        }
+    }
+
+    // Compared like Arrays.equals(): NaN equals NaN and 0.0f differs from -0.0f
+    static void assertArrayEquals(float[] expected, float[] actual) {
+        if (expected == actual) {
+            return;
+        }
+        failIfOneIsNull(expected, actual);
+        int mismatch = mismatch(expected, actual, 0);
+        if (mismatch >= 0) {
+            fail("float", expected.length, actual.length, mismatch, from -> mismatch(expected, actual, from),
+                    i -> Float.toString(expected[i]), i -> Float.toString(actual[i]));
+        }
+    }
+
+    // Compared like Arrays.equals(): NaN equals NaN and 0.0 differs from -0.0
+    static void assertArrayEquals(double[] expected, double[] actual) {
+        if (expected == actual) {
+            return;
+        }
+        failIfOneIsNull(expected, actual);
+        int mismatch = mismatch(expected, actual, 0);
+        if (mismatch >= 0) {
+            fail("double", expected.length, actual.length, mismatch, from -> mismatch(expected, actual, from),
+                    i -> Double.toString(expected[i]), i -> Double.toString(actual[i]));
+        }
+    }
+
+    static void assertArrayEquals(byte[] expected, byte[] actual) {
+        if (expected == actual) {
+            return;
+        }
+        failIfOneIsNull(expected, actual);
+        int mismatch = mismatch(expected, actual, 0);
+        if (mismatch >= 0) {
+            fail("byte", expected.length, actual.length, mismatch, from -> mismatch(expected, actual, from),
+                    i -> Byte.toString(expected[i]), i -> Byte.toString(actual[i]));
+        }
+    }
+
+    static void assertArrayEquals(char[] expected, char[] actual) {
+        if (expected == actual) {
+            return;
+        }
+        failIfOneIsNull(expected, actual);
+        int mismatch = mismatch(expected, actual, 0);
+        if (mismatch >= 0) {
+            fail("char", expected.length, actual.length, mismatch, from -> mismatch(expected, actual, from),
+                    i -> "'" + expected[i] + "'", i -> "'" + actual[i] + "'");
+        }
+    }
+
+    static void assertArrayEquals(boolean[] expected, boolean[] actual) {
+        if (expected == actual) {
+            return;
+        }
+        failIfOneIsNull(expected, actual);
+        int mismatch = mismatch(expected, actual, 0);
+        if (mismatch >= 0) {
+            fail("boolean", expected.length, actual.length, mismatch, from -> mismatch(expected, actual, from),
+                    i -> Boolean.toString(expected[i]), i -> Boolean.toString(actual[i]));
+        }
+    }
+
+    static void assertArrayEquals(Object[] expected, Object[] actual) {
+        if (expected == actual) {
+            return;
+        }
+        failIfOneIsNull(expected, actual);
+        int mismatch = mismatch(expected, actual, 0);
+        if (mismatch >= 0) {
+            fail("Object", expected.length, actual.length, mismatch, from -> mismatch(expected, actual, from),
+                    i -> String.valueOf(expected[i]), i -> String.valueOf(actual[i]));
+        }
+    }
+
+    /* Each mismatch() returns the first differing index at or after from, the shorter length
+       when one array is a prefix of the other, or -1 when the arrays are equal from there on.
+     */
+    private static int mismatch(int[] expected, int[] actual, int from) {
+        int length = Math.min(expected.length, actual.length);
+        for (int i = from; i < length; i++) {
+            if (expected[i] != actual[i]) {
+                return i;
+            }
+        }
+        return expected.length == actual.length ? -1 : length;
+    }
+
+    private static int mismatch(long[] expected, long[] actual, int from) {
+        int length = Math.min(expected.length, actual.length);
+        for (int i = from; i < length; i++) {
+            if (expected[i] != actual[i]) {
+                return i;
+            }
+        }
+        return expected.length == actual.length ? -1 : length;
+    }
+
+    private static int mismatch(short[] expected, short[] actual, int from) {
+        int length = Math.min(expected.length, actual.length);
+        for (int i = from; i < length; i++) {
+            if (expected[i] != actual[i]) {
+                return i;
+            }
+        }
+        return expected.length == actual.length ? -1 : length;
+    }
+
+    private static int mismatch(float[] expected, float[] actual, int from) {
+        int length = Math.min(expected.length, actual.length);
+        for (int i = from; i < length; i++) {
+            if (Float.floatToIntBits(expected[i]) != Float.floatToIntBits(actual[i])) {
+                return i;
+            }
+        }
+        return expected.length == actual.length ? -1 : length;
+    }
+
+    private static int mismatch(double[] expected, double[] actual, int from) {
+        int length = Math.min(expected.length, actual.length);
+        for (int i = from; i < length; i++) {
+            if (Double.doubleToLongBits(expected[i]) != Double.doubleToLongBits(actual[i])) {
+                return i;
+            }
+        }
+        return expected.length == actual.length ? -1 : length;
+    }
+
+    private static int mismatch(byte[] expected, byte[] actual, int from) {
+        int length = Math.min(expected.length, actual.length);
+        for (int i = from; i < length; i++) {
+            if (expected[i] != actual[i]) {
+                return i;
+            }
+        }
+        return expected.length == actual.length ? -1 : length;
+    }
+
+    private static int mismatch(char[] expected, char[] actual, int from) {
+        int length = Math.min(expected.length, actual.length);
+        for (int i = from; i < length; i++) {
+            if (expected[i] != actual[i]) {
+                return i;
+            }
+        }
+        return expected.length == actual.length ? -1 : length;
+    }
+
+    private static int mismatch(boolean[] expected, boolean[] actual, int from) {
+        int length = Math.min(expected.length, actual.length);
+        for (int i = from; i < length; i++) {
+            if (expected[i] != actual[i]) {
+                return i;
+            }
+        }
+        return expected.length == actual.length ? -1 : length;
+    }
+
+    private static int mismatch(Object[] expected, Object[] actual, int from) {
+        int length = Math.min(expected.length, actual.length);
+        for (int i = from; i < length; i++) {
+            if (!Objects.equals(expected[i], actual[i])) {
+                return i;
+            }
+        }
+        return expected.length == actual.length ? -1 : length;
+    }
+
+    // Called once expected != actual, so at most one of them is null
+    private static void failIfOneIsNull(Object expected, Object actual) {
+        if (expected == null || actual == null) {
+            throw new AssertionError("Expected " + (expected == null ? "null" : "an array")
+                    + " but was " + (actual == null ? "null" : "an array"));
+        }
+    }
+
+    private static void fail(String type, int expectedLength, int actualLength, int firstMismatch,
+                             IntUnaryOperator nextMismatch, IntFunction<String> expected, IntFunction<String> actual) {
+        int common = Math.min(expectedLength, actualLength);
+        StringBuilder details = new StringBuilder();
+        long differences = 0;
+
+        for (int index = firstMismatch; index >= 0 && index < common; index = nextMismatch.applyAsInt(index + 1)) {
+            if (differences < REPORTED_DIFFERENCES) {
+                int from = Math.max(0, index - WINDOW);
+                int to = Math.min(common, index + WINDOW + 1);
+                details.append(System.lineSeparator())
+                        .append("  at [").append(index).append("] expected ").append(expected.apply(index))
+                        .append(" but was ").append(actual.apply(index));
+                appendWindow(details, "expected", from, to, expected);
+                appendWindow(details, "actual  ", from, to, actual);
+            }
+            differences++;
+        }
+
+        StringBuilder message = new StringBuilder(type).append(" arrays differ: ")
+                .append(differences).append(" differing elements");
+        if (differences > REPORTED_DIFFERENCES) {
+            message.append(", first ").append(REPORTED_DIFFERENCES).append(" shown");
+        }
+        if (expectedLength != actualLength) {
+            message.append(", expected length ").append(expectedLength)
+                    .append(" but was ").append(actualLength);
+        }
+        throw new AssertionError(message.append(details).toString());
+    }
+
+    private static void appendWindow(StringBuilder details, String name, int from, int to, IntFunction<String> elements) {
+        details.append(System.lineSeparator())
+                .append("    ").append(name).append(" [").append(from).append("..").append(to - 1).append("]: ");
+        for (int i = from; i < to; i++) {
+            details.append(i == from ? "" : ", ").append(elements.apply(i));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Large array assertions")
+public class LargeArrayAssertTests {
+
+    private static final int SIZE = 5_000_000;
+
+    private static int[] sequence() {
+        int[] values = new int[SIZE];
+        Arrays.setAll(values, i -> i);
+        return values;
+    }
+
+    private static String failure(Runnable assertion) {
+        try {
+            assertion.run();
+        } catch (AssertionError e) {
+            return e.getMessage();
+        }
+        throw new AssertionError("Expected the assertion to fail");
+    }
+
+    @Test
+    @DisplayName("Should pass for equal arrays")
+    void shouldPassForEqualArrays() {
+        LargeArrayAssert.assertArrayEquals(sequence(), sequence());
+        LargeArrayAssert.assertArrayEquals(new double[]{Double.NaN, 1.5}, new double[]{Double.NaN, 1.5});
+        LargeArrayAssert.assertArrayEquals(new Object[]{"a", null}, new Object[]{"a", null});
+        LargeArrayAssert.assertArrayEquals((long[]) null, null);
+    }
+
+    @Test
+    @DisplayName("Should show a window around the first differences only")
+    void shouldShowWindowAroundDifferences() {
+        int[] expected = sequence();
+        int[] actual = sequence();
+        for (int i = 1_000; i < 2_000; i++) {
+            actual[i] = -1;
+        }
+
+        String message = failure(() -> LargeArrayAssert.assertArrayEquals(expected, actual));
+
+        assertThat(message)
+                .startsWith("int arrays differ: 1000 differing elements, first 3 shown")
+                .contains("at [1000] expected 1000 but was -1")
+                .contains("expected [996..1004]: 996, 997, 998, 999, 1000, 1001, 1002, 1003, 1004")
+                .contains("actual   [996..1004]: 996, 997, 998, 999, -1, -1, -1, -1, -1")
+                .doesNotContain("at [1003]");
+        assertThat(message.length()).isLessThan(1_000);
+    }
+
+    @Test
+    @DisplayName("Should report different lengths")
+    void shouldReportDifferentLengths() {
+        assertThatThrownBy(() -> LargeArrayAssert.assertArrayEquals(new byte[]{1, 2, 3}, new byte[]{1, 2}))
+                .hasMessage("byte arrays differ: 0 differing elements, expected length 3 but was 2");
+        assertThatThrownBy(() -> LargeArrayAssert.assertArrayEquals(new char[]{'a'}, null))
+                .hasMessage("Expected an array but was null");
+    }
+
+    @Test
+    @DisplayName("Should compare doubles bit by bit")
+    void shouldCompareDoublesBitByBit() {
+        assertThat(failure(() -> LargeArrayAssert.assertArrayEquals(new double[]{0.0}, new double[]{-0.0})))
+                .contains("at [0] expected 0.0 but was -0.0");
+    }
+
+    @Test
+    @DisplayName("Should compare short, float and boolean arrays")
+    void shouldCompareRemainingPrimitives() {
+        LargeArrayAssert.assertArrayEquals(new short[]{1, 2}, new short[]{1, 2});
+        LargeArrayAssert.assertArrayEquals(new float[]{Float.NaN, 1.5f}, new float[]{Float.NaN, 1.5f});
+        LargeArrayAssert.assertArrayEquals(new boolean[]{true, false}, new boolean[]{true, false});
+
+        assertThat(failure(() -> LargeArrayAssert.assertArrayEquals(new short[]{1, 2}, new short[]{1, 3})))
+                .startsWith("short arrays differ: 1 differing elements").contains("at [1] expected 2 but was 3");
+        assertThat(failure(() -> LargeArrayAssert.assertArrayEquals(new float[]{0.0f}, new float[]{-0.0f})))
+                .contains("at [0] expected 0.0 but was -0.0");
+        assertThat(failure(() -> LargeArrayAssert.assertArrayEquals(new boolean[]{true}, new boolean[]{false})))
+                .startsWith("boolean arrays differ").contains("at [0] expected true but was false");
+    }
+}
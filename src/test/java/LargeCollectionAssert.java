@@ -0,0 +1,339 @@
+import java.util.*;
+
+/* Collection assertions for result sets with millions of elements.
+   AssertJ and Hamcrest check containsExactlyInAnyOrder(), containsOnlyOnce() and friends by scanning
+   the list again for every expected element, which is fine for two items and hopeless for a million.
+   These do the same checks with one hash (or sort) pass, and a failure only lists the first few
+   missing or unexpected elements together with how many there were in total.
+ */
+final class LargeCollectionAssert<T> {
+
+    static final int DEFAULT_SAMPLE_SIZE = 10;
+
+    private final Iterable<? extends T> actual;
+    private int sampleSize = DEFAULT_SAMPLE_SIZE;
+
+    private LargeCollectionAssert(Iterable<? extends T> actual) {
+        this.actual = Objects.requireNonNull(actual, "actual");
+    }
+
+    static <T> LargeCollectionAssert<T> assertThatLarge(Iterable<? extends T> actual) {
+        return new LargeCollectionAssert<>(actual);
+    }
+
+    static <K, V> LargeMapAssert<K, V> assertThatLarge(Map<K, V> actual) {
+        return new LargeMapAssert<>(actual);
+    }
+
+    // How many differing elements a failure message shows
+    LargeCollectionAssert<T> withSampleSize(int sampleSize) {
+        if (sampleSize < 1) {
+            throw new IllegalArgumentException("Sample size must be positive: " + sampleSize);
+        }
+        this.sampleSize = sampleSize;
+        return this;
+    }
+
+    LargeCollectionAssert<T> hasSize(long expected) {
+        long size = size(actual);
+        if (size != expected) {
+            throw new AssertionError("Expected size " + expected + " but was " + size);
+        }
+        return this;
+    }
+
+    // Same elements with the same multiplicities in any order, by counting in a hash map
+    LargeCollectionAssert<T> containsExactlyInAnyOrder(Iterable<? extends T> expected) {
+        Map<Object, int[]> balance = new HashMap<>();
+        for (T element : expected) {
+            balance.computeIfAbsent(element, key -> new int[1])[0]++;
+        }
+        for (T element : actual) {
+            balance.computeIfAbsent(element, key -> new int[1])[0]--;
+        }
+
+        Sample missing = new Sample("missing", sampleSize);
+        Sample unexpected = new Sample("unexpected", sampleSize);
+        for (Map.Entry<Object, int[]> entry : balance.entrySet()) {
+            int count = entry.getValue()[0];
+            if (count > 0) {
+                missing.add(entry.getKey(), count);
+            } else if (count < 0) {
+                unexpected.add(entry.getKey(), -count);
+            }
+        }
+        fail("Expected the same elements in any order", missing, unexpected);
+        return this;
+    }
+
+    // Same check for elements without a usable hashCode(), by sorting both sides and merging
+    LargeCollectionAssert<T> containsExactlyInAnyOrder(Iterable<? extends T> expected,
+                                                       Comparator<? super T> comparator) {
+        List<T> sortedActual = sorted(actual, comparator);
+        List<T> sortedExpected = sorted(expected, comparator);
+
+        Sample missing = new Sample("missing", sampleSize);
+        Sample unexpected = new Sample("unexpected", sampleSize);
+        int a = 0;
+        int e = 0;
+        while (a < sortedActual.size() || e < sortedExpected.size()) {
+            int order = a == sortedActual.size() ? 1
+                    : e == sortedExpected.size() ? -1
+                    : comparator.compare(sortedActual.get(a), sortedExpected.get(e));
+            if (order == 0) {
+                a++;
+                e++;
+            } else if (order < 0) {
+                unexpected.add(sortedActual.get(a++), 1);
+            } else {
+                missing.add(sortedExpected.get(e++), 1);
+            }
+        }
+        fail("Expected the same elements in any order", missing, unexpected);
+        return this;
+    }
+
+    // Same elements in the same order, walking both sides once
+    LargeCollectionAssert<T> containsExactly(Iterable<? extends T> expected) {
+        Iterator<? extends T> actualElements = actual.iterator();
+        Iterator<? extends T> expectedElements = expected.iterator();
+        Sample differences = new Sample("different", sampleSize);
+        long index = 0;
+
+        while (actualElements.hasNext() && expectedElements.hasNext()) {
+            T actualElement = actualElements.next();
+            T expectedElement = expectedElements.next();
+            if (!Objects.equals(actualElement, expectedElement)) {
+                differences.addDifferenceAt(index, expectedElement, actualElement);
+            }
+            index++;
+        }
+        Sample missing = new Sample("missing at the end", sampleSize);
+        while (expectedElements.hasNext()) {
+            missing.add(expectedElements.next(), 1);
+        }
+        Sample unexpected = new Sample("unexpected at the end", sampleSize);
+        while (actualElements.hasNext()) {
+            unexpected.add(actualElements.next(), 1);
+        }
+        fail("Expected the same elements in the same order", differences, missing, unexpected);
+        return this;
+    }
+
+    @SafeVarargs
+    final LargeCollectionAssert<T> contains(T... values) {
+        // Copied by hand, handing the varargs array on to Arrays.asList would be a heap pollution warning
+        Set<Object> wanted = new HashSet<>();
+        for (T value : values) {
+            wanted.add(value);
+        }
+        return containsAll(wanted);
+    }
+
+    // Every value at least once, crossing them off in one pass over the actual elements
+    LargeCollectionAssert<T> containsAll(Iterable<? extends T> values) {
+        Set<Object> wanted = new HashSet<>();
+        for (T value : values) {
+            wanted.add(value);
+        }
+        return containsAll(wanted);
+    }
+
+    private LargeCollectionAssert<T> containsAll(Set<Object> wanted) {
+        for (T element : actual) {
+            if (wanted.remove(element) && wanted.isEmpty()) {
+                return this;
+            }
+        }
+
+        Sample missing = new Sample("missing", sampleSize);
+        for (Object value : wanted) {
+            missing.add(value, 1);
+        }
+        fail("Expected to contain all values", missing);
+        return this;
+    }
+
+    // Every value exactly once
+    @SafeVarargs
+    final LargeCollectionAssert<T> containsOnlyOnce(T... values) {
+        Map<Object, int[]> counts = new HashMap<>();
+        for (T value : values) {
+            counts.put(value, new int[1]);
+        }
+        for (T element : actual) {
+            int[] count = counts.get(element);
+            if (count != null) {
+                count[0]++;
+            }
+        }
+
+        Sample missing = new Sample("missing", sampleSize);
+        Sample repeated = new Sample("more than once", sampleSize);
+        for (Map.Entry<Object, int[]> entry : counts.entrySet()) {
+            if (entry.getValue()[0] == 0) {
+                missing.add(entry.getKey(), 1);
+            } else if (entry.getValue()[0] > 1) {
+                repeated.add(entry.getKey(), entry.getValue()[0]);
+            }
+        }
+        fail("Expected to contain values only once", missing, repeated);
+        return this;
+    }
+
+    @SafeVarargs
+    final LargeCollectionAssert<T> doesNotContain(T... values) {
+        Set<Object> unwanted = new HashSet<>();
+        for (T value : values) {
+            unwanted.add(value);
+        }
+        Sample found = new Sample("found", sampleSize);
+        for (T element : actual) {
+            if (unwanted.contains(element)) {
+                found.add(element, 1);
+            }
+        }
+        fail("Expected not to contain values", found);
+        return this;
+    }
+
+    LargeCollectionAssert<T> doesNotHaveDuplicates() {
+        Set<Object> seen = new HashSet<>();
+        Sample duplicates = new Sample("duplicate", sampleSize);
+        for (T element : actual) {
+            if (!seen.add(element)) {
+                duplicates.add(element, 1);
+            }
+        }
+        fail("Expected no duplicates", duplicates);
+        return this;
+    }
+
+    private static long size(Iterable<?> iterable) {
+        if (iterable instanceof Collection) {
+            return ((Collection<?>) iterable).size();
+        }
+        long size = 0;
+        for (Object ignored : iterable) {
+            size++;
+        }
+        return size;
+    }
+
+    private static <T> List<T> sorted(Iterable<? extends T> elements, Comparator<? super T> comparator) {
+        List<T> list = new ArrayList<>();
+        for (T element : elements) {
+            list.add(element);
+        }
+        list.sort(comparator);
+        return list;
+    }
+
+    private static void fail(String description, Sample... samples) {
+        StringBuilder message = new StringBuilder(description);
+        boolean failed = false;
+        for (Sample sample : samples) {
+            if (sample.total > 0) {
+                sample.appendTo(message);
+                failed = true;
+            }
+        }
+        if (failed) {
+            throw new AssertionError(message.toString());
+        }
+    }
+
+    /* Map counterpart: keys missing, keys unexpected and keys with another value,
+       found with one lookup per entry on each side.
+     */
+    static final class LargeMapAssert<K, V> {
+
+        private final Map<K, V> actual;
+        private int sampleSize = DEFAULT_SAMPLE_SIZE;
+
+        private LargeMapAssert(Map<K, V> actual) {
+            this.actual = Objects.requireNonNull(actual, "actual");
+        }
+
+        LargeMapAssert<K, V> withSampleSize(int sampleSize) {
+            if (sampleSize < 1) {
+                throw new IllegalArgumentException("Sample size must be positive: " + sampleSize);
+            }
+            this.sampleSize = sampleSize;
+            return this;
+        }
+
+        LargeMapAssert<K, V> containsExactlyEntriesOf(Map<? extends K, ? extends V> expected) {
+            Sample missing = new Sample("missing keys", sampleSize);
+            Sample different = new Sample("different values", sampleSize);
+            for (Map.Entry<? extends K, ? extends V> entry : expected.entrySet()) {
+                K key = entry.getKey();
+                V value = actual.get(key);
+                if (value == null && !actual.containsKey(key)) {
+                    missing.add(key, 1);
+                } else if (!Objects.equals(value, entry.getValue())) {
+                    different.addDifferenceFor(key, entry.getValue(), value);
+                }
+            }
+            Sample unexpected = new Sample("unexpected keys", sampleSize);
+            for (K key : actual.keySet()) {
+                if (!expected.containsKey(key)) {
+                    unexpected.add(key, 1);
+                }
+            }
+            fail("Expected the same entries", missing, different, unexpected);
+            return this;
+        }
+    }
+
+    // Counts everything but keeps only the first few elements for the message, formatting nothing else
+    private static final class Sample {
+
+        private final String name;
+        private final int limit;
+        private final List<String> shown = new ArrayList<>();
+        private long total;
+        private long distinct;
+
+        Sample(String name, int limit) {
+            this.name = name;
+            this.limit = limit;
+        }
+
+        void add(Object element, int times) {
+            total += times;
+            distinct++;
+            if (shown.size() < limit) {
+                shown.add(times == 1 ? String.valueOf(element) : element + " (x" + times + ")");
+            }
+        }
+
+        void addDifferenceAt(long index, Object expected, Object actual) {
+            if (count()) {
+                shown.add("[" + index + "] expected " + expected + " but was " + actual);
+            }
+        }
+
+        void addDifferenceFor(Object key, Object expected, Object actual) {
+            if (count()) {
+                shown.add(key + ": expected " + expected + " but was " + actual);
+            }
+        }
+
+        // Counts one difference, true while it should still be shown
+        private boolean count() {
+            total++;
+            distinct++;
+            return shown.size() < limit;
+        }
+
+        void appendTo(StringBuilder message) {
+            message.append(System.lineSeparator())
+                    .append("  ").append(total).append(' ').append(name);
+            if (distinct > shown.size()) {
+                message.append(", first ").append(shown.size());
+            }
+            message.append(": ").append(shown);
+        }
+    }
+}
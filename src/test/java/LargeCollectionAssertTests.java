@@ -0,0 +1,120 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Large collection assertions")
+public class LargeCollectionAssertTests {
+
+    private static final int SIZE = 1_000_000;
+
+    private static List<Integer> range(int from, int to) {
+        return IntStream.range(from, to).boxed().collect(Collectors.toList());
+    }
+
+    @Nested
+    @DisplayName("Iterables")
+    class Iterables {
+
+        @Test
+        @DisplayName("Should compare a million elements in any order")
+        void shouldCompareInAnyOrder() {
+            List<Integer> actual = range(0, SIZE);
+            List<Integer> expected = new ArrayList<>(actual);
+            Collections.shuffle(expected, new Random(42));
+
+            LargeCollectionAssert.assertThatLarge(actual)
+                    .hasSize(SIZE)
+                    .containsExactlyInAnyOrder(expected)
+                    .containsExactlyInAnyOrder(expected, Comparator.naturalOrder())
+                    .contains(SIZE - 1, 0)
+                    .containsOnlyOnce(7, 8)
+                    .doesNotContain(-1, SIZE)
+                    .doesNotHaveDuplicates();
+        }
+
+        @Test
+        @DisplayName("Should report a sample of the missing and unexpected elements")
+        void shouldReportSample() {
+            List<Integer> actual = range(0, SIZE);
+            List<Integer> expected = range(100, SIZE + 100);
+
+            assertThatThrownBy(() -> LargeCollectionAssert.assertThatLarge(actual)
+                    .withSampleSize(3)
+                    .containsExactlyInAnyOrder(expected))
+                    .isInstanceOf(AssertionError.class)
+                    .hasMessageContaining("100 missing, first 3")
+                    .hasMessageContaining("100 unexpected, first 3");
+        }
+
+        @Test
+        @DisplayName("Should report the first differing indexes in order")
+        void shouldReportFirstDifferences() {
+            List<Integer> actual = range(0, 5);
+            List<Integer> expected = Arrays.asList(0, 1, 9, 3, 4, 5);
+
+            assertThatThrownBy(() -> LargeCollectionAssert.assertThatLarge(actual).containsExactly(expected))
+                    .hasMessageContaining("[2] expected 9 but was 2")
+                    .hasMessageContaining("1 missing at the end: [5]");
+        }
+
+        @Test
+        @DisplayName("Should count repeated elements")
+        void shouldCountRepeatedElements() {
+            List<String> actual = Arrays.asList("a", "b", "b", "c", "c", "c");
+
+            assertThatThrownBy(() -> LargeCollectionAssert.assertThatLarge(actual).containsOnlyOnce("a", "c", "d"))
+                    .hasMessageContaining("1 missing: [d]")
+                    .hasMessageContaining("3 more than once: [c (x3)]");
+            assertThatThrownBy(() -> LargeCollectionAssert.assertThatLarge(actual)
+                    .containsExactlyInAnyOrder(Arrays.asList("a", "b", "c")))
+                    .hasMessageContaining("3 unexpected");
+            assertThatThrownBy(() -> LargeCollectionAssert.assertThatLarge(actual).doesNotHaveDuplicates())
+                    .hasMessageContaining("3 duplicate");
+        }
+    }
+
+    @Nested
+    @DisplayName("Maps")
+    class Maps {
+
+        @Test
+        @DisplayName("Should report missing, different and unexpected entries")
+        void shouldReportEntries() {
+            Map<Integer, String> actual = new HashMap<>();
+            Map<Integer, String> expected = new HashMap<>();
+            for (int i = 0; i < SIZE; i++) {
+                actual.put(i, "value");
+                expected.put(i, "value");
+            }
+            LargeCollectionAssert.assertThatLarge(actual).containsExactlyEntriesOf(expected);
+
+            actual.put(7, "other");
+            actual.put(-1, "value");
+            expected.put(SIZE, "value");
+
+            String message = catchMessage(() -> LargeCollectionAssert.assertThatLarge(actual)
+                    .containsExactlyEntriesOf(expected));
+            assertThat(message)
+                    .contains("1 missing keys: [" + SIZE + "]")
+                    .contains("7: expected value but was other")
+                    .contains("1 unexpected keys: [-1]");
+            assertThat(message.length()).isLessThan(300);
+        }
+
+        private String catchMessage(Runnable assertion) {
+            try {
+                assertion.run();
+            } catch (AssertionError e) {
+                return e.getMessage();
+            }
+            throw new AssertionError("Expected the assertion to fail");
+        }
+    }
+}
@@ -0,0 +1,54 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.converter.ArgumentConversionException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Lazy message conversion")
+public class LazyMessageConverterTests {
+
+    @Test
+    @DisplayName("Should convert on first access only")
+    void shouldConvertOnce() {
+        OperationMetrics metrics = MessageConverter.newMetrics();
+        LazyMessageConverter converter = new LazyMessageConverter(new MessageConverter(null, metrics));
+
+        @SuppressWarnings("unchecked")
+        Lazy<Message> message = (Lazy<Message>) converter.convert("Hello", null);
+        assertThat(message.isResolved()).isFalse();
+        assertThat(message).hasToString("Hello");
+        assertThat(metrics.getLatencyCount()).isZero();
+
+        assertThat(message.get().getMessage()).isEqualTo("Hello");
+        assertThat(message.get()).isSameAs(message.get());
+        assertThat(metrics.getCount(MessageConverter.CONVERTED)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should report invalid sources when accessed")
+    void shouldFailOnAccess() {
+        Lazy<?> message = (Lazy<?>) new LazyMessageConverter().convert(" ", null);
+
+        assertThatThrownBy(message::get).isInstanceOf(ArgumentConversionException.class);
+        assertThat(message.isResolved()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should retry after a failed computation")
+    void shouldRetryAfterFailure() {
+        AtomicInteger calls = new AtomicInteger();
+        Lazy<Integer> value = Lazy.of(() -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("first call fails");
+            }
+            return calls.get();
+        });
+
+        assertThatThrownBy(value::get).isInstanceOf(IllegalStateException.class);
+        assertThat(value.get()).isEqualTo(2);
+        assertThat(value.get()).isEqualTo(2);
+    }
+}
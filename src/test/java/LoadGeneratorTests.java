@@ -0,0 +1,131 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Load generator")
+public class LoadGeneratorTests {
+
+    private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    @DisplayName("Should run the requested rate through the mix and report each interval")
+    void shouldRunMixAndReport() throws InterruptedException {
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+
+        LoadGenerator.Result result = LoadGenerator.builder()
+                .rate(2_000)
+                .duration(500, TimeUnit.MILLISECONDS)
+                .workers(2)
+                .people(100)
+                .mix(LoadGenerator.Operation.CONVERT, 2)
+                .mix(LoadGenerator.Operation.LOOKUP, 1)
+                .mix(LoadGenerator.Operation.UPDATE, 1)
+                .reportEvery(100, TimeUnit.MILLISECONDS, new PrintStream(report, true))
+                .build()
+                .run();
+
+        assertThat(result.completed()).isEqualTo(1_000);
+        for (LoadGenerator.Operation operation : LoadGenerator.Operation.values()) {
+            assertThat(result.latency(operation).getCount()).isPositive();
+            assertThat(result.failures(operation)).isZero();
+        }
+        assertThat(report.toString()).contains("CONVERT", "LOOKUP", "UPDATE", "p99.9=");
+        assertThat(result.summary()).startsWith("1000 requests");
+    }
+
+    @Test
+    @DisplayName("Should report every request in exactly one interval")
+    void shouldReportEveryRequestOnce() throws InterruptedException {
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+
+        LoadGenerator.Result result = LoadGenerator.builder()
+                .rate(20_000)
+                .duration(300, TimeUnit.MILLISECONDS)
+                .workers(4)
+                .mix(LoadGenerator.Operation.LOOKUP, 1)
+                .reportEvery(1, TimeUnit.MILLISECONDS, new PrintStream(report, true))
+                .workload((operation, request) -> {
+                })
+                .build()
+                .run();
+
+        long reported = 0;
+        Matcher counts = Pattern.compile("count=(\\d+)").matcher(report.toString());
+        while (counts.find()) {
+            reported += Long.parseLong(counts.group(1));
+        }
+        assertThat(reported).isEqualTo(result.completed()).isEqualTo(6_000);
+    }
+
+    @Test
+    @DisplayName("Should run the mix against in-process partitions")
+    void shouldRunAgainstPartitions() throws InterruptedException {
+        LoadGenerator.Result result = LoadGenerator.builder()
+                .rate(1_000)
+                .duration(100, TimeUnit.MILLISECONDS)
+                .workers(2)
+                .people(100)
+                .partitions(3)
+                .mix(LoadGenerator.Operation.LOOKUP, 1)
+                .mix(LoadGenerator.Operation.UPDATE, 1)
+                .reportEvery(1, TimeUnit.SECONDS, null)
+                .build()
+                .run();
+
+        assertThat(result.completed()).isEqualTo(100);
+        assertThat(result.failures(LoadGenerator.Operation.LOOKUP)).isZero();
+        assertThat(result.failures(LoadGenerator.Operation.UPDATE)).isZero();
+        assertThatThrownBy(() -> LoadGenerator.builder().partitions(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Should charge a stall to every request queued behind it")
+    void shouldCorrectForCoordinatedOmission() throws InterruptedException {
+        LoadGenerator.Result result = LoadGenerator.builder()
+                .rate(1_000)
+                .duration(500, TimeUnit.MILLISECONDS)
+                .workers(1)
+                .mix(LoadGenerator.Operation.LOOKUP, 1)
+                .reportEvery(1, TimeUnit.SECONDS, null)
+                .workload((operation, request) -> {
+                    if (request == 0) {
+                        Thread.sleep(200);
+                    }
+                })
+                .build()
+                .run();
+
+        LoadGenerator.Operation lookup = LoadGenerator.Operation.LOOKUP;
+        assertThat(result.latency(lookup).valueAtPercentile(90)).isGreaterThan(50 * MILLISECOND);
+        assertThat(result.serviceTime(lookup).valueAtPercentile(90)).isLessThan(50 * MILLISECOND);
+        assertThat(result.serviceTime(lookup).getMax()).isGreaterThanOrEqualTo(200 * MILLISECOND);
+    }
+
+    @Test
+    @DisplayName("Should count failed requests")
+    void shouldCountFailures() throws InterruptedException {
+        LoadGenerator.Result result = LoadGenerator.builder()
+                .rate(1_000)
+                .duration(50, TimeUnit.MILLISECONDS)
+                .mix(LoadGenerator.Operation.UPDATE, 1)
+                .reportEvery(1, TimeUnit.SECONDS, null)
+                .workload((operation, request) -> {
+                    throw new IllegalStateException("Always fails");
+                })
+                .build()
+                .run();
+
+        assertThat(result.failures(LoadGenerator.Operation.UPDATE)).isEqualTo(result.completed()).isEqualTo(50);
+        assertThatThrownBy(() -> LoadGenerator.builder().mix(LoadGenerator.Operation.CONVERT, 0)
+                .mix(LoadGenerator.Operation.LOOKUP, 0).build())
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,168 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Message log")
+public class MessageLogTests {
+
+    private static List<String> messages(int from, int to) {
+        List<String> messages = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            messages.add("Message " + i);
+        }
+        return messages;
+    }
+
+    @Test
+    @DisplayName("Should read messages back by offset across segments")
+    void shouldReadByOffset(@TempDir Path directory) throws IOException {
+        try (MessageLog log = MessageLog.open(directory, 1024, 4)) {
+            assertThat(log.append(messages(0, 200))).isZero();
+            assertThat(log.append("Last")).isEqualTo(200);
+
+            assertThat(log.segmentCount()).isGreaterThan(1);
+            assertThat(log.read(0).getMessage()).isEqualTo("Message 0");
+            assertThat(log.read(123).toMessage().getMessage()).isEqualTo("Message 123");
+            assertThat(log.read(200).getMessage()).isEqualTo("Last");
+            assertThatThrownBy(() -> log.read(201)).isInstanceOf(NoSuchElementException.class);
+        }
+    }
+
+    @Test
+    @DisplayName("Should replay from any offset")
+    void shouldReplayFromOffset(@TempDir Path directory) throws IOException {
+        try (MessageLog log = MessageLog.open(directory, 1024, 4)) {
+            log.append(messages(0, 100));
+            List<String> replayed = new ArrayList<>();
+
+            long end = log.replay(95, view -> replayed.add(view.offset() + ":" + view.getMessage()));
+
+            assertThat(end).isEqualTo(100);
+            assertThat(replayed).containsExactly("95:Message 95", "96:Message 96", "97:Message 97",
+                    "98:Message 98", "99:Message 99");
+        }
+    }
+
+    @Test
+    @DisplayName("Should continue after reopening and drop a torn tail")
+    void shouldRecoverOnOpen(@TempDir Path directory) throws IOException {
+        try (MessageLog log = MessageLog.open(directory, 1024, 4)) {
+            log.append(messages(0, 50));
+        }
+        Path last;
+        try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+            last = files.filter(file -> file.toString().endsWith(".log")).sorted().reduce((a, b) -> b).get();
+        }
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        try (MessageLog log = MessageLog.open(directory, 1024, 4)) {
+            assertThat(log.nextOffset()).isEqualTo(49);
+            assertThat(log.append(Arrays.asList("Again", "And again"))).isEqualTo(49);
+            assertThat(log.read(48).getMessage()).isEqualTo("Message 48");
+            assertThat(log.read(50).getMessage()).isEqualTo("And again");
+        }
+    }
+
+    @Test
+    @DisplayName("Should read each message as soon as it is appended")
+    void shouldReadWhileAppending(@TempDir Path directory) throws IOException {
+        try (MessageLog log = MessageLog.open(directory, 1024, 4)) {
+            for (int i = 0; i < 200; i++) {
+                long offset = log.append("Message " + i);
+                assertThat(log.read(offset).getMessage()).isEqualTo("Message " + i);
+            }
+            assertThat(log.read(0).getMessage()).isEqualTo("Message 0");
+        }
+    }
+
+    @Test
+    @DisplayName("Should recover a log that was not closed from its preallocated segment")
+    void shouldRecoverUnclosedLog(@TempDir Path directory) throws IOException {
+        Path crashed = directory.resolve("crashed");
+        try (MessageLog log = MessageLog.open(directory.resolve("log"), 1024, 4)) {
+            log.append(messages(0, 60));
+            log.append("");
+            Files.createDirectories(crashed);
+            try (java.util.stream.Stream<Path> files = Files.list(directory.resolve("log"))) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.copy(file, crashed.resolve(file.getFileName()));
+                }
+            }
+        }
+
+        try (java.util.stream.Stream<Path> files = Files.list(crashed)) {
+            Path last = files.filter(file -> file.toString().endsWith(".log")).sorted().reduce((x, y) -> y).get();
+            assertThat(Files.size(last)).isEqualTo(1024);
+        }
+
+        try (MessageLog log = MessageLog.open(crashed, 1024, 4)) {
+            assertThat(log.nextOffset()).isEqualTo(61);
+            assertThat(log.read(60).getMessage()).isEmpty();
+            assertThat(log.append("After")).isEqualTo(61);
+            assertThat(log.read(59).getMessage()).isEqualTo("Message 59");
+        }
+    }
+
+    @Test
+    @DisplayName("Should rebuild an index that does not match its segment")
+    void shouldRebuildStaleIndex(@TempDir Path directory) throws IOException {
+        try (MessageLog log = MessageLog.open(directory, 1024, 4)) {
+            log.append(messages(0, 200));
+        }
+        Path first = directory.resolve(String.format("%020d", 0) + ".index");
+        Files.write(first, Arrays.copyOf(Files.readAllBytes(first), 20));
+
+        try (MessageLog log = MessageLog.open(directory, 1024, 4)) {
+            assertThat(log.nextOffset()).isEqualTo(200);
+            for (int i = 0; i < 200; i++) {
+                assertThat(log.read(i).getMessage()).isEqualTo("Message " + i);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should append none of a batch that cannot be written")
+    void shouldAppendAllOrNothing(@TempDir Path directory) throws IOException {
+        try (MessageLog log = MessageLog.open(directory, 1024, 4)) {
+            log.append(messages(0, 10));
+            List<String> batch = messages(10, 100);
+            batch.add(new String(new char[2000]));
+
+            assertThatThrownBy(() -> log.append(batch)).isInstanceOf(IllegalArgumentException.class);
+            assertThat(log.nextOffset()).isEqualTo(10);
+            assertThat(log.append("Next")).isEqualTo(10);
+            assertThat(log.read(10).getMessage()).isEqualTo("Next");
+        }
+    }
+
+    @Test
+    @DisplayName("Should drop the oldest segments over the size limit")
+    void shouldEnforceRetention(@TempDir Path directory) throws IOException {
+        try (MessageLog log = MessageLog.open(directory, 1024, 4)) {
+            log.append(messages(0, 500));
+            int segments = log.segmentCount();
+
+            assertThat(log.enforceRetention(Long.MAX_VALUE, Long.MAX_VALUE)).isZero();
+            assertThat(log.enforceRetention(2048, Long.MAX_VALUE)).isEqualTo(segments - 2);
+            assertThat(log.firstOffset()).isGreaterThan(0);
+            assertThat(log.read(log.firstOffset()).getMessage()).isEqualTo("Message " + log.firstOffset());
+            assertThat(log.enforceRetention(Long.MAX_VALUE, -1)).isEqualTo(1);
+            assertThat(log.segmentCount()).isEqualTo(1);
+        }
+    }
+}
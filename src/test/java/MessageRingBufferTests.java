@@ -0,0 +1,136 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.converter.ArgumentConversionException;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Message ring buffer")
+public class MessageRingBufferTests {
+
+    @Nested
+    @DisplayName("Single producer")
+    class SingleProducer {
+
+        @Test
+        @DisplayName("Should hand over messages in order")
+        void shouldKeepOrder() {
+            MessageRingBuffer buffer = new MessageRingBuffer(4,
+                    MessageRingBuffer.ProducerType.SINGLE, MessageRingBuffer.WaitStrategy.BUSY_SPIN);
+            List<String> received = new ArrayList<>();
+
+            // Wraps around the ring a few times
+            for (int i = 0; i < 10; i++) {
+                buffer.publish("message " + i);
+                assertThat(buffer.poll(slot -> received.add(slot.getMessage()))).isTrue();
+            }
+
+            assertThat(received).containsExactly("message 0", "message 1", "message 2", "message 3",
+                    "message 4", "message 5", "message 6", "message 7", "message 8", "message 9");
+            assertThat(buffer.poll(slot -> received.add(slot.getMessage()))).isFalse();
+        }
+
+        @Test
+        @DisplayName("Should fill slots in place with the converter")
+        void shouldFillSlotWithConverter() {
+            MessageRingBuffer buffer = new MessageRingBuffer(2,
+                    MessageRingBuffer.ProducerType.SINGLE, MessageRingBuffer.WaitStrategy.YIELD);
+            MessageConverter converter = new MessageConverter();
+
+            long sequence = buffer.claim();
+            converter.convertInto("Hello", buffer.slot(sequence));
+            buffer.publish(sequence);
+
+            buffer.take(slot -> assertThat(slot.toMessage().getMessage()).isEqualTo("Hello"));
+        }
+
+        @Test
+        @DisplayName("Should keep working after a failed conversion")
+        void shouldSurviveFailedConversion() {
+            MessageRingBuffer buffer = new MessageRingBuffer(2,
+                    MessageRingBuffer.ProducerType.SINGLE, MessageRingBuffer.WaitStrategy.YIELD);
+            MessageConverter converter = new MessageConverter();
+            List<String> received = new ArrayList<>();
+
+            for (int lap = 0; lap < 3; lap++) {
+                assertThatThrownBy(() -> buffer.publish(slot -> converter.convertInto(" ", slot)))
+                        .isInstanceOf(ArgumentConversionException.class);
+                buffer.publish(slot -> converter.convertInto("Hello " + received.size(), slot));
+
+                buffer.take(slot -> {
+                    assertThat(slot.isFailed()).isTrue();
+                    assertThat(slot.getFailure()).isInstanceOf(ArgumentConversionException.class);
+                });
+                buffer.take(slot -> {
+                    assertThat(slot.isFailed()).isFalse();
+                    received.add(slot.getMessage());
+                });
+            }
+
+            assertThat(received).containsExactly("Hello 0", "Hello 1", "Hello 2");
+            assertThat(buffer.poll(slot -> received.add(slot.getMessage()))).isFalse();
+        }
+
+        @Test
+        @DisplayName("Should reject capacity that is not a power of two")
+        void shouldRejectCapacity() {
+            assertThatThrownBy(() -> new MessageRingBuffer(3,
+                    MessageRingBuffer.ProducerType.SINGLE, MessageRingBuffer.WaitStrategy.PARK))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("Multiple producers")
+    class MultipleProducers {
+
+        private static final int PRODUCERS = 4;
+        private static final int MESSAGES_PER_PRODUCER = 1_000;
+
+        @ParameterizedTest(name = "{index} => waitStrategy={0}")
+        @EnumSource(MessageRingBuffer.WaitStrategy.class)
+        @DisplayName("Should deliver every message exactly once")
+        void shouldDeliverEveryMessage(MessageRingBuffer.WaitStrategy waitStrategy) throws InterruptedException {
+            MessageRingBuffer buffer = new MessageRingBuffer(64, MessageRingBuffer.ProducerType.MULTI, waitStrategy);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> producers = new ArrayList<>();
+
+            for (int p = 0; p < PRODUCERS; p++) {
+                String prefix = p + ":";
+                Thread producer = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int i = 0; i < MESSAGES_PER_PRODUCER; i++) {
+                        buffer.publish(prefix + i);
+                    }
+                });
+                producer.start();
+                producers.add(producer);
+            }
+
+            Set<String> received = new HashSet<>();
+            start.countDown();
+            for (int i = 0; i < PRODUCERS * MESSAGES_PER_PRODUCER; i++) {
+                buffer.take(slot -> received.add(slot.getMessage()));
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+
+            assertThat(received).hasSize(PRODUCERS * MESSAGES_PER_PRODUCER);
+        }
+    }
+}
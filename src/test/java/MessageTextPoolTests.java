@@ -0,0 +1,52 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Message text pool")
+public class MessageTextPoolTests {
+
+    @Test
+    @DisplayName("Equal texts should share one String")
+    void shouldShareEqualTexts() {
+        MessageTextPool pool = new MessageTextPool(16);
+        MessageConverter converter = new MessageConverter(pool);
+
+        Message first = (Message) converter.convert(new String("Hello"), null);
+        Message second = (Message) converter.convert(new String("Hello"), null);
+
+        assertThat(second.getMessage()).isSameAs(first.getMessage());
+        assertThat(pool.stats().getHits()).isEqualTo(1);
+        assertThat(pool.stats().getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Converter without a pool should keep separate copies")
+    void shouldNotPoolByDefault() {
+        MessageConverter converter = new MessageConverter();
+
+        Message first = (Message) converter.convert(new String("Hello"), null);
+        Message second = (Message) converter.convert(new String("Hello"), null);
+
+        assertThat(second.getMessage()).isNotSameAs(first.getMessage());
+    }
+
+    @Test
+    @DisplayName("Full pool should return texts unpooled")
+    void shouldRejectWhenFull() {
+        MessageTextPool pool = new MessageTextPool(1);
+        String hello = pool.intern("Hello");
+        String world = new String("World");
+
+        assertThat(pool.intern(world)).isSameAs(world);
+        assertThat(pool.stats().getRejected()).isEqualTo(1);
+        assertThat(pool.intern(new String("Hello"))).isSameAs(hello);
+    }
+
+    @Test
+    @DisplayName("Pool size should be positive")
+    void shouldRejectSize() {
+        assertThatThrownBy(() -> new MessageTextPool(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,84 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.converter.ArgumentConversionException;
+
+import javax.management.MBeanServer;
+import java.lang.management.ManagementFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Operation metrics")
+public class OperationMetricsTests {
+
+    @Nested
+    @DisplayName("Latency histogram")
+    class Histogram {
+
+        @Test
+        @DisplayName("Should report percentiles within bucket precision")
+        void shouldReportPercentiles() {
+            LatencyHistogram histogram = new LatencyHistogram();
+            for (long value = 1; value <= 10_000; value++) {
+                histogram.record(value);
+            }
+
+            assertThat(histogram.getCount()).isEqualTo(10_000);
+            assertThat(histogram.getMax()).isEqualTo(10_000);
+            assertThat(histogram.valueAtPercentile(50.0)).isBetween(4_850L, 5_150L);
+            assertThat(histogram.valueAtPercentile(99.0)).isBetween(9_600L, 10_000L);
+            assertThat(histogram.valueAtPercentile(100.0)).isEqualTo(10_000);
+        }
+
+        @Test
+        @DisplayName("Bucket bounds should contain their values")
+        void bucketsShouldContainValues() {
+            for (long value : new long[]{0, 31, 32, 33, 1_000, 123_456_789, Long.MAX_VALUE}) {
+                int index = LatencyHistogram.bucketIndex(value);
+                assertThat(value).isBetween(LatencyHistogram.lowestEquivalentValue(index),
+                        LatencyHistogram.highestEquivalentValue(index));
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Message converter metrics")
+    class ConverterMetrics {
+
+        @Test
+        @DisplayName("Should count conversions and rejections")
+        void shouldCountOutcomes() {
+            OperationMetrics metrics = MessageConverter.newMetrics();
+            MessageConverter converter = new MessageConverter(null, metrics);
+
+            converter.convert("Hello", null);
+            assertThatThrownBy(() -> converter.convert(null, null)).isInstanceOf(ArgumentConversionException.class);
+            assertThatThrownBy(() -> converter.convert(1, null)).isInstanceOf(ArgumentConversionException.class);
+            assertThatThrownBy(() -> converter.convert(" ", null)).isInstanceOf(ArgumentConversionException.class);
+
+            assertThat(metrics.getCount(MessageConverter.CONVERTED)).isEqualTo(1);
+            assertThat(metrics.getCount(MessageConverter.NULL_SOURCE)).isEqualTo(1);
+            assertThat(metrics.getCount(MessageConverter.NOT_STRING)).isEqualTo(1);
+            assertThat(metrics.getCount(MessageConverter.BLANK)).isEqualTo(1);
+            assertThat(metrics.getLatencyCount()).isEqualTo(4);
+            assertThat(metrics.dump()).startsWith("MessageConverter: converted=1 nullSource=1 notString=1 blank=1");
+        }
+
+        @Test
+        @DisplayName("Should be visible through JMX")
+        void shouldRegisterMBean() throws Exception {
+            OperationMetrics metrics = MessageConverter.newMetrics();
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+            metrics.register();
+            try {
+                new MessageConverter(null, metrics).convert("Hello", null);
+                assertThat(server.getAttribute(metrics.objectName(), "LatencyCount")).isEqualTo(1L);
+            } finally {
+                metrics.unregister();
+            }
+            assertThat(server.isRegistered(metrics.objectName())).isFalse();
+        }
+    }
+}
@@ -43,7 +43,9 @@ public class ParameterizedTestExamples {
        One String object must contain all params for one method invocation
        and different methods are separated with a comma.
        Values must be in same order as in the test method.
+       @CacheableTest does not rerun invocations that already passed with exactly the same inputs.
      */
+    @CacheableTest
     @DisplayName("Should calculate the correct sum from csv file")
     @ParameterizedTest(name = "{index} => a={0}, b={1}, c={2}")
     @CsvFileSource(resources = "/test-data.csv")
@@ -54,6 +56,7 @@ public class ParameterizedTestExamples {
     /* To use Factory Method we need to have a static class for our test.
        It must return Stream, Iterable, Iterator or an array of Arguments.
      */
+    @CacheableTest
     @DisplayName("Should calculate the correct sum from method source")
     @ParameterizedTest(name = "{index} => a={0}, b={1}, c={2}")
     @MethodSource("sumProvider") // Using stream as a method source
@@ -72,6 +75,7 @@ public class ParameterizedTestExamples {
     /* Another example of Method Parameters by using Argument Source.
        Arguments object must contain all method parameters for single test.
      */
+    @CacheableTest
     @DisplayName("Should calculate the correct sum from argument source")
     @ParameterizedTest(name = "{index} => a={0}, b={1}, c={2}")
     @ArgumentsSource(CustomArgumentProvider.class)
@@ -0,0 +1,237 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Partitioned person store")
+public class PartitionedPersonStoreTests {
+
+    private static final int PARTITIONS = 3;
+    private static final int PEOPLE = 3_000;
+
+    private static Person numbered(long id) {
+        return People.person("First" + id, id % 7 == 0 ? null : "Last" + id, (int) (id % 100));
+    }
+
+    // The same checks for both modes
+    private static void shouldStoreRouteAndQuery(PartitionedPersonStore store) throws IOException {
+        for (long id = 0; id < PEOPLE; id++) {
+            assertThat(store.put(id, numbered(id))).isTrue();
+        }
+        assertThat(store.put(5, numbered(500))).isFalse();
+        assertThat(store.size()).isEqualTo(PEOPLE);
+
+        assertThat(store.get(5).getFirstName()).isEqualTo("First500");
+        assertThat(store.get(14).getLastName()).isNull();
+        assertThat(store.get(-1)).isNull();
+
+        long[] ids = new long[1_000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i * 4L;
+        }
+        Map<Long, Person> found = store.getAll(ids);
+        assertThat(found).hasSize(750);
+        assertThat(found.get(2_996L).getAge()).isEqualTo(96);
+
+        assertThat(store.remove(10)).isTrue();
+        assertThat(store.remove(10)).isFalse();
+        Map<Long, Person> teenagers = store.ageBetween(10, 19);
+        assertThat(teenagers).hasSize(299).doesNotContainKey(10L);
+        assertThat(teenagers.values()).allSatisfy(person -> assertThat(person.getAge()).isBetween(10, 19));
+    }
+
+    @Test
+    @DisplayName("Should spread ids evenly over the partitions")
+    void shouldSpreadIds() throws IOException {
+        try (PartitionedPersonStore store = PartitionedPersonStore.inProcess(PARTITIONS)) {
+            int[] counts = new int[PARTITIONS];
+            for (long id = 0; id < 30_000; id++) {
+                counts[store.partitionOf(id)]++;
+            }
+            for (int count : counts) {
+                assertThat(count).isBetween(9_500, 10_500);
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("In process")
+    class InProcess {
+
+        @Test
+        @DisplayName("Should store, route and query people without networking")
+        void shouldStoreRouteAndQuery() throws IOException {
+            try (PartitionedPersonStore store = PartitionedPersonStore.inProcess(PARTITIONS)) {
+                PartitionedPersonStoreTests.shouldStoreRouteAndQuery(store);
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Over loopback")
+    class OverLoopback {
+
+        private final List<PersonStoreNode> nodes = new ArrayList<>();
+        private final List<InetSocketAddress> addresses = new ArrayList<>();
+
+        @BeforeEach
+        void startNodes() throws IOException {
+            for (int i = 0; i < PARTITIONS; i++) {
+                PersonStoreNode node = PersonStoreNode.start(new PersonStore(), 0);
+                nodes.add(node);
+                addresses.add(node.address());
+            }
+        }
+
+        @AfterEach
+        void stopNodes() throws IOException {
+            for (PersonStoreNode node : nodes) {
+                node.close();
+            }
+        }
+
+        @Test
+        @DisplayName("Should store, route and query people on the owning nodes")
+        void shouldStoreRouteAndQuery() throws IOException {
+            try (PartitionedPersonStore store = PartitionedPersonStore.connect(addresses)) {
+                PartitionedPersonStoreTests.shouldStoreRouteAndQuery(store);
+
+                for (int i = 0; i < PARTITIONS; i++) {
+                    assertThat(nodes.get(i).store().size()).isBetween(900, 1_100);
+                }
+                assertThat(nodes.get(store.partitionOf(42)).store().get(42).getFirstName()).isEqualTo("First42");
+            }
+        }
+
+        @Test
+        @DisplayName("Should serve several clients at once")
+        void shouldServeSeveralClients() throws IOException {
+            try (PartitionedPersonStore first = PartitionedPersonStore.connect(addresses);
+                 PartitionedPersonStore second = PartitionedPersonStore.connect(addresses)) {
+                first.put(1, numbered(1));
+                second.put(2, numbered(2));
+
+                assertThat(first.getAll(1, 2)).containsOnlyKeys(1L, 2L);
+                assertThat(second.ageBetween(0, 99)).hasSize(2);
+            }
+        }
+
+        @Test
+        @DisplayName("Should stream large age range answers in chunks")
+        void shouldStreamLargeAnswers() throws IOException {
+            PersonStore partition = nodes.get(0).store();
+            String padding = new String(new char[100]).replace('\0', 'x');
+            int people = 3 * PersonStoreNode.CHUNK_SIZE / 100;
+            for (long id = 0; id < people; id++) {
+                partition.put(id, People.person("First" + id + padding, "Last" + id, (int) (id % 100)));
+            }
+
+            try (PartitionedPersonStore store = PartitionedPersonStore.connect(addresses.subList(0, 1))) {
+                Map<Long, Person> everyone = store.ageBetween(0, 99);
+
+                assertThat(everyone).hasSize(people);
+                assertThat(everyone.get(people - 1L).getLastName()).isEqualTo("Last" + (people - 1));
+                assertThat(store.size()).isEqualTo(people);
+            }
+        }
+
+        @Test
+        @DisplayName("Should serve concurrent callers of one client over pooled connections")
+        void shouldServeConcurrentCallers() throws Exception {
+            int callers = 8;
+            int perCaller = 500;
+            try (PartitionedPersonStore store = PartitionedPersonStore.connect(addresses, 2)) {
+                ExecutorService executor = Executors.newFixedThreadPool(callers);
+                List<Future<?>> results = new ArrayList<>();
+                for (int c = 0; c < callers; c++) {
+                    long first = c * (long) perCaller;
+                    results.add(executor.submit(() -> {
+                        for (long id = first; id < first + perCaller; id++) {
+                            assertThat(store.put(id, numbered(id))).isTrue();
+                            assertThat(store.get(id).getFirstName()).isEqualTo("First" + id);
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> result : results) {
+                    result.get();
+                }
+                executor.shutdown();
+
+                assertThat(store.size()).isEqualTo(callers * perCaller);
+                assertThat(store.ageBetween(0, 99)).hasSize(callers * perCaller);
+            }
+        }
+
+        @Test
+        @DisplayName("Should hold back further chunks until a slow client reads")
+        void shouldWaitForSlowReaders() throws Exception {
+            PersonStore partition = nodes.get(0).store();
+            String padding = new String(new char[100]).replace('\0', 'x');
+            int people = 10 * PersonStoreNode.CHUNK_SIZE / 100;
+            for (long id = 0; id < people; id++) {
+                Person person = numbered(id);
+                person.setFirstName(person.getFirstName() + padding);
+                partition.put(id, person);
+            }
+
+            try (SocketChannel channel = SocketChannel.open(addresses.get(0))) {
+                ByteBuffer request = ByteBuffer.allocate(9);
+                request.put(PersonStoreProtocol.AGE_BETWEEN).putInt(0).putInt(99).flip();
+                PersonStoreProtocol.write(channel, request);
+                // Long enough for the worker to fill the socket buffers and wait
+                Thread.sleep(200);
+
+                int received = 0;
+                boolean more;
+                do {
+                    ByteBuffer response = PersonStoreProtocol.checkStatus(PersonStoreProtocol.read(channel));
+                    more = response.get() == 1;
+                    received += response.getInt();
+                } while (more);
+                assertThat(received).isEqualTo(people);
+            }
+        }
+
+        @Test
+        @DisplayName("Should reconnect after a request failed")
+        void shouldReconnect() throws IOException {
+            try (PartitionedPersonStore store = PartitionedPersonStore.connect(addresses)) {
+                int partition = store.partitionOf(7);
+                int port = nodes.get(partition).address().getPort();
+                nodes.get(partition).close();
+                assertThatThrownBy(() -> store.get(7)).isInstanceOf(IOException.class);
+
+                nodes.set(partition, PersonStoreNode.start(new PersonStore(), port));
+                assertThat(store.put(7, numbered(7))).isTrue();
+                assertThat(store.get(7).getFirstName()).isEqualTo("First7");
+            }
+        }
+
+        @Test
+        @DisplayName("Should fail with an IOException when a node is gone")
+        void shouldFailWhenNodeIsGone() throws IOException {
+            try (PartitionedPersonStore store = PartitionedPersonStore.connect(addresses)) {
+                nodes.get(store.partitionOf(7)).close();
+
+                assertThatThrownBy(() -> store.get(7)).isInstanceOf(IOException.class);
+                assertThatThrownBy(() -> store.ageBetween(0, 99)).isInstanceOf(IOException.class);
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+/* Person fixtures shared by the tests, so every test class builds them the same way.
+   Each call returns a new Person, which tests are free to change.
+ */
+final class People {
+
+    private People() {
+    }
+
+    static Person person(String firstName, String lastName, Integer age) {
+        Person person = new Person();
+        person.setFirstName(firstName);
+        person.setLastName(lastName);
+        person.setAge(age);
+        return person;
+    }
+
+    static Person person(String firstName, String lastName) {
+        return person(firstName, lastName, null);
+    }
+
+    // Distinguishable by age alone, for collections where only identity and order matter
+    static Person aged(int age) {
+        return person("Test" + age, null, age);
+    }
+}
@@ -0,0 +1,108 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("External sort of people")
+public class PersonExternalSorterTests {
+
+    private static final Comparator<Person> BY_LAST_NAME_THEN_AGE =
+            Comparator.comparing(Person::getLastName).thenComparing(Person::getAge);
+
+    @TempDir
+    Path directory;
+
+    private static List<Person> people(int count) {
+        Random random = new Random(7);
+        List<Person> people = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            people.add(People.person("Person" + i, "Tester" + random.nextInt(500), random.nextInt(100)));
+        }
+        return people;
+    }
+
+    @Test
+    @DisplayName("Should sort through spilled runs and merge passes")
+    void shouldSortThroughRuns() throws Exception {
+        List<Person> people = people(10_000);
+        List<Person> sorted = new ArrayList<>();
+
+        new PersonExternalSorter(directory, 300, 4).sort(people.iterator(), BY_LAST_NAME_THEN_AGE, sorted::add);
+
+        assertThat(sorted).hasSize(people.size());
+        assertThat(sorted).isSortedAccordingTo(BY_LAST_NAME_THEN_AGE);
+        assertThat(sorted.stream().map(Person::getFirstName).collect(Collectors.toSet()))
+                .hasSize(people.size());
+        try (Stream<Path> leftovers = Files.list(directory)) {
+            assertThat(leftovers).isEmpty();
+        }
+    }
+
+    @Test
+    @DisplayName("Should delete every run when a merge pass fails")
+    void shouldCleanUpFailedMerge() throws Exception {
+        Iterator<Person> input = people(3_000).iterator();
+        boolean[] inputDone = {false};
+        Iterator<Person> watched = new Iterator<Person>() {
+            @Override
+            public boolean hasNext() {
+                inputDone[0] = !input.hasNext();
+                return !inputDone[0];
+            }
+
+            @Override
+            public Person next() {
+                return input.next();
+            }
+        };
+        // Every run is full, so the first comparison after the input ends is in a merge pass
+        Comparator<Person> failingInMerge = (a, b) -> {
+            if (inputDone[0]) {
+                throw new IllegalStateException("Merge failed");
+            }
+            return BY_LAST_NAME_THEN_AGE.compare(a, b);
+        };
+
+        assertThatThrownBy(() -> new PersonExternalSorter(directory, 300, 4)
+                .sort(watched, failingInMerge, person -> { }))
+                .hasMessage("Merge failed");
+        try (Stream<Path> leftovers = Files.list(directory)) {
+            assertThat(leftovers).isEmpty();
+        }
+    }
+
+    @Test
+    @DisplayName("Should sort in memory when everything fits")
+    void shouldSortInMemory() throws Exception {
+        List<Person> sorted = new ArrayList<>();
+
+        new PersonExternalSorter(directory, 1_000, 4).sort(people(100).iterator(), BY_LAST_NAME_THEN_AGE, sorted::add);
+
+        assertThat(sorted).hasSize(100).isSortedAccordingTo(BY_LAST_NAME_THEN_AGE);
+    }
+
+    @Test
+    @DisplayName("Should find the oldest people without sorting everyone")
+    void shouldFindTopK() {
+        List<Person> people = people(5_000);
+        Comparator<Person> oldestFirst = Comparator.comparing(Person::getAge).reversed();
+
+        List<Person> oldest = PersonExternalSorter.topK(people.iterator(), oldestFirst, 10);
+
+        List<Integer> expected = people.stream().map(Person::getAge)
+                .sorted(Comparator.reverseOrder()).limit(10).collect(Collectors.toList());
+        assertThat(oldest).extracting(Person::getAge).containsExactlyElementsOf(expected);
+    }
+}
@@ -0,0 +1,102 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Person map")
+public class PersonMapTests {
+
+    private static Map<Long, Person> toHashMap(PersonMap map) {
+        Map<Long, Person> copy = new HashMap<>();
+        map.forEach(copy::put);
+        return copy;
+    }
+
+    @Test
+    @DisplayName("Should keep every version unchanged")
+    void shouldKeepVersionsUnchanged() {
+        PersonMap one = PersonMap.EMPTY.with(1, People.aged(1));
+        PersonMap two = one.with(2, People.aged(2));
+        PersonMap replaced = two.with(1, People.aged(10));
+        PersonMap removed = replaced.without(2);
+
+        assertThat(one.size()).isEqualTo(1);
+        assertThat(two.get(1).getAge()).isEqualTo(1);
+        assertThat(replaced.get(1).getAge()).isEqualTo(10);
+        assertThat(replaced.size()).isEqualTo(2);
+        assertThat(removed.containsKey(2)).isFalse();
+        assertThat(two.containsKey(2)).isTrue();
+        assertThat(removed.without(3)).isSameAs(removed);
+        assertThat(removed.without(1)).isSameAs(PersonMap.EMPTY);
+    }
+
+    @Test
+    @DisplayName("Should match a hash map through random puts and removals")
+    void shouldMatchHashMap() {
+        Random random = new Random(11);
+        Map<Long, Person> expected = new HashMap<>();
+        PersonMap map = PersonMap.EMPTY;
+
+        for (int i = 0; i < 50_000; i++) {
+            long id = random.nextInt(20_000) - 5_000L;
+            if (random.nextInt(3) == 0) {
+                expected.remove(id);
+                map = map.without(id);
+            } else {
+                Person person = FrozenPerson.of(People.aged(i));
+                expected.put(id, person);
+                map = map.with(id, person);
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(expected.size());
+        assertThat(toHashMap(map)).isEqualTo(expected);
+        for (long id = -5_000; id < 15_000; id++) {
+            assertThat(map.get(id)).isSameAs(expected.get(id));
+        }
+    }
+
+    @Test
+    @DisplayName("Should bulk load and remove with a builder")
+    void shouldBulkLoadWithBuilder() {
+        PersonMap base = PersonMap.EMPTY.with(Long.MIN_VALUE, People.aged(0));
+        PersonMap.Builder builder = base.toBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            builder.put(i, People.aged(i));
+        }
+        for (int i = 0; i < 100_000; i += 2) {
+            builder.remove(i);
+        }
+        builder.remove(-1).put(Long.MAX_VALUE, People.aged(-1));
+        PersonMap built = builder.build();
+
+        assertThat(base.size()).isEqualTo(1);
+        assertThat(base.containsKey(7)).isFalse();
+        assertThat(built.size()).isEqualTo(50_002);
+        assertThat(built.get(7).getAge()).isEqualTo(7);
+        assertThat(built.get(8)).isNull();
+        assertThat(built.get(Long.MIN_VALUE).getAge()).isZero();
+        assertThat(built.with(8, People.aged(8)).get(8).getAge()).isEqualTo(8);
+        assertThat(built.get(8)).isNull();
+        assertThatThrownBy(() -> builder.put(1, People.aged(1))).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("Should keep stored people out of reach of callers")
+    void shouldFreezePeople() {
+        Person added = People.aged(1);
+        PersonMap map = PersonMap.EMPTY.with(1, added);
+        added.setAge(2);
+
+        assertThat(map.get(1).getAge()).isEqualTo(1);
+        assertThat(map.with(1, map.get(1))).isSameAs(map);
+        assertThatThrownBy(() -> map.get(1).setAge(3)).isInstanceOf(UnsupportedOperationException.class);
+        map.forEach((id, person) -> assertThatThrownBy(() -> person.setFirstName("Changed"))
+                .isInstanceOf(UnsupportedOperationException.class));
+    }
+}
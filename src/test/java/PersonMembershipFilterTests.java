@@ -0,0 +1,110 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Person membership filter")
+public class PersonMembershipFilterTests {
+
+    @Test
+    @DisplayName("Should never report a person on the roster as absent")
+    void shouldHaveNoFalseNegatives() throws InterruptedException {
+        PersonMembershipFilter filter = new PersonMembershipFilter(20_000, 0.01);
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t * 5_000;
+            Thread writer = new Thread(() -> {
+                for (int i = offset; i < offset + 5_000; i++) {
+                    filter.put(People.person("Test" + i, "Person", i % 100));
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        for (int i = 0; i < 20_000; i++) {
+            assertThat(filter.mightContain(People.person("Test" + i, "Person", i % 100))).isTrue();
+        }
+        assertThat(filter.size()).isEqualTo(20_000);
+    }
+
+    @Test
+    @DisplayName("Should keep false positives near the configured rate")
+    void shouldRespectFalsePositiveRate() {
+        PersonMembershipFilter filter = new PersonMembershipFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(People.person("Dev" + i, "Tester", 18));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain(People.person("Prod" + i, "Tester", 18))) {
+                falsePositives++;
+            }
+        }
+
+        assertThat(falsePositives).isLessThan(200);
+        assertThat(filter.expectedFalsePositiveRate()).isBetween(0.005, 0.02);
+        assertThat(filter.mightContain(People.person("Dev1", "Tester", 19))).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should stay within the memory budget")
+    void shouldRespectMemoryBudget() {
+        PersonMembershipFilter filter = new PersonMembershipFilter(1_000_000, 0.001, 64 * 1024);
+
+        assertThat(filter.byteSize()).isLessThanOrEqualTo(64 * 1024);
+        assertThatThrownBy(() -> new PersonMembershipFilter(10, 1.5)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Should forget removed people and keep the others")
+    void shouldRemovePeople() {
+        PersonMembershipFilter filter = new PersonMembershipFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(People.person("Dev" + i, "Tester", 18));
+        }
+        for (int i = 0; i < 10_000; i += 2) {
+            filter.remove(People.person("Dev" + i, "Tester", 18));
+        }
+
+        int stillReported = 0;
+        for (int i = 0; i < 10_000; i++) {
+            boolean present = filter.mightContain(People.person("Dev" + i, "Tester", 18));
+            if (i % 2 == 1) {
+                assertThat(present).isTrue();
+            } else if (present) {
+                stillReported++;
+            }
+        }
+        assertThat(stillReported).isLessThan(100);
+        assertThat(filter.size()).isEqualTo(5_000);
+    }
+
+    @Test
+    @DisplayName("Should answer store membership through the filter")
+    void shouldTrackStoreMembership() {
+        PersonStore store = new PersonStore();
+        long dev = store.add(People.person("Dev", "Tester", 18));
+        store.enableMembershipFilter(1_000, 0.01);
+        long prod = store.add(People.person("Prod", "Tester", 30));
+
+        assertThat(store.containsPerson(People.person("Dev", "Tester", 18))).isTrue();
+        assertThat(store.containsPerson(People.person("Prod", "Tester", 30))).isTrue();
+        assertThat(store.containsPerson(People.person("Test", "Person", 22))).isFalse();
+
+        store.update(dev, People.person("Dev", "Tester", 19));
+        store.remove(prod);
+
+        assertThat(store.containsPerson(People.person("Dev", "Tester", 18))).isFalse();
+        assertThat(store.containsPerson(People.person("Dev", "Tester", 19))).isTrue();
+        assertThat(store.containsPerson(People.person("Prod", "Tester", 30))).isFalse();
+    }
+}
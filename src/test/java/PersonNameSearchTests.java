@@ -0,0 +1,125 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Person name search")
+public class PersonNameSearchTests {
+
+    private PersonNameSearch search;
+
+    @BeforeEach
+    void createIndex() {
+        search = new PersonNameSearch();
+        search.add(1, People.person("Test", "Person"));
+        search.add(2, People.person("Dev", "Tester"));
+        search.add(3, People.person("Prod", "Tester"));
+        search.add(4, People.person("Testa", "Rossa"));
+        search.add(5, People.person("Anna-Liisa", "Testerson"));
+    }
+
+    @Test
+    @DisplayName("Should find misspelled names closest first")
+    void shouldFindMisspelledNames() {
+        List<PersonNameSearch.Match> matches = search.search("Teste", 1, 10);
+
+        // "tester" shares five trigrams with the query, "test" and "testa" four
+        assertThat(matches).extracting(PersonNameSearch.Match::getId).containsExactly(2L, 3L, 1L, 4L);
+        assertThat(matches).extracting(PersonNameSearch.Match::getDistance).containsExactly(1, 1, 1, 1);
+        assertThat(matches.get(0).getMatchedName()).isEqualTo("tester");
+        assertThat(search.search("Tster", 1, 10)).extracting(PersonNameSearch.Match::getId)
+                .containsExactly(2L, 3L);
+        assertThat(search.search("Teste", 0, 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should find people matching every token of the query")
+    void shouldFindEveryToken() {
+        search.add(6, People.person("Anna", "Person"));
+
+        assertThat(search.search("Anna-Liisa", 0, 10)).extracting(PersonNameSearch.Match::getId).containsExactly(5L);
+        assertThat(search.search("Test Person", 0, 10)).extracting(PersonNameSearch.Match::getMatchedName)
+                .containsExactly("test person");
+        assertThat(search.search("Tset Persn", 2, 10)).extracting(PersonNameSearch.Match::getId)
+                .containsExactly(1L);
+        assertThat(search.search("Persn", 1, 10)).extracting(PersonNameSearch.Match::getId).containsExactly(1L, 6L);
+        assertThat(search.search("Anna Persson", 1, 10)).extracting(PersonNameSearch.Match::getDistance)
+                .containsExactly(1);
+        assertThat(search.search("Test Tester", 0, 10)).isEmpty();
+        assertThat(search.search("Anna Person", 0, 1)).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Should find names by prefix in alphabetical order")
+    void shouldFindByPrefix() {
+        assertThat(search.prefix("test", 10)).extracting(PersonNameSearch.Match::getMatchedName)
+                .containsExactly("test", "testa", "tester", "tester", "testerson");
+        assertThat(search.prefix("test", 10)).extracting(PersonNameSearch.Match::getId)
+                .containsExactly(1L, 4L, 2L, 3L, 5L);
+        assertThat(search.prefix("liisa", 10)).extracting(PersonNameSearch.Match::getId).containsExactly(5L);
+        assertThat(search.prefix("test", 2)).hasSize(2);
+        assertThat(search.prefix("x", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should forget removed and replaced names")
+    void shouldForgetRemovedNames() {
+        assertThat(search.remove(2)).isTrue();
+        assertThat(search.remove(2)).isFalse();
+        search.add(3, People.person("Prod", "Owner"));
+
+        assertThat(search.size()).isEqualTo(4);
+        assertThat(search.search("tester", 0, 10)).isEmpty();
+        assertThat(search.prefix("own", 10)).extracting(PersonNameSearch.Match::getId).containsExactly(3L);
+    }
+
+    @Test
+    @DisplayName("Should keep working after compacting many removals")
+    void shouldCompact() {
+        for (long id = 100; id < 5_100; id++) {
+            search.add(id, People.person("Name" + id, "Temporary"));
+        }
+        for (long id = 100; id < 5_100; id++) {
+            search.remove(id);
+        }
+
+        assertThat(search.size()).isEqualTo(5);
+        assertThat(search.prefix("", 100)).hasSize(5);
+        assertThat(search.search("Persson", 1, 10)).extracting(PersonNameSearch.Match::getId).containsExactly(1L);
+    }
+
+    @Test
+    @DisplayName("Should find names that repeat a trigram")
+    void shouldFindRepeatedTrigrams() {
+        search.add(6, People.person("Barbara", "Anana"));
+
+        // "barbara" repeats "bar" and "anana" repeats "ana", so they share fewer distinct trigrams than they have
+        assertThat(search.search("Barbara", 0, 10)).extracting(PersonNameSearch.Match::getId).containsExactly(6L);
+        assertThat(search.search("Anana", 0, 10)).extracting(PersonNameSearch.Match::getId).containsExactly(6L);
+        assertThat(search.search("Barbra", 1, 10)).extracting(PersonNameSearch.Match::getId).containsExactly(6L);
+    }
+
+    @Test
+    @DisplayName("Should find short names within the distance")
+    void shouldFindShortNames() {
+        search.add(6, People.person("Al", null));
+        search.add(7, People.person("Ng", null));
+
+        assertThat(search.search("Dav", 1, 10)).extracting(PersonNameSearch.Match::getId).containsExactly(2L);
+        assertThat(search.search("Li", 2, 10)).extracting(PersonNameSearch.Match::getId).containsExactly(6L, 7L);
+        assertThat(search.search("Tes", 1, 10)).extracting(PersonNameSearch.Match::getMatchedName)
+                .containsExactly("test");
+    }
+
+    @ParameterizedTest(name = "{0} -> {1} = {2}")
+    @CsvSource({"kitten, sitting, 3", "tester, teste, 1", "same, same, 0", "abc, abcdefgh, 4"})
+    @DisplayName("Should bound the edit distance")
+    void shouldBoundEditDistance(String a, String b, int expected) {
+        assertThat(PersonNameSearch.editDistance(a, b, 3)).isEqualTo(expected);
+    }
+}
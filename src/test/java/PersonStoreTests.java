@@ -0,0 +1,444 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Person store")
+public class PersonStoreTests {
+
+    @Nested
+    @DisplayName("In memory")
+    class InMemory {
+
+        private PersonStore store;
+
+        @BeforeEach
+        void createStore() {
+            store = new PersonStore();
+        }
+
+        @Test
+        @DisplayName("Should add, update and remove people")
+        void shouldAddUpdateAndRemove() {
+            long id = store.add(People.person("Test", "Person", 22));
+
+            assertThat(store.get(id).getFirstName()).isEqualTo("Test");
+            assertThat(store.update(id, People.person("Dev", "Tester", 18))).isTrue();
+            assertThat(store.get(id).getFirstName()).isEqualTo("Dev");
+            assertThat(store.remove(id)).isTrue();
+            assertThat(store.get(id)).isNull();
+            assertThat(store.update(id, People.person("Prod", "Tester", 18))).isFalse();
+            assertThat(store.size()).isZero();
+        }
+
+        @Test
+        @DisplayName("Should not share stored people with callers")
+        void shouldCopyPeople() {
+            Person original = People.person("Test", "Person", 22);
+            long id = store.add(original);
+
+            original.setAge(99);
+            store.get(id).setAge(99);
+
+            assertThat(store.get(id).getAge()).isEqualTo(22);
+            store.scan((key, person) -> assertThatThrownBy(() -> person.setAge(99))
+                    .isInstanceOf(UnsupportedOperationException.class));
+        }
+
+        @Test
+        @DisplayName("Should query by predicate")
+        void shouldQuery() {
+            store.add(People.person("Test", "Person", 22));
+            store.add(People.person("Dev", "Tester", 18));
+
+            assertThat(store.query(p -> p.getAge() > 20)).extracting(Person::getFirstName).containsExactly("Test");
+        }
+
+        @Test
+        @DisplayName("Should not let add() overwrite people put under chosen ids")
+        void shouldKeepPutPeopleFromConcurrentAdds() throws Exception {
+            int people = 20_000;
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            Future<?> puts = executor.submit(() -> {
+                for (long id = 1; id <= people; id++) {
+                    store.put(id, People.person("Put", "Person", 1));
+                }
+            });
+            Future<List<Long>> adds = executor.submit(() -> {
+                List<Long> ids = new ArrayList<>();
+                for (int i = 0; i < people; i++) {
+                    ids.add(store.add(People.person("Added", "Person", 2)));
+                }
+                return ids;
+            });
+            puts.get();
+            List<Long> added = adds.get();
+            executor.shutdown();
+
+            // A put may still replace someone added under its id first, but an add never replaces a put
+            assertThat(added).doesNotHaveDuplicates();
+            assertThat(store.query(p -> p.getAge() == 1)).hasSize(people);
+            assertThat(store.size()).isEqualTo(store.query(p -> true).size());
+            assertThat(added.stream().filter(id -> id > people))
+                    .allSatisfy(id -> assertThat(store.get(id).getFirstName()).isEqualTo("Added"));
+        }
+
+        @Test
+        @DisplayName("Should count operations when metrics are enabled")
+        void shouldRecordMetrics() {
+            OperationMetrics metrics = PersonStore.newMetrics();
+            PersonStore measured = new PersonStore(null, null, metrics);
+
+            long id = measured.add(People.person("Test", "Person", 22));
+            measured.get(id);
+            measured.get(id + 1);
+
+            assertThat(metrics.getCount(PersonStore.ADD)).isEqualTo(1);
+            assertThat(metrics.getCount(PersonStore.GET)).isEqualTo(1);
+            assertThat(metrics.getCount(PersonStore.MISS)).isEqualTo(1);
+        }
+    }
+
+    @Nested
+    @DisplayName("With snapshot and change log")
+    class Persistent {
+
+        @TempDir
+        Path directory;
+
+        private Path snapshotFile;
+        private Path logFile;
+
+        @BeforeEach
+        void createFiles() {
+            snapshotFile = directory.resolve("people.snapshot");
+            logFile = directory.resolve("people.log");
+        }
+
+        @Test
+        @DisplayName("Should restart from snapshot and change log")
+        void shouldRestart() throws Exception {
+            long test, dev, prod;
+            try (PersonStore store = PersonStore.open(snapshotFile, logFile, null)) {
+                test = store.add(People.person("Test", "Person", 22));
+                dev = store.add(People.person("Dev", "Tester", 18));
+                store.snapshot(snapshotFile, ForkJoinPool.commonPool()).get();
+
+                prod = store.add(People.person("Prod", "Tester", 18));
+                store.update(test, People.person("Test", "Person", 23));
+                store.remove(dev);
+            }
+
+            try (PersonStore restarted = PersonStore.open(snapshotFile, logFile, null)) {
+                assertThat(restarted.size()).isEqualTo(2);
+                assertThat(restarted.get(test).getAge()).isEqualTo(23);
+                assertThat(restarted.get(dev)).isNull();
+                assertThat(restarted.get(prod).getFirstName()).isEqualTo("Prod");
+                assertThat(restarted.add(People.person("New", "Person", 1))).isGreaterThan(prod);
+            }
+        }
+
+        @ParameterizedTest(name = "{index} => log lost completely={0}")
+        @ValueSource(booleans = {true, false})
+        @DisplayName("Should keep changes made after the log lost what the snapshot covers")
+        void shouldNumberAfterSnapshot(boolean lostCompletely) throws Exception {
+            long first;
+            try (PersonStore store = PersonStore.open(snapshotFile, logFile, null)) {
+                first = store.add(People.person("Test", "Person", 22));
+                store.add(People.person("Dev", "Tester", 18));
+                store.add(People.person("Prod", "Tester", 18));
+                // Written elsewhere and moved into place, so the log is not rotated and still holds all three
+                Path copy = directory.resolve("copy.snapshot");
+                store.snapshot(copy, Runnable::run).get();
+                Files.move(copy, snapshotFile);
+            }
+
+            if (lostCompletely) {
+                Files.delete(logFile);
+            } else {
+                // Only the first record survives, as after a crash under FsyncPolicy.NEVER
+                long firstRecord = PersonChangeLog.encode(1, 0, PersonChangeLog.Operation.ADD, first,
+                        People.person("Test", "Person", 22)).remaining();
+                try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+                    channel.truncate(firstRecord);
+                }
+            }
+
+            long added;
+            try (PersonStore restarted = PersonStore.open(snapshotFile, logFile, null)) {
+                added = restarted.add(People.person("New", "Person", 1));
+            }
+
+            try (PersonStore restarted = PersonStore.open(snapshotFile, logFile, null)) {
+                assertThat(restarted.size()).isEqualTo(4);
+                assertThat(restarted.get(added).getFirstName()).isEqualTo("New");
+            }
+        }
+
+        @Test
+        @DisplayName("Should serve snapshot records without loading them")
+        void shouldReadSnapshotLazily() throws Exception {
+            PersonStore store = new PersonStore();
+            for (int i = 0; i < 1_000; i++) {
+                store.add(People.person("Person" + i, i % 2 == 0 ? null : "Tester", i));
+            }
+            store.snapshot(snapshotFile, Runnable::run).get();
+
+            PersonSnapshot snapshot = PersonSnapshot.open(snapshotFile);
+
+            assertThat(snapshot.size()).isEqualTo(1_000);
+            assertThat(snapshot.get(500).getFirstName()).isEqualTo("Person499");
+            assertThat(snapshot.get(501).getLastName()).isNull();
+            assertThat(snapshot.get(1_001)).isNull();
+        }
+
+        @Test
+        @DisplayName("Should reject a corrupted snapshot index when opening")
+        void shouldRejectCorruptIndex() throws Exception {
+            PersonStore store = new PersonStore();
+            store.add(People.person("Test", "Person", 22));
+            store.snapshot(snapshotFile, Runnable::run).get();
+
+            try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[]{42}), 48);
+            }
+
+            assertThatThrownBy(() -> PersonSnapshot.open(snapshotFile))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("checksum");
+        }
+
+        @ParameterizedTest(name = "at offset {0}")
+        @ValueSource(ints = {8, 20, 36})
+        @DisplayName("Should reject a flipped bit in the log sequence, max id or capture time")
+        void shouldRejectCorruptHeader(int offset) throws Exception {
+            PersonStore store = new PersonStore();
+            store.add(People.person("Test", "Person", 22));
+            store.snapshot(snapshotFile, Runnable::run).get();
+
+            try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                ByteBuffer field = ByteBuffer.allocate(1);
+                channel.read(field, offset + 7);
+                field.put(0, (byte) (field.get(0) ^ 1)).rewind();
+                channel.write(field, offset + 7);
+            }
+
+            assertThatThrownBy(() -> PersonSnapshot.open(snapshotFile))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("checksum");
+        }
+
+        @Test
+        @DisplayName("Should reject corrupted records when they are read")
+        void shouldRejectCorruptRecords() throws Exception {
+            PersonStore store = new PersonStore();
+            for (int i = 0; i < 10_000; i++) {
+                store.add(People.person("Person" + i, "Tester", i % 100));
+            }
+            store.snapshot(snapshotFile, Runnable::run).get();
+
+            try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[]{42}), channel.size() - 1);
+            }
+
+            PersonSnapshot snapshot = PersonSnapshot.open(snapshotFile);
+            assertThat(snapshot.get(1).getFirstName()).isEqualTo("Person0");
+            assertThatThrownBy(() -> snapshot.get(10_000))
+                    .isInstanceOf(UncheckedIOException.class)
+                    .hasMessageContaining("checksum");
+        }
+
+        @Test
+        @DisplayName("Should recover the state at a point in time")
+        void shouldRecoverPointInTime() throws Exception {
+            long id;
+            long beforeUpdate;
+            try (PersonStore store = PersonStore.open(snapshotFile, logFile, null)) {
+                id = store.add(People.person("Test", "Person", 22));
+                Thread.sleep(5);
+                beforeUpdate = System.currentTimeMillis();
+                Thread.sleep(5);
+                store.update(id, People.person("Test", "Person", 23));
+            }
+
+            assertThat(PersonStore.recover(snapshotFile, logFile, beforeUpdate).get(id).getAge()).isEqualTo(22);
+            assertThat(PersonStore.recover(snapshotFile, logFile, Long.MAX_VALUE).get(id).getAge()).isEqualTo(23);
+        }
+
+        @Test
+        @DisplayName("Should not recover a time before the snapshot was captured")
+        void shouldRejectPointBeforeSnapshot() throws Exception {
+            long id;
+            long beforeSnapshot;
+            try (PersonStore store = PersonStore.open(snapshotFile, logFile, null)) {
+                id = store.add(People.person("Test", "Person", 22));
+                Thread.sleep(5);
+                beforeSnapshot = System.currentTimeMillis();
+                Thread.sleep(5);
+                store.update(id, People.person("Test", "Person", 23));
+                store.snapshot(snapshotFile, Runnable::run).get();
+            }
+
+            assertThatThrownBy(() -> PersonStore.recover(snapshotFile, logFile, beforeSnapshot))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("captured later");
+            assertThat(PersonStore.recover(snapshotFile, logFile, System.currentTimeMillis()).get(id).getAge())
+                    .isEqualTo(23);
+        }
+
+        @Test
+        @DisplayName("Should only keep the changes made after the newest snapshot in memory")
+        void shouldDropChangesCoveredBySnapshot() throws Exception {
+            try (PersonStore store = PersonStore.open(snapshotFile, logFile, null)) {
+                long test = store.add(People.person("Test", "Person", 22));
+                long dev = store.add(People.person("Dev", "Tester", 18));
+                store.remove(store.add(People.person("Gone", "Tester", 40)));
+                store.snapshot(snapshotFile, Runnable::run).get();
+
+                assertThat(store.overlaySize()).isZero();
+                assertThat(store.size()).isEqualTo(2);
+                assertThat(store.get(test).getAge()).isEqualTo(22);
+
+                store.update(dev, People.person("Dev", "Tester", 19));
+                long prod = store.add(People.person("Prod", "Tester", 18));
+
+                assertThat(store.overlaySize()).isEqualTo(2);
+                assertThat(store.query(person -> true)).extracting(Person::getFirstName)
+                        .containsExactlyInAnyOrder("Test", "Dev", "Prod");
+                assertThat(store.get(dev).getAge()).isEqualTo(19);
+                assertThat(store.get(prod).getFirstName()).isEqualTo("Prod");
+            }
+        }
+
+        @Test
+        @DisplayName("Should start a new change log at each snapshot")
+        void shouldRotateLogAtSnapshot() throws Exception {
+            long prod;
+            try (PersonStore store = PersonStore.open(snapshotFile, logFile, null)) {
+                store.add(People.person("Test", "Person", 22));
+                store.add(People.person("Dev", "Tester", 18));
+                store.snapshot(snapshotFile, Runnable::run).get();
+                prod = store.add(People.person("Prod", "Tester", 18));
+            }
+
+            try (Stream<Path> files = Files.list(directory)) {
+                assertThat(files.map(file -> file.getFileName().toString()))
+                        .containsExactlyInAnyOrder("people.snapshot", "people.log");
+            }
+            List<Long> logged = new ArrayList<>();
+            PersonChangeLog.replay(logFile, 0, Long.MAX_VALUE, entry -> logged.add(entry.getId()));
+            assertThat(logged).containsExactly(prod);
+
+            try (PersonStore restarted = PersonStore.open(snapshotFile, logFile, null)) {
+                assertThat(restarted.size()).isEqualTo(3);
+                assertThat(restarted.get(prod).getFirstName()).isEqualTo("Prod");
+            }
+        }
+
+        @Test
+        @DisplayName("Should refuse to cut off intact records after a damaged one")
+        void shouldRejectDamagedRecordInTheMiddle() throws Exception {
+            try (PersonStore store = PersonStore.open(snapshotFile, logFile, null)) {
+                long id = store.add(People.person("Test", "Person", 22));
+                store.update(id, People.person("Test", "Person", 23));
+                store.update(id, People.person("Test", "Person", 24));
+            }
+
+            // The last byte of the first record's payload
+            long firstRecord = PersonChangeLog.encode(1, 0, PersonChangeLog.Operation.ADD, 1,
+                    People.person("Test", "Person", 22)).remaining();
+            try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[]{42}), firstRecord - 1);
+            }
+
+            assertThatThrownBy(() -> PersonStore.open(snapshotFile, logFile, null))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("followed by intact records");
+            assertThat(Files.size(logFile)).isGreaterThan(firstRecord);
+        }
+
+        @Test
+        @DisplayName("Should ignore a torn record at the end of the change log")
+        void shouldIgnoreTornTail() throws Exception {
+            long id;
+            try (PersonStore store = PersonStore.open(snapshotFile, logFile, null)) {
+                id = store.add(People.person("Test", "Person", 22));
+                store.update(id, People.person("Test", "Person", 23));
+            }
+
+            try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+                channel.truncate(channel.size() - 3);
+            }
+
+            try (PersonStore restarted = PersonStore.open(snapshotFile, logFile, null)) {
+                assertThat(restarted.get(id).getAge()).isEqualTo(22);
+                restarted.update(id, People.person("Test", "Person", 24));
+            }
+            assertThat(PersonStore.recover(snapshotFile, logFile, Long.MAX_VALUE).get(id).getAge()).isEqualTo(24);
+        }
+
+        @Test
+        @DisplayName("Should replay a log that was never closed")
+        void shouldReplayUnclosedLog() throws Exception {
+            PersonStore crashed = PersonStore.open(snapshotFile, logFile, null);
+            long id = crashed.add(People.person("Test", "Person", 22));
+
+            // Preallocated zeros follow the last record because the log was not closed
+            assertThat(Files.size(logFile)).isGreaterThan(1_000);
+            assertThat(PersonStore.recover(snapshotFile, logFile, Long.MAX_VALUE).get(id).getAge()).isEqualTo(22);
+            crashed.close();
+        }
+
+        @ParameterizedTest(name = "{index} => fsyncPolicy={0}")
+        @EnumSource(PersonChangeLog.FsyncPolicy.class)
+        @DisplayName("Should keep every change from concurrent writers")
+        void shouldGroupCommitConcurrentWriters(PersonChangeLog.FsyncPolicy fsyncPolicy) throws Exception {
+            int writers = 8;
+            int changesPerWriter = 500;
+
+            try (PersonStore store = PersonStore.open(snapshotFile, logFile, fsyncPolicy, 5, null)) {
+                ExecutorService executor = Executors.newFixedThreadPool(writers);
+                List<Future<?>> results = new ArrayList<>();
+                for (int w = 0; w < writers; w++) {
+                    results.add(executor.submit(() -> {
+                        for (int i = 0; i < changesPerWriter; i++) {
+                            long id = store.add(People.person("Test", "Person", i));
+                            store.update(id, People.person("Test", "Person", i + 1));
+                        }
+                    }));
+                }
+                for (Future<?> result : results) {
+                    result.get();
+                }
+                executor.shutdown();
+            }
+
+            PersonStore recovered = PersonStore.recover(snapshotFile, logFile, Long.MAX_VALUE);
+            assertThat(recovered.size()).isEqualTo(writers * changesPerWriter);
+            assertThat(recovered.query(p -> p.getAge() == 0)).isEmpty();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Person vector")
+public class PersonVectorTests {
+
+    private static final int SIZE = 40_000;
+
+    @Test
+    @DisplayName("Should keep every version unchanged")
+    void shouldKeepVersionsUnchanged() {
+        PersonVector empty = PersonVector.EMPTY;
+        PersonVector one = empty.plus(People.aged(1));
+        PersonVector two = one.plus(People.aged(2));
+        PersonVector replaced = two.with(0, People.aged(10));
+
+        assertThat(empty.size()).isZero();
+        assertThat(one.asList()).extracting(Person::getAge).containsExactly(1);
+        assertThat(two.asList()).extracting(Person::getAge).containsExactly(1, 2);
+        assertThat(replaced.asList()).extracting(Person::getAge).containsExactly(10, 2);
+        assertThat(replaced.withoutLast().withoutLast()).isSameAs(PersonVector.EMPTY);
+    }
+
+    @Test
+    @DisplayName("Should match a list through appends, replacements and removals across tree levels")
+    void shouldMatchList() {
+        Random random = new Random(7);
+        List<Person> expected = new ArrayList<>();
+        PersonVector vector = PersonVector.EMPTY;
+        List<PersonVector> versions = new ArrayList<>();
+
+        for (int i = 0; i < SIZE; i++) {
+            Person person = FrozenPerson.of(People.aged(i));
+            expected.add(person);
+            vector = vector.plus(person);
+            if (i % 5_000 == 0) {
+                versions.add(vector);
+            }
+        }
+        for (int i = 0; i < 1_000; i++) {
+            int index = random.nextInt(SIZE);
+            Person person = FrozenPerson.of(People.aged(-i));
+            expected.set(index, person);
+            vector = vector.with(index, person);
+        }
+        assertThat(vector.asList()).containsExactlyElementsOf(expected);
+
+        while (vector.size() > 10) {
+            expected.remove(expected.size() - 1);
+            vector = vector.withoutLast();
+            if (vector.size() % 1_023 == 0) {
+                assertThat(vector.get(vector.size() - 1)).isSameAs(expected.get(expected.size() - 1));
+            }
+        }
+        assertThat(vector).containsExactlyElementsOf(expected);
+        for (int v = 0; v < versions.size(); v++) {
+            assertThat(versions.get(v).size()).isEqualTo(v * 5_000 + 1);
+            assertThat(versions.get(v).get(v * 5_000).getAge()).isEqualTo(v * 5_000);
+        }
+    }
+
+    @Test
+    @DisplayName("Should bulk load with a builder without touching the source version")
+    void shouldBulkLoadWithBuilder() {
+        PersonVector base = PersonVector.EMPTY.plus(People.aged(0));
+        PersonVector.Builder builder = base.toBuilder();
+        for (int i = 1; i < SIZE; i++) {
+            builder.add(People.aged(i));
+        }
+        builder.set(0, People.aged(-1)).set(SIZE - 1, People.aged(-2));
+        PersonVector built = builder.build();
+
+        assertThat(base.size()).isEqualTo(1);
+        assertThat(base.get(0).getAge()).isZero();
+        assertThat(built.size()).isEqualTo(SIZE);
+        assertThat(built.get(0).getAge()).isEqualTo(-1);
+        assertThat(built.get(12_345).getAge()).isEqualTo(12_345);
+        assertThat(built.plus(People.aged(SIZE)).get(SIZE).getAge()).isEqualTo(SIZE);
+        assertThat(built.get(SIZE - 1).getAge()).isEqualTo(-2);
+        assertThatThrownBy(() -> builder.add(People.aged(0))).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> built.get(SIZE)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    @DisplayName("Should keep stored people out of reach of callers")
+    void shouldFreezePeople() {
+        Person added = People.aged(1);
+        PersonVector vector = PersonVector.EMPTY.plus(added);
+        added.setAge(2);
+
+        assertThat(vector.get(0).getAge()).isEqualTo(1);
+        assertThat(vector.plus(vector.get(0)).get(1)).isSameAs(vector.get(0));
+        assertThatThrownBy(() -> vector.get(0).setAge(3)).isInstanceOf(UnsupportedOperationException.class);
+        assertThat(new Person(vector.get(0)).getAge()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,68 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Pet counter")
+public class PetCounterTests {
+
+    private PetCounter counter;
+
+    @BeforeEach
+    void createCounter() {
+        counter = new PetCounter();
+    }
+
+    @DisplayName("Should count every pet separately")
+    @ParameterizedTest(name = "{index} => pet=''{0}''")
+    @EnumSource(Pet.class)
+    void shouldCountPet(Pet pet) {
+        counter.increment(pet);
+        counter.add(pet, 2);
+
+        assertThat(counter.count(pet)).isEqualTo(3);
+        assertThat(counter.total()).isEqualTo(3);
+        assertThat(counter.toMap()).containsEntry(pet, 3L).hasSize(Pet.values().length);
+    }
+
+    @DisplayName("Should count concurrent increments")
+    @ParameterizedTest(name = "{index} => pet=''{0}''")
+    @EnumSource(Pet.class)
+    void shouldCountConcurrently(Pet pet) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    counter.increment(pet);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(counter.count(pet)).isEqualTo(40_000);
+    }
+
+    @Test
+    @DisplayName("Should merge counters and rank pets")
+    void shouldMergeAndRank() {
+        PetCounter other = new PetCounter();
+        counter.add(Pet.CAT, 2);
+        other.add(Pet.DOG, 5);
+
+        counter.merge(other);
+
+        assertThat(counter.snapshot()).containsExactly(2, 5);
+        assertThat(counter.topK(1)).containsExactly(Pet.DOG);
+        assertThat(counter.topK(5)).containsExactly(Pet.DOG, Pet.CAT);
+    }
+}
@@ -1,12 +1,13 @@
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 
 @DisplayName("JUnit test practices")
+@ExtendWith(FixtureExtension.class)
 public class PracticeTests {
 
     @BeforeAll
@@ -17,41 +18,36 @@ public class PracticeTests {
     private final boolean RUNNING = true;
     private Person testPerson, testPerson2, testPerson3;
 
-    private final String FIRST_NAME = "Test";
-    private final String LAST_NAME = "Person";
-    private final String FIRST_NAME2 = "Dev";
-    private final String LAST_NAME2 = "Tester";
-    private final String FIRST_NAME3 = "Prod";
-    private final String LAST_NAME3 = "Tester";
+    private static final String FIRST_NAME = "Test";
+    private static final String LAST_NAME = "Person";
+    private static final String FIRST_NAME2 = "Dev";
+    private static final String LAST_NAME2 = "Tester";
+    private static final String FIRST_NAME3 = "Prod";
+    private static final String LAST_NAME3 = "Tester";
 
-    private final Integer AGE = 22;
-    private final Integer AGE2 = 18;
-    private final Integer AGE3 = 18;
-    private final Integer OLD_ENOUGH = 20;
+    private static final Integer AGE = 22;
+    private static final Integer AGE2 = 18;
+    private static final Integer AGE3 = 18;
+    private static final Integer OLD_ENOUGH = 20;
 
     private List<Person> people;
 
+    // Built once for the whole class by FixtureExtension; the people in it are read-only
+    static PersonVector persons() {
+        return PersonVector.EMPTY
+                .plus(People.person(FIRST_NAME, LAST_NAME, AGE))
+                .plus(People.person(FIRST_NAME2, LAST_NAME2, AGE2))
+                .plus(People.person(FIRST_NAME3, LAST_NAME3, AGE3));
+    }
+
     @BeforeEach
-    void createPerson() {
-        testPerson = new Person();
-        testPerson2 = new Person();
-        testPerson3 = new Person();
-        people = new ArrayList<>();
-
-        testPerson.setFirstName(FIRST_NAME);
-        testPerson.setLastName(LAST_NAME);
-        testPerson.setAge(AGE);
-
-        testPerson2.setFirstName(FIRST_NAME2);
-        testPerson2.setLastName(LAST_NAME2);
-        testPerson2.setAge(AGE2);
-
-        testPerson3.setFirstName(FIRST_NAME3);
-        testPerson3.setLastName(LAST_NAME3);
-        testPerson3.setAge(AGE3);
-
-        people.add(testPerson);
-        people.add(testPerson2);
+    void createPerson(@Fixture("persons") PersonVector persons) {
+        testPerson = persons.get(0);
+        testPerson2 = persons.get(1);
+        testPerson3 = persons.get(2);
+
+        // A version without the third person, sharing the rest with the fixture
+        people = persons.withoutLast().asList();
     }
 
     @AfterAll
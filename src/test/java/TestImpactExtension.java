@@ -0,0 +1,187 @@
+import org.junit.jupiter.api.extension.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.util.*;
+
+/* Remembers which project classes every top-level test class depends on, with a checksum of each.
+   With -Dimpact=select a test class only runs when one of those class files changed since it
+   last passed; classes that are new, failed last time or have no record always run.
+   Records are only kept with -Dimpact=select or -Dimpact=record, so ordinary runs neither compute
+   dependency closures nor rewrite the map. Resource changes count too, see ClassDependencies.
+   The map lives in .test-impact beside pom.xml (override with -Dimpact.file) and is registered
+   for every test class through extension autodetection.
+ */
+public class TestImpactExtension implements ExecutionCondition, TestWatcher, AfterAllCallback {
+
+    private static final ExtensionContext.Namespace NAMESPACE =
+            ExtensionContext.Namespace.create(TestImpactExtension.class);
+
+    private static final String FAILED = "failed";
+
+    @Override
+    public ConditionEvaluationResult evaluateExecutionCondition(ExtensionContext context) {
+        if (!isTopLevelClass(context) || !"select".equals(mode())) {
+            return ConditionEvaluationResult.enabled("Test impact selection is off");
+        }
+
+        Class<?> testClass = context.getRequiredTestClass();
+        Map<String, String> recorded = impactMap(context).get(testClass.getName());
+        if (recorded == null) {
+            return ConditionEvaluationResult.enabled("No previous impact record");
+        }
+        if (!recorded.equals(ClassDependencies.closure(testClass))) {
+            return ConditionEvaluationResult.enabled("Affected by changed classes");
+        }
+        return ConditionEvaluationResult.disabled("Not affected by changes since the last passing run");
+    }
+
+    @Override
+    public void testFailed(ExtensionContext context, Throwable cause) {
+        if (!isRecording()) {
+            return;
+        }
+        context.getTestClass()
+                .map(TestImpactExtension::topLevel)
+                .ifPresent(testClass -> failedClasses(context).add(testClass.getName()));
+    }
+
+    @Override
+    public void afterAll(ExtensionContext context) {
+        if (!isRecording() || !isTopLevelClass(context)) {
+            return;
+        }
+
+        Class<?> testClass = context.getRequiredTestClass();
+        ImpactMap impactMap = impactMap(context);
+        if (failedClasses(context).contains(testClass.getName()) || context.getExecutionException().isPresent()) {
+            impactMap.remove(testClass.getName());
+        } else {
+            impactMap.put(testClass.getName(), ClassDependencies.closure(testClass));
+        }
+    }
+
+    private static String mode() {
+        return System.getProperty("impact", "off");
+    }
+
+    private static boolean isRecording() {
+        return "select".equals(mode()) || "record".equals(mode());
+    }
+
+    private static boolean isTopLevelClass(ExtensionContext context) {
+        return !context.getTestMethod().isPresent()
+                && context.getTestClass().filter(testClass -> testClass.getEnclosingClass() == null).isPresent();
+    }
+
+    private static Class<?> topLevel(Class<?> testClass) {
+        Class<?> current = testClass;
+        while (current.getEnclosingClass() != null) {
+            current = current.getEnclosingClass();
+        }
+        return current;
+    }
+
+    private static ImpactMap impactMap(ExtensionContext context) {
+        Path file = Paths.get(System.getProperty("impact.file", ".test-impact"));
+        return context.getRoot().getStore(NAMESPACE)
+                .getOrComputeIfAbsent(ImpactMap.class, key -> ImpactMap.load(file), ImpactMap.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<String> failedClasses(ExtensionContext context) {
+        return context.getRoot().getStore(NAMESPACE)
+                .getOrComputeIfAbsent(FAILED, key -> Collections.synchronizedSet(new HashSet<>()), Set.class);
+    }
+
+    /* Written back when the run ends. Updates are merged into whatever is on disk then,
+       so forks sharing the file only lose each other's records in a race, which means a rerun.
+     */
+    static final class ImpactMap implements ExtensionContext.Store.CloseableResource {
+
+        private final Path file;
+        private final Map<String, Map<String, String>> recorded;
+        private final Map<String, Map<String, String>> updates = new HashMap<>();
+
+        private ImpactMap(Path file, Map<String, Map<String, String>> recorded) {
+            this.file = file;
+            this.recorded = recorded;
+        }
+
+        static ImpactMap load(Path file) {
+            return new ImpactMap(file, read(file));
+        }
+
+        synchronized Map<String, String> get(String testClass) {
+            return recorded.get(testClass);
+        }
+
+        synchronized void put(String testClass, Map<String, String> dependencies) {
+            recorded.put(testClass, dependencies);
+            updates.put(testClass, dependencies);
+        }
+
+        synchronized void remove(String testClass) {
+            recorded.remove(testClass);
+            updates.put(testClass, null);
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (updates.isEmpty()) {
+                return;
+            }
+
+            Map<String, Map<String, String>> merged = read(file);
+            for (Map.Entry<String, Map<String, String>> update : updates.entrySet()) {
+                if (update.getValue() == null) {
+                    merged.remove(update.getKey());
+                } else {
+                    merged.put(update.getKey(), update.getValue());
+                }
+            }
+
+            Properties properties = new Properties();
+            for (Map.Entry<String, Map<String, String>> entry : merged.entrySet()) {
+                StringJoiner value = new StringJoiner(",");
+                entry.getValue().forEach((name, checksum) -> value.add(name + "=" + checksum));
+                properties.setProperty(entry.getKey(), value.toString());
+            }
+
+            Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), ".test-impact", ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                properties.store(out, "Test class -> project class checksums, see TestImpactExtension");
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private static Map<String, Map<String, String>> read(Path file) {
+            Map<String, Map<String, String>> map = new HashMap<>();
+            if (!Files.isRegularFile(file)) {
+                return map;
+            }
+
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            } catch (IOException | IllegalArgumentException e) {
+                // A broken map only means a full run
+                return map;
+            }
+
+            for (String testClass : properties.stringPropertyNames()) {
+                Map<String, String> dependencies = new TreeMap<>();
+                for (String dependency : properties.getProperty(testClass).split(",")) {
+                    int separator = dependency.indexOf('=');
+                    if (separator > 0) {
+                        dependencies.put(dependency.substring(0, separator), dependency.substring(separator + 1));
+                    }
+                }
+                map.put(testClass, dependencies);
+            }
+            return map;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+import org.junit.jupiter.api.extension.*;
+
+import java.lang.reflect.Constructor;
+
+/* Emits a TestPhaseEvent for the @BeforeEach, test and @AfterEach phases of every test, so a flight
+   recording of the test run shows which phase was running during a GC pause or lock contention.
+   The boundaries come from the extension callbacks around those phases, so other extensions'
+   callbacks count towards the neighbouring phase. Registered through extension autodetection.
+   TestPhaseEvent lives in src/test/jfr and is only there when the jfr profile built it; without it,
+   or without jdk.jfr at run time, this does nothing.
+ */
+public class TestPhaseRecorder implements BeforeEachCallback, BeforeTestExecutionCallback,
+        AfterTestExecutionCallback, AfterEachCallback {
+
+    // Implemented by TestPhaseEvent, so this class compiles without jdk.jfr
+    interface Phase {
+
+        // Starts timing the phase, false when no recording wants it
+        boolean start(String testClass, String testMethod, String displayName, String phase);
+
+        void finish();
+    }
+
+    private static final ExtensionContext.Namespace NAMESPACE =
+            ExtensionContext.Namespace.create(TestPhaseRecorder.class);
+
+    private static final Constructor<? extends Phase> PHASE = phaseConstructor();
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        begin(context, "beforeEach");
+    }
+
+    @Override
+    public void beforeTestExecution(ExtensionContext context) {
+        commit(context);
+        begin(context, "test");
+    }
+
+    @Override
+    public void afterTestExecution(ExtensionContext context) {
+        commit(context);
+        begin(context, "afterEach");
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        commit(context);
+    }
+
+    private static void begin(ExtensionContext context, String phase) {
+        if (PHASE == null) {
+            return;
+        }
+        Phase event;
+        try {
+            event = PHASE.newInstance();
+        } catch (ReflectiveOperationException e) {
+            return;
+        }
+        if (event.start(context.getRequiredTestClass().getName(), context.getRequiredTestMethod().getName(),
+                context.getDisplayName(), phase)) {
+            context.getStore(NAMESPACE).put(Phase.class, event);
+        }
+    }
+
+    private static void commit(ExtensionContext context) {
+        Phase event = context.getStore(NAMESPACE).remove(Phase.class, Phase.class);
+        if (event != null) {
+            event.finish();
+        }
+    }
+
+    private static Constructor<? extends Phase> phaseConstructor() {
+        if (!FlightEvents.AVAILABLE) {
+            return null;
+        }
+        try {
+            Constructor<? extends Phase> constructor = Class.forName("TestPhaseEvent")
+                    .asSubclass(Phase.class).getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+            return null;
+        }
+    }
+}
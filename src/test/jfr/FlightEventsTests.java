@@ -0,0 +1,130 @@
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.converter.ArgumentConversionException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Flight recorder events")
+public class FlightEventsTests {
+
+    private static List<RecordedEvent> events(Path file, String name) throws IOException {
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    @DisplayName("Should record conversions with their outcome")
+    void shouldRecordConversions(@TempDir Path directory) throws IOException {
+        MessageConverter converter = new MessageConverter();
+        Path file = directory.resolve("conversions.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable("JUnitTesting.MessageConversion").withThreshold(Duration.ZERO);
+            recording.start();
+            converter.convert("Hello", null);
+            assertThatThrownBy(() -> converter.convert(42, null)).isInstanceOf(ArgumentConversionException.class);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = events(file, "JUnitTesting.MessageConversion");
+        assertThat(events).extracting(event -> event.getString("outcome")).containsExactly("converted", "notString");
+        assertThat(events.get(0).getInt("length")).isEqualTo(5);
+        assertThat(events.get(1).getString("sourceType")).isEqualTo("java.lang.Integer");
+    }
+
+    @Test
+    @DisplayName("Should not record conversions unless enabled")
+    void shouldNotRecordConversionsByDefault(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("default.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.start();
+            new MessageConverter().convert("Hello", null);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        assertThat(events(file, "JUnitTesting.MessageConversion")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should record queries with the rows scanned")
+    void shouldRecordQueries(@TempDir Path directory) throws IOException {
+        PersonStore store = new PersonStore();
+        for (int age = 0; age < 10; age++) {
+            store.add(People.aged(age));
+        }
+        Path file = directory.resolve("queries.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable("JUnitTesting.PersonQuery").withThreshold(Duration.ZERO);
+            recording.start();
+            store.query("olderThanSix", person -> person.getAge() > 6);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = events(file, "JUnitTesting.PersonQuery");
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getLong("rowsScanned")).isEqualTo(10);
+        assertThat(events.get(0).getInt("matches")).isEqualTo(3);
+        assertThat(events.get(0).getString("label")).isEqualTo("olderThanSix");
+    }
+
+    /* TestPhaseRecorder is registered for every test, so the first test here runs under a recording
+       and the second one checks what it recorded.
+     */
+    @Nested
+    @DisplayName("Test phases")
+    @TestInstance(TestInstance.Lifecycle.PER_CLASS)
+    @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+    class TestPhases {
+
+        private final Recording recording = new Recording();
+
+        @BeforeAll
+        void startRecording() {
+            recording.enable("JUnitTesting.TestPhase").withThreshold(Duration.ZERO);
+            recording.start();
+        }
+
+        @AfterAll
+        void closeRecording() {
+            recording.close();
+        }
+
+        @Test
+        @Order(1)
+        @DisplayName("Should be recorded")
+        void recordedTest() {
+            assertThat(recording.getState()).isEqualTo(RecordingState.RUNNING);
+        }
+
+        @Test
+        @Order(2)
+        @DisplayName("Should record each phase of the previous test")
+        void shouldRecordPhases(@TempDir Path directory) throws IOException {
+            Path file = directory.resolve("phases.jfr");
+            recording.stop();
+            recording.dump(file);
+
+            assertThat(events(file, "JUnitTesting.TestPhase"))
+                    .filteredOn(event -> event.getString("testMethod").equals("recordedTest"))
+                    .extracting(event -> event.getString("phase"))
+                    .containsExactly("beforeEach", "test", "afterEach");
+        }
+    }
+}
@@ -0,0 +1,43 @@
+import jdk.jfr.*;
+
+// One phase of a test: its @BeforeEach methods, the test method itself or its @AfterEach methods
+@Name("JUnitTesting.TestPhase")
+@Label("Test Phase")
+@Category({"JUnitTesting", "Tests"})
+@Threshold("0 ms")
+@StackTrace(false)
+final class TestPhaseEvent extends Event implements TestPhaseRecorder.Phase {
+
+    @Label("Test Class")
+    String testClass;
+
+    @Label("Test Method")
+    String testMethod;
+
+    @Label("Display Name")
+    String displayName;
+
+    @Label("Phase")
+    String phase;
+
+    @Override
+    public boolean start(String testClass, String testMethod, String displayName, String phase) {
+        if (!isEnabled()) {
+            return false;
+        }
+        this.testClass = testClass;
+        this.testMethod = testMethod;
+        this.displayName = displayName;
+        this.phase = phase;
+        begin();
+        return true;
+    }
+
+    @Override
+    public void finish() {
+        end();
+        if (shouldCommit()) {
+            commit();
+        }
+    }
+}
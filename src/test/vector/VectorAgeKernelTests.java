@@ -0,0 +1,42 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Vector age kernel")
+public class VectorAgeKernelTests {
+
+    @Test
+    @DisplayName("Should be picked when the vector module is there")
+    void shouldBePicked() {
+        assertThat(AgeColumn.VECTORIZED).isTrue();
+        assertThat(AgeColumn.KERNEL).isInstanceOf(VectorAgeKernel.class);
+    }
+
+    @Test
+    @DisplayName("Should match the scalar loops for every length and around every lane boundary")
+    void shouldMatchScalarKernel() {
+        AgeColumn.Kernel vector = new VectorAgeKernel();
+        AgeColumn.Kernel scalar = new AgeColumn.ScalarKernel();
+        Random random = new Random(42);
+
+        for (int length = 1; length <= 200; length++) {
+            int[] ages = random.ints(length, 0, 100).toArray();
+            ages[random.nextInt(length)] = random.nextBoolean() ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+
+            assertThat(vector.countGreaterThan(ages, 20)).isEqualTo(scalar.countGreaterThan(ages, 20));
+            assertThat(vector.countLessThan(ages, 20)).isEqualTo(scalar.countLessThan(ages, 20));
+            assertThat(vector.countBetween(ages, 18, 65)).isEqualTo(scalar.countBetween(ages, 18, 65));
+            assertThat(vector.min(ages)).isEqualTo(scalar.min(ages));
+            assertThat(vector.max(ages)).isEqualTo(scalar.max(ages));
+
+            int[] expected = new int[scalar.countGreaterThan(ages, 20)];
+            int[] actual = new int[expected.length];
+            scalar.indexesGreaterThan(ages, 20, expected);
+            vector.indexesGreaterThan(ages, 20, actual);
+            assertThat(actual).containsExactly(expected);
+        }
+    }
+}